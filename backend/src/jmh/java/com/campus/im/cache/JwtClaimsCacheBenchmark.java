@@ -0,0 +1,63 @@
+package com.campus.im.cache;
+
+import com.campus.im.util.JwtUtil;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 令牌解析基准：每次请求完整验签解析（uncached）与命中已验证令牌缓存（cached）的耗时对比，
+ * cached 包含计算令牌摘要与复制声明的开销
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class JwtClaimsCacheBenchmark {
+
+    private String token;
+
+    private JwtClaimsCache cache;
+
+    @Setup
+    public void setUp() {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put("id", 10001L);
+        claims.put("phone", "13800000000");
+        token = JwtUtil.generateJwt(claims);
+
+        cache = new JwtClaimsCache();
+        ReflectionTestUtils.setField(cache, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "maxSize", 100000L);
+        ReflectionTestUtils.setField(cache, "knownUserMaxSize", 100000L);
+        cache.init();
+        cache.parse(token);
+    }
+
+    @Benchmark
+    public Claims uncached() {
+        return JwtUtil.parseJWT(token);
+    }
+
+    @Benchmark
+    public Claims cached() {
+        return cache.parse(token);
+    }
+}
@@ -0,0 +1,123 @@
+package com.campus.im.service.impl;
+
+import com.campus.im.entity.Message;
+import com.campus.im.mapper.MessageMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 消息落库吞吐基准：8个发送线程逐条同步INSERT（synchronous）与提交到异步落库队列批量写入（batched）的对比。
+ * 数据库以固定的单次语句往返耗时加每行写入耗时模拟，batched 每轮结束时flush，计入全部写入
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Threads(8)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MessageWriteBehindBenchmark {
+
+    // 单次语句往返耗时（微秒）
+    @Param({"200"})
+    private long roundTripMicros;
+
+    // 每行写入耗时（微秒）
+    @Param({"5"})
+    private long rowMicros;
+
+    private final AtomicLong ids = new AtomicLong();
+
+    private MessageMapper messageMapper;
+
+    private MessageWriteBehindServiceImpl writeBehindService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        messageMapper = (MessageMapper) Proxy.newProxyInstance(MessageMapper.class.getClassLoader(),
+                new Class<?>[]{MessageMapper.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "insert":
+                            simulate(1);
+                            return 1;
+                        case "batchInsert":
+                            int rows = ((List<?>) args[0]).size();
+                            simulate(rows);
+                            return rows;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+
+        writeBehindService = new MessageWriteBehindServiceImpl();
+        ReflectionTestUtils.setField(writeBehindService, "messageMapper", messageMapper);
+        ReflectionTestUtils.setField(writeBehindService, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(writeBehindService, "enabled", true);
+        ReflectionTestUtils.setField(writeBehindService, "batchSize", 200);
+        ReflectionTestUtils.setField(writeBehindService, "flushIntervalMs", 50L);
+        ReflectionTestUtils.setField(writeBehindService, "queueCapacity", 10000);
+        ReflectionTestUtils.setField(writeBehindService, "offerTimeoutMs", 20L);
+        ReflectionTestUtils.setField(writeBehindService, "retryInitialMs", 1000L);
+        ReflectionTestUtils.setField(writeBehindService, "retryMaxMs", 30000L);
+        writeBehindService.init();
+    }
+
+    @TearDown(Level.Iteration)
+    public void flush() {
+        writeBehindService.flush();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        writeBehindService.shutdown();
+    }
+
+    @Benchmark
+    public int synchronous() {
+        return messageMapper.insert(newMessage());
+    }
+
+    @Benchmark
+    public boolean batched() {
+        return writeBehindService.submit(newMessage());
+    }
+
+    private Message newMessage() {
+        long id = ids.incrementAndGet();
+        Message message = new Message();
+        message.setId(id);
+        message.setConversationKey(id % 1000);
+        message.setSeq(id);
+        message.setSenderId(10001L);
+        message.setReceiverId(10002L);
+        message.setContentType(1);
+        message.setContent("hello");
+        message.setSendTime(LocalDateTime.now());
+        return message;
+    }
+
+    private void simulate(int rows) {
+        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(roundTripMicros + rowMicros * rows));
+    }
+}
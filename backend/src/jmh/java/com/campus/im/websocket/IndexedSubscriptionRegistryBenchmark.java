@@ -0,0 +1,127 @@
+package com.campus.im.websocket;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.DefaultSubscriptionRegistry;
+import org.springframework.messaging.simp.broker.SubscriptionRegistry;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MultiValueMap;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 订阅表基准：一个超级群目的地上登记 1万/10万 个订阅的总耗时、满员后单次订阅变动的耗时，以及投递时查找订阅的耗时。
+ * default 为Spring默认订阅表，indexed 为按目的地索引的订阅表
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class IndexedSubscriptionRegistryBenchmark {
+
+    private static final String DESTINATION = "/topic/group.1";
+
+    @Param({"10000", "100000"})
+    private int subscriptions;
+
+    @Param({"default", "indexed"})
+    private String registryType;
+
+    private Message<?>[] subscribeMessages;
+
+    private Message<?> churnSubscribe;
+
+    private Message<?> churnUnsubscribe;
+
+    private Message<?> publishMessage;
+
+    // 已登记全部订阅的订阅表，用于查找与订阅变动
+    private SubscriptionRegistry populated;
+
+    // 每轮重新创建的空订阅表，用于整体登记
+    private SubscriptionRegistry empty;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        subscribeMessages = new Message<?>[subscriptions];
+        for (int i = 0; i < subscriptions; i++) {
+            subscribeMessages[i] = frame(SimpMessageType.SUBSCRIBE, "session-" + i, "sub-0", DESTINATION);
+        }
+        churnSubscribe = frame(SimpMessageType.SUBSCRIBE, "session-churn", "sub-0", DESTINATION);
+        churnUnsubscribe = frame(SimpMessageType.UNSUBSCRIBE, "session-churn", "sub-0", null);
+        publishMessage = frame(SimpMessageType.MESSAGE, null, null, DESTINATION);
+
+        populated = newRegistry();
+        for (Message<?> message : subscribeMessages) {
+            populated.registerSubscription(message);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpInvocation() {
+        empty = newRegistry();
+    }
+
+    /**
+     * 全部成员依次订阅同一个群频道
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public SubscriptionRegistry subscribeAll() {
+        for (Message<?> message : subscribeMessages) {
+            empty.registerSubscription(message);
+        }
+        return empty;
+    }
+
+    /**
+     * 满员的群频道上一个会话订阅后再取消
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void subscribeUnsubscribe() {
+        populated.registerSubscription(churnSubscribe);
+        populated.unregisterSubscription(churnUnsubscribe);
+    }
+
+    /**
+     * 向满员的群频道投递一条消息时查找并遍历订阅
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void findSubscriptions(Blackhole blackhole) {
+        MultiValueMap<String, String> found = populated.findSubscriptions(publishMessage);
+        found.forEach((sessionId, subscriptionIds) -> blackhole.consume(subscriptionIds));
+    }
+
+    private SubscriptionRegistry newRegistry() {
+        DefaultSubscriptionRegistry defaultRegistry = new DefaultSubscriptionRegistry();
+        return "indexed".equals(registryType) ? new IndexedSubscriptionRegistry(defaultRegistry) : defaultRegistry;
+    }
+
+    private static Message<?> frame(SimpMessageType type, String sessionId, String subscriptionId, String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(type);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        accessor.setDestination(destination);
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,116 @@
+package com.campus.im.websocket;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHandlingRunnable;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 入站通道线程池基准：4个读取线程各提交一批帧并等待全部处理完成，对比按会话保序的通道线程池（ordered）
+ * 与普通线程池（pool）的吞吐与完成耗时分布（SampleTime 输出 p99）。
+ * conversations 为帧分布的会话数，数值小时模拟少数热点会话
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Threads(4)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class OrderedChannelExecutorBenchmark {
+
+    private static final int THREADS = 16;
+
+    private static final int BATCH = 64;
+
+    // 处理单帧的模拟CPU耗时
+    private static final long WORK_TOKENS = 2000;
+
+    @Param({"ordered", "pool"})
+    private String executorType;
+
+    @Param({"1000", "8"})
+    private int conversations;
+
+    private ThreadPoolTaskExecutor executor;
+
+    @Setup
+    public void setUp() {
+        executor = "ordered".equals(executorType)
+                ? new OrderedChannelExecutor(message -> (Long) message.getHeaders().get("key"),
+                        THREADS, 10000, 50L, message -> { })
+                : new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(THREADS);
+        executor.setMaxPoolSize(THREADS);
+        executor.setQueueCapacity(10000);
+        executor.setThreadNamePrefix("bench-");
+        executor.initialize();
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Benchmark
+    public void submitBatch() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(BATCH);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < BATCH; i++) {
+            executor.execute(new Frame(random.nextInt(conversations) + 1L, done));
+        }
+        done.await();
+    }
+
+    /**
+     * 模拟一帧入站消息的处理
+     */
+    private static final class Frame implements MessageHandlingRunnable {
+
+        private final Message<byte[]> message;
+
+        private final MessageHandler handler;
+
+        Frame(long key, CountDownLatch done) {
+            this.message = MessageBuilder.withPayload(new byte[0]).setHeader("key", key).build();
+            this.handler = received -> {
+                Blackhole.consumeCPU(WORK_TOKENS);
+                done.countDown();
+            };
+        }
+
+        @Override
+        public Message<?> getMessage() {
+            return message;
+        }
+
+        @Override
+        public MessageHandler getMessageHandler() {
+            return handler;
+        }
+
+        @Override
+        public void run() {
+            handler.handleMessage(message);
+        }
+    }
+}
@@ -0,0 +1,429 @@
+package com.campus.im.cache;
+
+import com.campus.im.common.constant.GroupConstant;
+import com.campus.im.entity.ChatGroup;
+import com.campus.im.entity.GroupMember;
+import com.campus.im.mapper.ChatGroupMapper;
+import com.campus.im.mapper.GroupMemberMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.UnaryOperator;
+
+/**
+ * 群成员与角色缓存
+ * 每个群组缓存一份不可变快照：按用户ID升序排列的 long[] 与对应的角色数组，成员与角色判断为一次二分查找，不产生对象分配；
+ * 快照同时记录群组的消息扇出模式，发送消息时无需再查询群组表。
+ * 快照由一次查询加载；本实例的成员增删、角色变更在事务提交后以写时复制方式直接更新快照，
+ * 同时通过Redis发布订阅通知其他实例丢弃各自的快照，快照另有写入后过期时间兜底
+ */
+@Component
+public class GroupMemberCache implements MessageListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(GroupMemberCache.class);
+
+    private static final String INVALIDATE_CHANNEL = "group:member:invalidate";
+
+    /**
+     * 非群成员的角色值
+     */
+    public static final int NOT_MEMBER = -1;
+
+    // 区分发布订阅消息是否来自本实例，本实例的快照已在写入时更新
+    private final String instanceId = UUID.randomUUID().toString();
+
+    @Autowired
+    private GroupMemberMapper groupMemberMapper;
+
+    @Autowired
+    private ChatGroupMapper chatGroupMapper;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.im.group-member-cache.max-groups:10000}")
+    private long maxGroups;
+
+    @Value("${app.im.group-member-cache.ttl-minutes:30}")
+    private long ttlMinutes;
+
+    private Cache<Long, Members> groups;
+
+    private Counter loadCounter;
+
+    @PostConstruct
+    public void init() {
+        groups = Caffeine.newBuilder()
+                .maximumSize(maxGroups)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .build();
+        loadCounter = Counter.builder("im.group.member-cache.load")
+                .description("从数据库加载群成员快照的次数")
+                .register(meterRegistry);
+        Gauge.builder("im.group.member-cache.size", groups, Cache::estimatedSize)
+                .description("缓存成员快照的群组数")
+                .register(meterRegistry);
+
+        listenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATE_CHANNEL));
+    }
+
+    /**
+     * 用户是否为群成员
+     *
+     * @param groupId 群组ID
+     * @param userId 用户ID
+     * @return 是否为群成员
+     */
+    public boolean contains(Long groupId, Long userId) {
+        return getRole(groupId, userId) != NOT_MEMBER;
+    }
+
+    /**
+     * 获取用户在群中的角色
+     *
+     * @param groupId 群组ID
+     * @param userId 用户ID
+     * @return 角色，非群成员返回 {@link #NOT_MEMBER}
+     */
+    public int getRole(Long groupId, Long userId) {
+        if (groupId == null || userId == null) {
+            return NOT_MEMBER;
+        }
+
+        return get(groupId).role(userId);
+    }
+
+    /**
+     * 获取群成员ID集合
+     *
+     * @param groupId 群组ID
+     * @return 只读集合，直接基于快照数组，不复制
+     */
+    public Set<Long> getMemberIds(Long groupId) {
+        if (groupId == null) {
+            return Collections.emptySet();
+        }
+
+        return get(groupId).asSet();
+    }
+
+    /**
+     * 获取群组的消息扇出模式
+     *
+     * @param groupId 群组ID
+     * @return 扇出模式，群组不存在时为写扩散
+     */
+    public int getFanoutMode(Long groupId) {
+        if (groupId == null) {
+            return GroupConstant.FANOUT_MODE_WRITE;
+        }
+
+        return get(groupId).fanoutMode;
+    }
+
+    /**
+     * 批量过滤出不在群中的用户，整批只需读取一次快照
+     *
+     * @param groupId 群组ID
+     * @param userIds 待检查的用户ID
+     * @return 不在群中的用户ID，保持原顺序并去重
+     */
+    public List<Long> filterNonMembers(Long groupId, Collection<Long> userIds) {
+        if (groupId == null || userIds == null || userIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Members members = get(groupId);
+        List<Long> result = new ArrayList<>(userIds.size());
+        for (Long userId : userIds) {
+            if (userId != null && members.role(userId) == NOT_MEMBER && !result.contains(userId)) {
+                result.add(userId);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 新成员写入数据库后更新快照
+     *
+     * @param groupId 群组ID
+     * @param added 新加入的成员
+     */
+    public void addMembers(Long groupId, List<GroupMember> added) {
+        if (groupId == null || added == null || added.isEmpty()) {
+            return;
+        }
+
+        long[] userIds = new long[added.size()];
+        byte[] roles = new byte[added.size()];
+        for (int i = 0; i < added.size(); i++) {
+            userIds[i] = added.get(i).getUserId();
+            roles[i] = (byte) (int) added.get(i).getRole();
+        }
+        afterCommit(groupId, members -> members.with(userIds, roles));
+    }
+
+    /**
+     * 成员移出数据库后更新快照
+     *
+     * @param groupId 群组ID
+     * @param userId 用户ID
+     */
+    public void removeMember(Long groupId, Long userId) {
+        if (groupId == null || userId == null) {
+            return;
+        }
+
+        afterCommit(groupId, members -> members.without(userId));
+    }
+
+    /**
+     * 成员角色变更后更新快照
+     *
+     * @param groupId 群组ID
+     * @param userId 用户ID
+     * @param role 新角色
+     */
+    public void updateRole(Long groupId, Long userId, int role) {
+        if (groupId == null || userId == null) {
+            return;
+        }
+
+        afterCommit(groupId, members -> members.with(new long[]{userId}, new byte[]{(byte) role}));
+    }
+
+    /**
+     * 群组扇出模式切换后更新快照
+     *
+     * @param groupId 群组ID
+     * @param fanoutMode 新的扇出模式
+     */
+    public void updateFanoutMode(Long groupId, int fanoutMode) {
+        if (groupId == null) {
+            return;
+        }
+
+        afterCommit(groupId, members -> new Members(members.userIds, members.roles, fanoutMode));
+    }
+
+    /**
+     * 丢弃群组的快照，下次访问时重新加载
+     *
+     * @param groupId 群组ID
+     */
+    public void invalidate(Long groupId) {
+        if (groupId == null) {
+            return;
+        }
+
+        afterCommit(groupId, members -> null);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.lastIndexOf(':');
+        if (separator <= 0 || body.substring(0, separator).equals(instanceId)) {
+            return;
+        }
+        try {
+            groups.invalidate(Long.valueOf(body.substring(separator + 1)));
+        } catch (NumberFormatException e) {
+            logger.warn("无效的群成员缓存失效通知: {}", body);
+        }
+    }
+
+    private Members get(Long groupId) {
+        return groups.get(groupId, this::load);
+    }
+
+    private Members load(Long groupId) {
+        loadCounter.increment();
+        List<GroupMember> rows = groupMemberMapper.selectRolesByGroupId(groupId);
+        long[] userIds = new long[rows.size()];
+        byte[] roles = new byte[rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            userIds[i] = rows.get(i).getUserId();
+            roles[i] = (byte) (int) rows.get(i).getRole();
+        }
+        ChatGroup group = chatGroupMapper.selectById(groupId);
+        int fanoutMode = group != null && group.getFanoutMode() != null
+                ? group.getFanoutMode() : GroupConstant.FANOUT_MODE_WRITE;
+        // 查询结果已按用户ID升序排列
+        return new Members(userIds, roles, fanoutMode);
+    }
+
+    /**
+     * 在当前事务提交后更新本实例的快照并通知其他实例，事务回滚时快照保持不变；没有事务时立即执行
+     *
+     * @param groupId 群组ID
+     * @param update 快照更新函数，返回null表示丢弃快照
+     */
+    private void afterCommit(Long groupId, UnaryOperator<Members> update) {
+        Runnable action = () -> {
+            // 未缓存的群组无需更新，下次访问时从数据库加载
+            groups.asMap().computeIfPresent(groupId, (id, members) -> update.apply(members));
+            stringRedisTemplate.convertAndSend(INVALIDATE_CHANNEL, instanceId + ":" + groupId);
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * 群成员不可变快照
+     */
+    private static final class Members {
+
+        // 升序排列的成员ID
+        final long[] userIds;
+
+        // 与 userIds 一一对应的角色
+        final byte[] roles;
+
+        // 群组的消息扇出模式
+        final int fanoutMode;
+
+        private Set<Long> set;
+
+        Members(long[] userIds, byte[] roles, int fanoutMode) {
+            this.userIds = userIds;
+            this.roles = roles;
+            this.fanoutMode = fanoutMode;
+        }
+
+        int role(long userId) {
+            int index = Arrays.binarySearch(userIds, userId);
+            return index >= 0 ? roles[index] : NOT_MEMBER;
+        }
+
+        /**
+         * 合并新增或变更的成员，已存在的成员覆盖角色
+         */
+        Members with(long[] addIds, byte[] addRoles) {
+            long[] ids = Arrays.copyOf(userIds, userIds.length + addIds.length);
+            byte[] rs = Arrays.copyOf(roles, roles.length + addRoles.length);
+            int size = userIds.length;
+            for (int i = 0; i < addIds.length; i++) {
+                int index = Arrays.binarySearch(ids, 0, size, addIds[i]);
+                if (index >= 0) {
+                    rs[index] = addRoles[i];
+                    continue;
+                }
+                int insertAt = -index - 1;
+                System.arraycopy(ids, insertAt, ids, insertAt + 1, size - insertAt);
+                System.arraycopy(rs, insertAt, rs, insertAt + 1, size - insertAt);
+                ids[insertAt] = addIds[i];
+                rs[insertAt] = addRoles[i];
+                size++;
+            }
+            return new Members(Arrays.copyOf(ids, size), Arrays.copyOf(rs, size), fanoutMode);
+        }
+
+        Members without(long userId) {
+            int index = Arrays.binarySearch(userIds, userId);
+            if (index < 0) {
+                return this;
+            }
+            long[] ids = new long[userIds.length - 1];
+            byte[] rs = new byte[roles.length - 1];
+            System.arraycopy(userIds, 0, ids, 0, index);
+            System.arraycopy(userIds, index + 1, ids, index, ids.length - index);
+            System.arraycopy(roles, 0, rs, 0, index);
+            System.arraycopy(roles, index + 1, rs, index, rs.length - index);
+            return new Members(ids, rs, fanoutMode);
+        }
+
+        Set<Long> asSet() {
+            Set<Long> view = set;
+            if (view == null) {
+                view = new MemberIdSet(userIds);
+                set = view;
+            }
+            return view;
+        }
+    }
+
+    /**
+     * 基于升序数组的只读集合视图
+     */
+    private static final class MemberIdSet extends AbstractSet<Long> {
+
+        private final long[] userIds;
+
+        MemberIdSet(long[] userIds) {
+            this.userIds = userIds;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof Long && Arrays.binarySearch(userIds, (Long) o) >= 0;
+        }
+
+        @Override
+        public int size() {
+            return userIds.length;
+        }
+
+        @Override
+        public Iterator<Long> iterator() {
+            return new Iterator<Long>() {
+                private int index;
+
+                @Override
+                public boolean hasNext() {
+                    return index < userIds.length;
+                }
+
+                @Override
+                public Long next() {
+                    if (index >= userIds.length) {
+                        throw new NoSuchElementException();
+                    }
+                    return userIds[index++];
+                }
+            };
+        }
+    }
+}
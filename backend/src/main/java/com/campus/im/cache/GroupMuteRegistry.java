@@ -0,0 +1,195 @@
+package com.campus.im.cache;
+
+import com.campus.im.entity.GroupMember;
+import com.campus.im.mapper.GroupMemberMapper;
+import com.campus.im.util.TransactionUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 群成员禁言登记表
+ * 每个群组的禁言成员（用户ID到禁言结束时间）由一次查询加载到内存，发送消息时判断禁言无需查询数据库。
+ * 禁言到期由时间轮自动移除；禁言、解除禁言在事务提交后丢弃本实例的登记，并通过Redis发布订阅通知其他实例丢弃，
+ * 登记另有写入后过期时间兜底
+ */
+@Component
+public class GroupMuteRegistry implements MessageListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(GroupMuteRegistry.class);
+
+    private static final String INVALIDATE_CHANNEL = "group:mute:invalidate";
+
+    // 区分发布订阅消息是否来自本实例
+    private final String instanceId = UUID.randomUUID().toString();
+
+    @Autowired
+    private GroupMemberMapper groupMemberMapper;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.im.group-mute.max-groups:10000}")
+    private long maxGroups;
+
+    @Value("${app.im.group-mute.ttl-minutes:30}")
+    private long ttlMinutes;
+
+    @Value("${app.im.group-mute.tick-ms:100}")
+    private long tickMs;
+
+    // key为群组ID，value为禁言成员ID到禁言结束时间（毫秒）的映射
+    private Cache<Long, Map<Long, Long>> groups;
+
+    private HashedWheelTimer wheel;
+
+    @PostConstruct
+    public void init() {
+        groups = Caffeine.newBuilder()
+                .maximumSize(maxGroups)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .build();
+        wheel = new HashedWheelTimer(new DefaultThreadFactory("group-mute-wheel", true),
+                tickMs, TimeUnit.MILLISECONDS, 512);
+        Gauge.builder("im.group.mute.pending", wheel, HashedWheelTimer::pendingTimeouts)
+                .description("时间轮中等待到期的禁言数")
+                .register(meterRegistry);
+
+        listenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATE_CHANNEL));
+    }
+
+    @PreDestroy
+    public void destroy() {
+        wheel.stop();
+    }
+
+    /**
+     * 用户当前是否在群中被禁言
+     *
+     * @param groupId 群组ID
+     * @param userId 用户ID
+     * @return 是否被禁言
+     */
+    public boolean isMuted(Long groupId, Long userId) {
+        if (groupId == null || userId == null) {
+            return false;
+        }
+
+        Long muteEnd = groups.get(groupId, this::load).get(userId);
+        // 时间轮按刻度触发，到期前后一个刻度内以结束时间为准
+        return muteEnd != null && muteEnd > System.currentTimeMillis();
+    }
+
+    /**
+     * 禁言写入数据库后丢弃登记
+     *
+     * @param groupId 群组ID
+     * @param userId 用户ID
+     * @param muteEndTime 禁言结束时间
+     */
+    public void mute(Long groupId, Long userId, LocalDateTime muteEndTime) {
+        if (groupId == null || userId == null || muteEndTime == null) {
+            return;
+        }
+
+        invalidateAfterCommit(groupId);
+    }
+
+    /**
+     * 解除禁言写入数据库后丢弃登记
+     *
+     * @param groupId 群组ID
+     * @param userId 用户ID
+     */
+    public void unmute(Long groupId, Long userId) {
+        if (groupId == null || userId == null) {
+            return;
+        }
+
+        invalidateAfterCommit(groupId);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.lastIndexOf(':');
+        if (separator <= 0 || body.substring(0, separator).equals(instanceId)) {
+            return;
+        }
+        try {
+            groups.invalidate(Long.valueOf(body.substring(separator + 1)));
+        } catch (NumberFormatException e) {
+            logger.warn("无效的群禁言失效通知: {}", body);
+        }
+    }
+
+    private Map<Long, Long> load(Long groupId) {
+        List<GroupMember> muted = groupMemberMapper.selectMutedMembers(groupId);
+        Map<Long, Long> mutes = new ConcurrentHashMap<>(Math.max(muted.size() * 2, 4));
+        for (GroupMember member : muted) {
+            long muteEnd = toMillis(member.getMuteEndTime());
+            mutes.put(member.getUserId(), muteEnd);
+            schedule(mutes, member.getUserId(), muteEnd);
+        }
+        return mutes;
+    }
+
+    /**
+     * 在时间轮中登记禁言到期；登记过期后会重新加载，只需为过期前到期的禁言登记，长期禁言不会长时间占用时间轮
+     */
+    private void schedule(Map<Long, Long> mutes, Long userId, long muteEnd) {
+        long delay = muteEnd - System.currentTimeMillis();
+        if (delay > TimeUnit.MINUTES.toMillis(ttlMinutes)) {
+            return;
+        }
+        // 只移除本次登记的禁言，期间被重新禁言的不受影响
+        wheel.newTimeout(timeout -> mutes.remove(userId, muteEnd), Math.max(delay, 0L), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 在当前事务提交后丢弃本实例的登记并通知其他实例，没有事务时立即执行。
+     * 不在原登记上修改：提交前开始的加载读到的是旧数据，只有丢弃才能保证它不会留在缓存中；
+     * 正在进行的加载会先完成再被丢弃，之后的访问从数据库重新加载
+     */
+    private void invalidateAfterCommit(Long groupId) {
+        TransactionUtil.afterCommit(() -> {
+            groups.invalidate(groupId);
+            stringRedisTemplate.convertAndSend(INVALIDATE_CHANNEL, instanceId + ":" + groupId);
+        });
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
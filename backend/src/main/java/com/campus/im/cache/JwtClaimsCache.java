@@ -0,0 +1,146 @@
+package com.campus.im.cache;
+
+import com.campus.im.util.JwtUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 已验证JWT缓存
+ * 以令牌的SHA-256摘要为key缓存验签并解析后的声明，直到令牌过期，同一令牌的后续请求不再做HMAC验签和JSON解析；
+ * 另维护已确认存在的手机号集合，自动注册检查对每个手机号只需进行一次。
+ * 声明对象是可变的，缓存中的对象不交给调用方，每次命中返回一份副本，调用方的修改不会影响其他请求
+ */
+@Component
+public class JwtClaimsCache {
+
+    // 没有过期时间的令牌最长缓存时间
+    private static final long DEFAULT_TTL_NANOS = TimeUnit.HOURS.toNanos(1);
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.im.jwt-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.im.jwt-cache.max-size:100000}")
+    private long maxSize;
+
+    @Value("${app.im.jwt-cache.known-user-max-size:100000}")
+    private long knownUserMaxSize;
+
+    private Cache<String, Claims> claimsCache;
+
+    private Cache<String, Boolean> knownUsers;
+
+    private Counter hitCounter;
+
+    private Counter missCounter;
+
+    @PostConstruct
+    public void init() {
+        claimsCache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, Claims>() {
+                    @Override
+                    public long expireAfterCreate(String key, Claims claims, long currentTime) {
+                        Date expiration = claims.getExpiration();
+                        if (expiration == null) {
+                            return DEFAULT_TTL_NANOS;
+                        }
+                        long remainingMillis = expiration.getTime() - System.currentTimeMillis();
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(remainingMillis, 0L));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+        knownUsers = Caffeine.newBuilder()
+                .maximumSize(knownUserMaxSize)
+                .build();
+        hitCounter = Counter.builder("im.auth.jwt-cache.hit")
+                .description("命中已验证令牌缓存的次数")
+                .register(meterRegistry);
+        missCounter = Counter.builder("im.auth.jwt-cache.miss")
+                .description("需要完整验签解析令牌的次数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 验证并解析令牌，验证失败时抛出与 JwtUtil.parseJWT 相同的异常
+     *
+     * @param token JWT令牌
+     * @return 令牌声明，每次调用返回新的对象
+     */
+    public Claims parse(String token) {
+        if (!enabled) {
+            return JwtUtil.parseJWT(token);
+        }
+
+        String key = digest(token);
+        Claims claims = claimsCache.getIfPresent(key);
+        if (claims != null) {
+            hitCounter.increment();
+            return Jwts.claims(claims);
+        }
+
+        missCounter.increment();
+        claims = JwtUtil.parseJWT(token);
+        claimsCache.put(key, claims);
+        return Jwts.claims(claims);
+    }
+
+    /**
+     * 手机号对应的用户是否已确认存在
+     *
+     * @param phone 手机号
+     * @return 是否已确认存在
+     */
+    public boolean isKnownUser(String phone) {
+        return enabled && knownUsers.getIfPresent(phone) != null;
+    }
+
+    /**
+     * 记录手机号对应的用户已存在
+     *
+     * @param phone 手机号
+     */
+    public void markKnownUser(String phone) {
+        if (enabled) {
+            knownUsers.put(phone, Boolean.TRUE);
+        }
+    }
+
+    private static String digest(String token) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = messageDigest.digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.campus.im.cache;
+
+import com.campus.im.dto.GroupReadStateDTO;
+import com.campus.im.mapper.GroupMemberMapper;
+import com.campus.im.util.TransactionUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 用户所在读扩散群组（含超级群）的阅读进度缓存
+ * <ul>
+ *     <li>成员关系、已读序列号与免打扰状态按用户缓存在进程内，写入后定时过期；成员变动、标记已读、
+ *     免打扰修改在事务提交后清除本实例的缓存，并通过Redis发布订阅通知其他实例</li>
+ *     <li>群最新序列号随每条消息变化，不进入用户缓存：群消息提交后写入Redis哈希 group:last-seq，
+ *     读取时一次HMGET取出用户全部群组的最新值</li>
+ * </ul>
+ * 收件箱与未读总数的读取因此不再查询数据库，只在缓存未命中时查询一次
+ */
+@Component
+public class ReadFanoutStateCache implements MessageListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReadFanoutStateCache.class);
+
+    private static final String LAST_SEQ_KEY = "group:last-seq";
+
+    private static final String INVALIDATE_CHANNEL = "read-fanout:cache:invalidate";
+
+    // KEYS[1]=群最新序列号哈希 ARGV[1]=群组ID ARGV[2]=序列号，只向前推进
+    private static final RedisScript<Long> ADVANCE_SCRIPT = new DefaultRedisScript<>(
+            "local current = tonumber(redis.call('HGET', KEYS[1], ARGV[1]) or '0') " +
+            "if current >= tonumber(ARGV[2]) then return 0 end " +
+            "redis.call('HSET', KEYS[1], ARGV[1], ARGV[2]) " +
+            "return 1",
+            Long.class);
+
+    // 区分发布订阅消息是否来自本实例
+    private final String instanceId = UUID.randomUUID().toString();
+
+    @Autowired
+    private GroupMemberMapper groupMemberMapper;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.im.read-fanout-cache.max-users:100000}")
+    private long maxUsers;
+
+    @Value("${app.im.read-fanout-cache.ttl-seconds:60}")
+    private long ttlSeconds;
+
+    // key为用户ID，value为数据库中的阅读进度，其中的群最新序列号只是加载时的值
+    private Cache<Long, List<GroupReadStateDTO>> states;
+
+    @PostConstruct
+    public void init() {
+        states = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+        Gauge.builder("im.read-fanout.cache.size", states, Cache::estimatedSize)
+                .description("进程内缓存读扩散阅读进度的用户数")
+                .register(meterRegistry);
+
+        listenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATE_CHANNEL));
+    }
+
+    /**
+     * 获取用户所在读扩散群组的阅读进度，群最新序列号为当前值
+     *
+     * @param userId 用户ID
+     * @return 阅读进度列表，每次调用返回新的对象
+     */
+    public List<GroupReadStateDTO> get(Long userId) {
+        if (userId == null) {
+            return Collections.emptyList();
+        }
+
+        List<GroupReadStateDTO> cached = states.get(userId, groupMemberMapper::selectReadStatesByUserId);
+        if (cached.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<Object> groupIds = new ArrayList<>(cached.size());
+        for (GroupReadStateDTO state : cached) {
+            groupIds.add(String.valueOf(state.getGroupId()));
+        }
+        List<Object> lastSeqs = stringRedisTemplate.opsForHash().multiGet(LAST_SEQ_KEY, groupIds);
+
+        List<GroupReadStateDTO> result = new ArrayList<>(cached.size());
+        for (int i = 0; i < cached.size(); i++) {
+            GroupReadStateDTO state = cached.get(i);
+            GroupReadStateDTO copy = new GroupReadStateDTO();
+            copy.setGroupId(state.getGroupId());
+            copy.setLastReadSeq(state.getLastReadSeq());
+            copy.setIsMuted(state.getIsMuted());
+            // Redis中没有时（尚未有新消息或数据丢失）以加载时的数据库值为准
+            long lastSeq = state.getLastSeq() == null ? 0L : state.getLastSeq();
+            Object current = i < lastSeqs.size() ? lastSeqs.get(i) : null;
+            if (current != null) {
+                lastSeq = Math.max(lastSeq, Long.parseLong(current.toString()));
+            }
+            copy.setLastSeq(lastSeq);
+            result.add(copy);
+        }
+        return result;
+    }
+
+    /**
+     * 群消息提交后推进群最新序列号
+     *
+     * @param groupId 群组ID
+     * @param seq 消息序列号
+     */
+    public void advanceLastSeq(Long groupId, Long seq) {
+        if (groupId == null || seq == null) {
+            return;
+        }
+
+        stringRedisTemplate.execute(ADVANCE_SCRIPT, Collections.singletonList(LAST_SEQ_KEY),
+                String.valueOf(groupId), String.valueOf(seq));
+    }
+
+    /**
+     * 在当前事务提交后清除用户的阅读进度并通知其他实例，没有事务时立即执行
+     *
+     * @param userId 用户ID
+     */
+    public void invalidate(Long userId) {
+        if (userId == null) {
+            return;
+        }
+
+        invalidateAll(Collections.singletonList(userId));
+    }
+
+    /**
+     * 在当前事务提交后批量清除用户的阅读进度并通知其他实例，没有事务时立即执行
+     *
+     * @param userIds 用户ID集合
+     */
+    public void invalidateAll(Collection<Long> userIds) {
+        if (userIds == null || userIds.isEmpty()) {
+            return;
+        }
+
+        List<Long> users = new ArrayList<>(userIds);
+        TransactionUtil.afterCommit(() -> {
+            states.invalidateAll(users);
+            StringBuilder body = new StringBuilder(instanceId).append(':');
+            for (int i = 0; i < users.size(); i++) {
+                if (i > 0) {
+                    body.append(',');
+                }
+                body.append(users.get(i));
+            }
+            stringRedisTemplate.convertAndSend(INVALIDATE_CHANNEL, body.toString());
+        });
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.lastIndexOf(':');
+        if (separator <= 0 || body.substring(0, separator).equals(instanceId)) {
+            return;
+        }
+        try {
+            List<Long> users = new ArrayList<>();
+            for (String id : body.substring(separator + 1).split(",")) {
+                users.add(Long.valueOf(id));
+            }
+            states.invalidateAll(users);
+        } catch (NumberFormatException e) {
+            logger.warn("无效的读扩散阅读进度失效通知: {}", body);
+        }
+    }
+}
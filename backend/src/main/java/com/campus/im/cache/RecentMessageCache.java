@@ -0,0 +1,368 @@
+package com.campus.im.cache;
+
+import com.campus.im.common.constant.MessageConstant;
+import com.campus.im.entity.Message;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 会话最近消息窗口缓存
+ * 按会话键缓存每个热点会话最新的N条消息（紧凑的不可变结构），打开会话时的首页历史无需查询MySQL。
+ * <ul>
+ *     <li>读取未命中时由调用方从数据库加载并回填</li>
+ *     <li>发送消息时追加到已有窗口</li>
+ *     <li>撤回、删除时使整个窗口失效</li>
+ *     <li>所有窗口的估算内存超过上限时，按最近访问时间淘汰</li>
+ * </ul>
+ * 缓存只在本进程内有效，多实例部署时需配合集群失效通知
+ */
+@Component
+public class RecentMessageCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(RecentMessageCache.class);
+
+    // 版本号分段数，回填前后比较版本号以丢弃并发写入期间加载的旧数据
+    private static final int STAMP_STRIPES = 1024;
+
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.im.message.recent-cache.enabled:true}")
+    private boolean enabled;
+
+    // 每个会话缓存的消息条数
+    @Value("${app.im.message.recent-cache.window-size:50}")
+    private int windowSize;
+
+    // 所有窗口的估算内存上限（字节）
+    @Value("${app.im.message.recent-cache.max-bytes:67108864}")
+    private long maxBytes;
+
+    private final Map<Long, Window> windows = new ConcurrentHashMap<>();
+
+    private final AtomicLongArray stamps = new AtomicLongArray(STAMP_STRIPES);
+
+    private final AtomicLong totalBytes = new AtomicLong();
+
+    // 访问时钟，用于LRU淘汰
+    private final AtomicLong clock = new AtomicLong();
+
+    private final Object evictionLock = new Object();
+
+    private Counter hitCounter;
+
+    private Counter missCounter;
+
+    private Counter evictionCounter;
+
+    @PostConstruct
+    public void init() {
+        hitCounter = Counter.builder("im.message.recent-cache.hit")
+                .description("最近消息缓存命中次数")
+                .register(meterRegistry);
+        missCounter = Counter.builder("im.message.recent-cache.miss")
+                .description("最近消息缓存未命中次数")
+                .register(meterRegistry);
+        evictionCounter = Counter.builder("im.message.recent-cache.eviction")
+                .description("因内存上限被淘汰的会话窗口数")
+                .register(meterRegistry);
+        Gauge.builder("im.message.recent-cache.hit.ratio", this, RecentMessageCache::hitRatio)
+                .description("最近消息缓存命中率")
+                .register(meterRegistry);
+        Gauge.builder("im.message.recent-cache.bytes", totalBytes, AtomicLong::get)
+                .description("最近消息缓存估算内存占用")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("im.message.recent-cache.conversations", windows, Map::size)
+                .description("已缓存的会话数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 读取会话最新的消息
+     *
+     * @param conversationKey 会话键
+     * @param limit 数量
+     * @param order 返回结果的排序方式
+     * @return 消息副本列表（调用方可修改），未命中时返回null
+     */
+    public List<Message> getLatest(long conversationKey, int limit, Comparator<Message> order) {
+        if (!enabled || limit <= 0) {
+            return null;
+        }
+
+        Window window = windows.get(conversationKey);
+        // 窗口不足limit条且不是会话全部消息时，无法确定更早的消息，视为未命中
+        if (window == null || (window.entries.length < limit && !window.complete)) {
+            missCounter.increment();
+            return null;
+        }
+
+        window.lastAccess = clock.incrementAndGet();
+        hitCounter.increment();
+
+        List<Message> messages = new ArrayList<>(window.entries.length);
+        for (CachedMessage entry : window.entries) {
+            messages.add(entry.toMessage());
+        }
+        messages.sort(order);
+        return messages.size() > limit ? new ArrayList<>(messages.subList(0, limit)) : messages;
+    }
+
+    /**
+     * 获取会话当前版本号，回填前调用
+     *
+     * @param conversationKey 会话键
+     * @return 版本号
+     */
+    public long stamp(long conversationKey) {
+        return stamps.get(stripe(conversationKey));
+    }
+
+    /**
+     * 用数据库查询结果回填窗口；加载期间会话有新写入或失效时放弃回填
+     *
+     * @param conversationKey 会话键
+     * @param latest 从数据库加载的最新消息（任意顺序）
+     * @param requested 加载时请求的条数，结果不足该条数说明已包含会话全部消息
+     * @param stamp 加载前获取的版本号
+     */
+    public void fill(long conversationKey, List<Message> latest, int requested, long stamp) {
+        if (!enabled || latest == null) {
+            return;
+        }
+
+        CachedMessage[] entries = latest.stream()
+                .map(CachedMessage::of)
+                .sorted(Comparator.comparingLong(CachedMessage::seq))
+                .toArray(CachedMessage[]::new);
+        if (entries.length > windowSize) {
+            entries = Arrays.copyOfRange(entries, entries.length - windowSize, entries.length);
+        }
+        Window fresh = new Window(entries, latest.size() < requested, clock.incrementAndGet());
+
+        windows.compute(conversationKey, (key, old) -> {
+            if (old != null || stamps.get(stripe(key)) != stamp) {
+                return old;
+            }
+            totalBytes.addAndGet(fresh.bytes);
+            return fresh;
+        });
+        evictIfNecessary();
+    }
+
+    /**
+     * 新消息提交后追加到会话窗口；窗口不存在时只更新版本号，使提交前开始的回填作废
+     *
+     * @param message 消息
+     */
+    public void append(Message message) {
+        if (!enabled || message == null || message.getConversationKey() == null) {
+            return;
+        }
+
+        CachedMessage entry = CachedMessage.of(message);
+        windows.compute(message.getConversationKey(), (key, old) -> {
+            if (old == null) {
+                stamps.incrementAndGet(stripe(key));
+                return null;
+            }
+            Window appended = old.append(entry, windowSize);
+            totalBytes.addAndGet(appended.bytes - old.bytes);
+            return appended;
+        });
+        evictIfNecessary();
+    }
+
+    /**
+     * 使会话窗口失效（撤回、删除等修改历史消息的操作提交后调用）
+     *
+     * @param conversationKey 会话键
+     */
+    public void invalidate(Long conversationKey) {
+        if (!enabled || conversationKey == null) {
+            return;
+        }
+
+        windows.compute(conversationKey, (key, old) -> {
+            stamps.incrementAndGet(stripe(key));
+            if (old != null) {
+                totalBytes.addAndGet(-old.bytes);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 单次回填建议加载的条数
+     *
+     * @param limit 请求的条数
+     * @return 加载条数
+     */
+    public int loadSize(int limit) {
+        return enabled ? Math.max(limit, windowSize) : limit;
+    }
+
+    /**
+     * 估算内存超过上限时，淘汰最久未访问的窗口直到降至上限的90%
+     */
+    private void evictIfNecessary() {
+        if (totalBytes.get() <= maxBytes) {
+            return;
+        }
+
+        synchronized (evictionLock) {
+            if (totalBytes.get() <= maxBytes) {
+                return;
+            }
+
+            List<Map.Entry<Long, Window>> candidates = new ArrayList<>(windows.entrySet());
+            candidates.sort(Comparator.comparingLong(e -> e.getValue().lastAccess));
+            long target = maxBytes / 10 * 9;
+            int evicted = 0;
+            for (Map.Entry<Long, Window> candidate : candidates) {
+                if (totalBytes.get() <= target) {
+                    break;
+                }
+                Window window = candidate.getValue();
+                if (windows.remove(candidate.getKey(), window)) {
+                    totalBytes.addAndGet(-window.bytes);
+                    evicted++;
+                }
+            }
+            evictionCounter.increment(evicted);
+            logger.debug("最近消息缓存淘汰完成 - 淘汰会话数: {}, 当前占用: {} bytes", evicted, totalBytes.get());
+        }
+    }
+
+    private double hitRatio() {
+        double hits = hitCounter.count();
+        double total = hits + missCounter.count();
+        return total == 0 ? 0 : hits / total;
+    }
+
+    private static int stripe(long conversationKey) {
+        return (int) ((conversationKey ^ (conversationKey >>> 32)) & (STAMP_STRIPES - 1));
+    }
+
+    /**
+     * 单个会话的消息窗口，不可变，修改时整体替换
+     */
+    private static final class Window {
+
+        // 按序列号升序
+        final CachedMessage[] entries;
+
+        // 窗口是否包含会话的全部消息
+        final boolean complete;
+
+        final long bytes;
+
+        volatile long lastAccess;
+
+        Window(CachedMessage[] entries, boolean complete, long lastAccess) {
+            this.entries = entries;
+            this.complete = complete;
+            this.lastAccess = lastAccess;
+            long size = 64;
+            for (CachedMessage entry : entries) {
+                size += entry.estimateBytes();
+            }
+            this.bytes = size;
+        }
+
+        Window append(CachedMessage entry, int windowSize) {
+            // 提交后追加时，窗口可能已由提交后的回填加载了这条消息
+            for (CachedMessage existing : entries) {
+                if (existing.id() == entry.id()) {
+                    return this;
+                }
+            }
+            int keep = Math.min(entries.length, windowSize - 1);
+            CachedMessage[] next = new CachedMessage[keep + 1];
+            System.arraycopy(entries, entries.length - keep, next, 0, keep);
+            next[keep] = entry;
+            // 并发发送时序列号可能乱序到达，保持窗口有序
+            for (int i = keep; i > 0 && next[i - 1].seq() > next[i].seq(); i--) {
+                CachedMessage tmp = next[i - 1];
+                next[i - 1] = next[i];
+                next[i] = tmp;
+            }
+            return new Window(next, complete && entries.length < windowSize, lastAccess);
+        }
+    }
+
+    /**
+     * 紧凑的消息结构，只保留历史列表需要的字段
+     */
+    private record CachedMessage(long id, long senderId, long receiverId, long conversationKey, long seq,
+                                 byte conversationType, byte contentType, boolean recalled,
+                                 String content, String extra, long sendTimeMillis) {
+
+        static CachedMessage of(Message message) {
+            return new CachedMessage(
+                    message.getId(),
+                    message.getSenderId(),
+                    message.getReceiverId(),
+                    message.getConversationKey() == null ? 0L : message.getConversationKey(),
+                    message.getSeq() == null ? 0L : message.getSeq(),
+                    message.getConversationType().byteValue(),
+                    message.getContentType().byteValue(),
+                    message.getIsRecalled() != null && message.getIsRecalled() == MessageConstant.IS_RECALLED_YES,
+                    message.getContent(),
+                    message.getExtra(),
+                    message.getSendTime().atZone(ZONE).toInstant().toEpochMilli());
+        }
+
+        Message toMessage() {
+            Message message = new Message();
+            message.setId(id);
+            message.setSenderId(senderId);
+            message.setReceiverId(receiverId);
+            message.setConversationKey(conversationKey);
+            message.setSeq(seq);
+            message.setConversationType((int) conversationType);
+            message.setContentType((int) contentType);
+            message.setContent(content);
+            message.setExtra(extra);
+            message.setIsRecalled(recalled ? MessageConstant.IS_RECALLED_YES : MessageConstant.IS_RECALLED_NO);
+            // 窗口只保存正常状态的消息，删除会使窗口失效
+            message.setStatus(MessageConstant.STATUS_NORMAL);
+            message.setSendTime(LocalDateTime.ofInstant(Instant.ofEpochMilli(sendTimeMillis), ZONE));
+            return message;
+        }
+
+        long estimateBytes() {
+            // 对象头与基本类型字段约88字节，字符串按每字符2字节估算
+            long size = 88;
+            if (content != null) {
+                size += 40 + 2L * content.length();
+            }
+            if (extra != null) {
+                size += 40 + 2L * extra.length();
+            }
+            return size;
+        }
+    }
+}
@@ -0,0 +1,366 @@
+package com.campus.im.cache;
+
+import com.campus.im.entity.User;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 用户资料两级缓存
+ * <ul>
+ *     <li>L1：进程内缓存，按条数限制大小，写入后定时过期</li>
+ *     <li>L2：Redis哈希 user:profile:{id}，多实例共享</li>
+ * </ul>
+ * 手机号不可修改，手机号到用户ID的映射无需失效；资料修改后删除L2并通过Redis发布订阅通知所有实例清除L1。
+ * 最后活跃时间随心跳频繁变化，不会触发失效，缓存中的值可能滞后
+ */
+@Component
+public class UserCache implements MessageListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserCache.class);
+
+    // Redis key
+    private static final String PROFILE_KEY_PREFIX = "user:profile:";
+    private static final String PHONE_KEY_PREFIX = "user:phone:";
+    private static final String INVALIDATE_CHANNEL = "user:cache:invalidate";
+
+    // 资料哈希字段
+    private static final String FIELD_ID = "id";
+    private static final String FIELD_PHONE = "phone";
+    private static final String FIELD_NICKNAME = "nickname";
+    private static final String FIELD_AVATAR = "avatar";
+    private static final String FIELD_STATUS = "status";
+    private static final String FIELD_LAST_ACTIVE_TIME = "lastActiveTime";
+    private static final String FIELD_CREATED_AT = "createdAt";
+    private static final String FIELD_UPDATED_AT = "updatedAt";
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.im.user-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.im.user-cache.local-max-size:100000}")
+    private long localMaxSize;
+
+    @Value("${app.im.user-cache.local-ttl-seconds:60}")
+    private long localTtlSeconds;
+
+    @Value("${app.im.user-cache.redis-ttl-seconds:1800}")
+    private long redisTtlSeconds;
+
+    private Cache<Long, User> users;
+
+    private Cache<String, Long> phoneIds;
+
+    private Counter localHitCounter;
+
+    private Counter redisHitCounter;
+
+    private Counter missCounter;
+
+    @PostConstruct
+    public void init() {
+        users = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(localTtlSeconds))
+                .build();
+        phoneIds = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .build();
+        localHitCounter = Counter.builder("im.user.cache.hit")
+                .tag("level", "local")
+                .description("用户资料进程内缓存命中次数")
+                .register(meterRegistry);
+        redisHitCounter = Counter.builder("im.user.cache.hit")
+                .tag("level", "redis")
+                .description("用户资料Redis缓存命中次数")
+                .register(meterRegistry);
+        missCounter = Counter.builder("im.user.cache.miss")
+                .description("用户资料缓存未命中、需查询数据库的次数")
+                .register(meterRegistry);
+        Gauge.builder("im.user.cache.size", users, Cache::estimatedSize)
+                .description("进程内缓存的用户数")
+                .register(meterRegistry);
+
+        if (enabled) {
+            listenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATE_CHANNEL));
+        }
+    }
+
+    /**
+     * 缓存是否开启
+     *
+     * @return 是否开启
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 按用户ID读取缓存
+     *
+     * @param id 用户ID
+     * @return 用户副本，未命中返回null
+     */
+    public User get(Long id) {
+        User user = users.getIfPresent(id);
+        if (user != null) {
+            localHitCounter.increment();
+            return copy(user);
+        }
+
+        Map<Object, Object> hash = stringRedisTemplate.opsForHash().entries(PROFILE_KEY_PREFIX + id);
+        user = fromHash(hash);
+        if (user == null) {
+            missCounter.increment();
+            return null;
+        }
+
+        redisHitCounter.increment();
+        users.put(id, user);
+        return copy(user);
+    }
+
+    /**
+     * 按手机号查询用户ID
+     *
+     * @param phone 手机号
+     * @return 用户ID，未命中返回null
+     */
+    public Long getIdByPhone(String phone) {
+        Long id = phoneIds.getIfPresent(phone);
+        if (id != null) {
+            return id;
+        }
+
+        String value = stringRedisTemplate.opsForValue().get(PHONE_KEY_PREFIX + phone);
+        if (value == null) {
+            return null;
+        }
+        id = Long.valueOf(value);
+        phoneIds.put(phone, id);
+        return id;
+    }
+
+    /**
+     * 批量读取缓存，L1未命中的一次管道从L2读取
+     *
+     * @param ids 用户ID集合
+     * @return 命中的用户副本，key为用户ID
+     */
+    public Map<Long, User> getAll(Collection<Long> ids) {
+        Map<Long, User> result = new HashMap<>(ids.size() * 2);
+        List<Long> remoteIds = new ArrayList<>();
+        for (Long id : ids) {
+            User user = users.getIfPresent(id);
+            if (user != null) {
+                result.put(id, copy(user));
+            } else {
+                remoteIds.add(id);
+            }
+        }
+        localHitCounter.increment(result.size());
+        if (remoteIds.isEmpty()) {
+            return result;
+        }
+
+        List<Object> hashes = stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                for (Long id : remoteIds) {
+                    ops.opsForHash().entries(PROFILE_KEY_PREFIX + id);
+                }
+                return null;
+            }
+        });
+
+        int hits = 0;
+        for (int i = 0; i < remoteIds.size() && i < hashes.size(); i++) {
+            Object hash = hashes.get(i);
+            User user = hash instanceof Map ? fromHash((Map<?, ?>) hash) : null;
+            if (user != null) {
+                users.put(user.getId(), user);
+                result.put(user.getId(), copy(user));
+                hits++;
+            }
+        }
+        redisHitCounter.increment(hits);
+        missCounter.increment(remoteIds.size() - hits);
+        return result;
+    }
+
+    /**
+     * 写入两级缓存
+     *
+     * @param user 从数据库加载的用户
+     */
+    public void put(User user) {
+        putAll(Collections.singletonList(user));
+    }
+
+    /**
+     * 批量写入两级缓存（一次管道写Redis）
+     *
+     * @param userList 从数据库加载的用户列表
+     */
+    public void putAll(List<User> userList) {
+        List<User> valid = new ArrayList<>(userList.size());
+        for (User user : userList) {
+            if (user != null && user.getId() != null) {
+                User cached = copy(user);
+                users.put(cached.getId(), cached);
+                if (cached.getPhone() != null) {
+                    phoneIds.put(cached.getPhone(), cached.getId());
+                }
+                valid.add(cached);
+            }
+        }
+        if (valid.isEmpty()) {
+            return;
+        }
+
+        stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                for (User user : valid) {
+                    String key = PROFILE_KEY_PREFIX + user.getId();
+                    ops.opsForHash().putAll(key, toHash(user));
+                    ops.expire(key, redisTtlSeconds, TimeUnit.SECONDS);
+                    if (user.getPhone() != null) {
+                        ops.opsForValue().set(PHONE_KEY_PREFIX + user.getPhone(),
+                                String.valueOf(user.getId()), redisTtlSeconds, TimeUnit.SECONDS);
+                    }
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * 用户资料修改后删除L2并通知所有实例清除L1
+     *
+     * @param id 用户ID
+     */
+    public void invalidate(Long id) {
+        if (id == null) {
+            return;
+        }
+
+        users.invalidate(id);
+        stringRedisTemplate.delete(PROFILE_KEY_PREFIX + id);
+        stringRedisTemplate.convertAndSend(INVALIDATE_CHANNEL, String.valueOf(id));
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        try {
+            users.invalidate(Long.valueOf(body));
+        } catch (NumberFormatException e) {
+            logger.warn("无效的用户缓存失效通知: {}", body);
+        }
+    }
+
+    private static Map<String, String> toHash(User user) {
+        Map<String, String> hash = new HashMap<>(16);
+        hash.put(FIELD_ID, String.valueOf(user.getId()));
+        putIfNotNull(hash, FIELD_PHONE, user.getPhone());
+        putIfNotNull(hash, FIELD_NICKNAME, user.getNickname());
+        putIfNotNull(hash, FIELD_AVATAR, user.getAvatar());
+        putIfNotNull(hash, FIELD_STATUS, user.getStatus());
+        putIfNotNull(hash, FIELD_LAST_ACTIVE_TIME, user.getLastActiveTime());
+        putIfNotNull(hash, FIELD_CREATED_AT, user.getCreatedAt());
+        putIfNotNull(hash, FIELD_UPDATED_AT, user.getUpdatedAt());
+        return hash;
+    }
+
+    private static void putIfNotNull(Map<String, String> hash, String field, Object value) {
+        if (value != null) {
+            hash.put(field, value.toString());
+        }
+    }
+
+    private static User fromHash(Map<?, ?> hash) {
+        Object id = hash.get(FIELD_ID);
+        if (id == null) {
+            return null;
+        }
+
+        User user = new User();
+        user.setId(Long.valueOf(id.toString()));
+        user.setPhone(string(hash.get(FIELD_PHONE)));
+        user.setNickname(string(hash.get(FIELD_NICKNAME)));
+        user.setAvatar(string(hash.get(FIELD_AVATAR)));
+        String status = string(hash.get(FIELD_STATUS));
+        user.setStatus(status != null ? Integer.valueOf(status) : null);
+        user.setLastActiveTime(time(hash.get(FIELD_LAST_ACTIVE_TIME)));
+        user.setCreatedAt(time(hash.get(FIELD_CREATED_AT)));
+        user.setUpdatedAt(time(hash.get(FIELD_UPDATED_AT)));
+        return user;
+    }
+
+    private static String string(Object value) {
+        return value != null ? value.toString() : null;
+    }
+
+    private static LocalDateTime time(Object value) {
+        return value != null ? LocalDateTime.parse(value.toString()) : null;
+    }
+
+    /**
+     * 缓存中的对象不直接交给调用方，避免调用方修改后污染缓存
+     *
+     * @param user 缓存对象
+     * @return 副本
+     */
+    private static User copy(User user) {
+        User copy = new User();
+        copy.setId(user.getId());
+        copy.setPhone(user.getPhone());
+        copy.setNickname(user.getNickname());
+        copy.setAvatar(user.getAvatar());
+        copy.setStatus(user.getStatus());
+        copy.setLastActiveTime(user.getLastActiveTime());
+        copy.setCreatedAt(user.getCreatedAt());
+        copy.setUpdatedAt(user.getUpdatedAt());
+        return copy;
+    }
+}
@@ -34,4 +34,24 @@ public class GroupConstant {
      * 默认最大成员数
      */
     public static final int DEFAULT_MAX_MEMBER_COUNT = 200;
+    
+    /**
+     * 超级群最大成员数
+     */
+    public static final int SUPERGROUP_MAX_MEMBER_COUNT = 20000;
+    
+    /**
+     * 扇出模式：写扩散，每条消息更新每个成员的会话与未读数
+     */
+    public static final int FANOUT_MODE_WRITE = 0;
+    
+    /**
+     * 扇出模式：读扩散，群只维护最新序列号，未读数在读取时按成员已读序列号计算
+     */
+    public static final int FANOUT_MODE_READ = 1;
+    
+    /**
+     * 扇出模式：超级群，在读扩散基础上只推送群频道订阅，不再逐个投递在线成员的私有队列
+     */
+    public static final int FANOUT_MODE_SUPER = 2;
 } 
\ No newline at end of file
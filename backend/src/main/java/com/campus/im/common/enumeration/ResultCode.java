@@ -35,6 +35,11 @@ public enum ResultCode {
      */
     PARAM_ERROR(400, "参数错误"),
     
+    /**
+     * 请求过于频繁
+     */
+    TOO_MANY_REQUESTS(429, "请求过于频繁"),
+    
     /**
      * 服务器内部错误
      */
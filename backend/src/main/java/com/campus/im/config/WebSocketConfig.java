@@ -1,31 +1,54 @@
 package com.campus.im.config;
 
+import com.campus.im.cache.GroupMemberCache;
+import com.campus.im.cache.JwtClaimsCache;
+import com.campus.im.common.Result;
 import com.campus.im.common.constant.JwtConstant;
-import com.campus.im.util.JwtUtil;
+import com.campus.im.common.enumeration.ResultCode;
+import com.campus.im.entity.User;
+import com.campus.im.service.MessageDeliveryService;
+import com.campus.im.service.UserService;
+import com.campus.im.websocket.ConversationKeyResolver;
+import com.campus.im.websocket.EncodedPayloadMessageConverter;
+import com.campus.im.websocket.OrderedChannelExecutor;
+import com.campus.im.websocket.SlowConsumerHandlerDecorator;
+import com.campus.im.websocket.StompRateLimitInterceptor;
 import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.http.server.ServerHttpRequest;
 import org.springframework.http.server.ServerHttpResponse;
 import org.springframework.http.server.ServletServerHttpRequest;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.converter.MessageConverter;
 import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.messaging.simp.stomp.StompCommand;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.messaging.support.ChannelInterceptor;
 import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.util.StringUtils;
 import org.springframework.web.socket.WebSocketHandler;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 import org.springframework.web.socket.server.HandshakeInterceptor;
 
 import java.security.Principal;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ThreadPoolExecutor;
 
 /**
  * WebSocket配置类
@@ -36,6 +59,71 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     private static final Logger logger = LoggerFactory.getLogger(WebSocketConfig.class);
 
+    // 群频道订阅地址前缀，后接群组ID
+    private static final String GROUP_TOPIC_PREFIX = "/topic/group.";
+
+    @Autowired
+    private JwtClaimsCache jwtClaimsCache;
+
+    @Autowired
+    private GroupMemberCache groupMemberCache;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private StompRateLimitInterceptor rateLimitInterceptor;
+
+    @Autowired
+    private ConversationKeyResolver conversationKeyResolver;
+
+    // 投递服务依赖消息模板，而消息模板由本配置创建，延迟注入以避免循环依赖
+    @Autowired
+    @Lazy
+    private MessageDeliveryService messageDeliveryService;
+
+    @Value("${app.im.websocket.inbound.core-pool-size:8}")
+    private int inboundCorePoolSize;
+
+    @Value("${app.im.websocket.inbound.max-pool-size:32}")
+    private int inboundMaxPoolSize;
+
+    @Value("${app.im.websocket.inbound.queue-capacity:10000}")
+    private int inboundQueueCapacity;
+
+    @Value("${app.im.websocket.inbound.ordered.enabled:true}")
+    private boolean orderedInbound;
+
+    @Value("${app.im.websocket.inbound.ordered.lanes:32}")
+    private int orderedLanes;
+
+    @Value("${app.im.websocket.inbound.ordered.lane-queue-capacity:1000}")
+    private int orderedLaneQueueCapacity;
+
+    @Value("${app.im.websocket.inbound.ordered.lane-offer-timeout-ms:50}")
+    private long orderedLaneOfferTimeoutMs;
+
+    @Value("${app.im.websocket.outbound.core-pool-size:8}")
+    private int outboundCorePoolSize;
+
+    @Value("${app.im.websocket.outbound.max-pool-size:32}")
+    private int outboundMaxPoolSize;
+
+    @Value("${app.im.websocket.outbound.queue-capacity:20000}")
+    private int outboundQueueCapacity;
+
+    @Value("${app.im.websocket.send-buffer-size-limit:524288}")
+    private int sendBufferSizeLimit;
+
+    @Value("${app.im.websocket.send-time-limit-ms:10000}")
+    private int sendTimeLimitMs;
+
+    @Value("${app.im.websocket.message-size-limit:65536}")
+    private int messageSizeLimit;
+
     /**
      * 配置消息代理
      */
@@ -49,6 +137,17 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         registry.setUserDestinationPrefix("/user");
     }
 
+    /**
+     * 配置消息转换器
+     * 预序列化的消息体直接透传，其余消息仍使用默认转换器；
+     * 必须排在Jackson转换器之前，否则会被当作普通对象再次序列化
+     */
+    @Override
+    public boolean configureMessageConverters(List<MessageConverter> messageConverters) {
+        messageConverters.add(0, new EncodedPayloadMessageConverter());
+        return true;
+    }
+
     /**
      * 注册STOMP端点，只注册一次，支持SockJS，并复用拦截器
      */
@@ -77,7 +176,7 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                     if (StringUtils.hasText(token)) {
                         try {
                             // 验证token
-                            Claims claims = JwtUtil.parseJWT(token);
+                            Claims claims = jwtClaimsCache.parse(token);
                             if (claims.get(JwtConstant.PHONE_KEY) != null) {
                                 String phone = claims.get(JwtConstant.PHONE_KEY).toString();
                                 // 将手机号放入WebSocket会话属性中
@@ -110,11 +209,54 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     }
 
     /**
-     * 配置客户端入站通道拦截器（可拓展）
+     * 配置传输层限制
+     * 每个会话的发送缓冲与单次发送时长都有上限，超出即视为慢消费者断开，避免个别弱网客户端积压大量待发消息
+     */
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.setSendBufferSizeLimit(sendBufferSizeLimit)
+                .setSendTimeLimit(sendTimeLimitMs)
+                .setMessageSizeLimit(messageSizeLimit)
+                .addDecoratorFactory(handler -> new SlowConsumerHandlerDecorator(handler, meterRegistry));
+    }
+
+    /**
+     * 配置客户端出站通道线程池
+     */
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.taskExecutor(channelExecutor(new ThreadPoolTaskExecutor(), "outbound",
+                outboundCorePoolSize, outboundMaxPoolSize, outboundQueueCapacity));
+    }
+
+    /**
+     * 配置客户端入站通道线程池与拦截器（可拓展）
+     * 私聊与群聊消息按会话键分配到固定的单线程通道，同一会话内按到达顺序处理；
+     * 限流拦截器排在最前，被限流的帧不再经过后续拦截器
      */
     @Override
     public void configureClientInboundChannel(ChannelRegistration registration) {
-        registration.interceptors(new ChannelInterceptor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        if (orderedInbound) {
+            OrderedChannelExecutor ordered = new OrderedChannelExecutor(conversationKeyResolver,
+                    orderedLanes, orderedLaneQueueCapacity, orderedLaneOfferTimeoutMs, this::notifyLaneOverflow);
+            Gauge.builder("im.websocket.channel.lane.queue", ordered, OrderedChannelExecutor::getLaneQueueSize)
+                    .description("会话通道中等待处理的帧数")
+                    .register(meterRegistry);
+            Gauge.builder("im.websocket.channel.lane.max-queue", ordered, OrderedChannelExecutor::getMaxLaneQueueSize)
+                    .description("等待最多的会话通道中的帧数")
+                    .register(meterRegistry);
+            FunctionCounter.builder("im.websocket.channel.lane.blocked", ordered, OrderedChannelExecutor::getBlockedCount)
+                    .description("会话通道已满、提交线程等待的次数")
+                    .register(meterRegistry);
+            FunctionCounter.builder("im.websocket.channel.lane.rejected", ordered, OrderedChannelExecutor::getRejectedCount)
+                    .description("会话通道等待超时、被丢弃的帧数")
+                    .register(meterRegistry);
+            executor = ordered;
+        }
+        registration.taskExecutor(channelExecutor(executor, "inbound",
+                inboundCorePoolSize, inboundMaxPoolSize, inboundQueueCapacity));
+        registration.interceptors(rateLimitInterceptor, new ChannelInterceptor() {
             @Override
             public Message<?> preSend(Message<?> message, MessageChannel channel) {
                 StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
@@ -132,6 +274,11 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                                 }
                             };
                             accessor.setUser(user);
+                            // 发送者用户ID只在连接时查询一次，供会话通道计算私聊会话键
+                            User sender = userService.getUserByPhone(userPhone);
+                            if (sender != null && sender.getId() != null) {
+                                sessionAttributes.put(ConversationKeyResolver.USER_ID_ATTRIBUTE, sender.getId());
+                            }
                             logger.info("WebSocket CONNECT - 设置用户认证信息: {}", userPhone);
                         } else {
                             logger.error("WebSocket CONNECT - 未找到用户手机号");
@@ -141,6 +288,13 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                             accessor.getUser() != null ? accessor.getUser().getName() : "unknown",
                             accessor.getSessionAttributes());
                     } else if (StompCommand.SUBSCRIBE.equals(accessor.getCommand())) {
+                        // 群频道只允许群成员订阅，超级群的消息只经由群频道推送
+                        if (!canSubscribe(accessor)) {
+                            logger.warn("WebSocket SUBSCRIBE 被拒绝 - User: {}, Destination: {}",
+                                accessor.getUser() != null ? accessor.getUser().getName() : "unknown",
+                                accessor.getDestination());
+                            return null;
+                        }
                         logger.info("WebSocket SUBSCRIBE - SessionId: {}, User: {}, Destination: {}, Attributes: {}", 
                             accessor.getSessionId(),
                             accessor.getUser() != null ? accessor.getUser().getName() : "unknown",
@@ -158,4 +312,95 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
             }
         });
     }
-}
\ No newline at end of file
+
+    /**
+     * 创建有界的通道线程池并导出队列长度、活跃线程数、线程数与拒绝次数
+     * 队列满且线程数达到上限时由提交线程自行执行，对读取客户端帧的线程形成背压，而不是丢弃消息
+     *
+     * @param executor 待配置的线程池
+     * @param channel 通道名，用作指标标签
+     * @param corePoolSize 核心线程数
+     * @param maxPoolSize 最大线程数
+     * @param queueCapacity 队列容量
+     * @return 线程池，由框架负责初始化与关闭
+     */
+    private ThreadPoolTaskExecutor channelExecutor(ThreadPoolTaskExecutor executor, String channel,
+                                                   int corePoolSize, int maxPoolSize, int queueCapacity) {
+        executor.setCorePoolSize(corePoolSize);
+        executor.setMaxPoolSize(Math.max(corePoolSize, maxPoolSize));
+        executor.setQueueCapacity(queueCapacity);
+        executor.setKeepAliveSeconds(60);
+
+        Counter rejectedCounter = Counter.builder("im.websocket.channel.rejected")
+                .description("通道线程池已满、由提交线程执行的任务数")
+                .tag("channel", channel)
+                .register(meterRegistry);
+        ThreadPoolExecutor.CallerRunsPolicy callerRuns = new ThreadPoolExecutor.CallerRunsPolicy();
+        executor.setRejectedExecutionHandler((task, pool) -> {
+            rejectedCounter.increment();
+            callerRuns.rejectedExecution(task, pool);
+        });
+
+        Gauge.builder("im.websocket.channel.queue", executor, ThreadPoolTaskExecutor::getQueueSize)
+                .description("通道线程池等待执行的消息数")
+                .tag("channel", channel)
+                .register(meterRegistry);
+        Gauge.builder("im.websocket.channel.active", executor, ThreadPoolTaskExecutor::getActiveCount)
+                .description("通道线程池正在执行的线程数")
+                .tag("channel", channel)
+                .register(meterRegistry);
+        Gauge.builder("im.websocket.channel.pool", executor, ThreadPoolTaskExecutor::getPoolSize)
+                .description("通道线程池当前线程数")
+                .tag("channel", channel)
+                .register(meterRegistry);
+        return executor;
+    }
+
+    /**
+     * 会话通道已满、帧被丢弃时向发送者的错误队列推送提示，客户端可据此重发，连接不受影响
+     *
+     * @param message 被丢弃的帧
+     */
+    private void notifyLaneOverflow(Message<?> message) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getUser() == null) {
+            return;
+        }
+        String user = accessor.getUser().getName();
+        logger.warn("会话通道已满，丢弃消息 - User: {}, Destination: {}", user, accessor.getDestination());
+        try {
+            messageDeliveryService.sendToUser(user, "/queue/errors",
+                    messageDeliveryService.encode(Result.error(ResultCode.SERVICE_UNAVAILABLE, "服务器繁忙，消息未发送，请重试")));
+        } catch (Exception e) {
+            logger.warn("推送通道已满提示失败 - User: {}", user, e);
+        }
+    }
+
+    /**
+     * 检查订阅权限：群频道及其子频道只允许群成员订阅（读取用户与群成员缓存），其余地址不限制
+     *
+     * @param accessor STOMP消息头
+     * @return 是否允许订阅
+     */
+    private boolean canSubscribe(StompHeaderAccessor accessor) {
+        String destination = accessor.getDestination();
+        if (destination == null || !destination.startsWith(GROUP_TOPIC_PREFIX)) {
+            return true;
+        }
+        if (accessor.getUser() == null) {
+            return false;
+        }
+
+        // 群频道及其子频道（如 /topic/group.{id}.recall、/topic/group.{id}.typing）
+        String suffix = destination.substring(GROUP_TOPIC_PREFIX.length());
+        int end = suffix.indexOf('.');
+        Long groupId;
+        try {
+            groupId = Long.valueOf(end >= 0 ? suffix.substring(0, end) : suffix);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        User user = userService.getUserByPhone(accessor.getUser().getName());
+        return user != null && groupMemberCache.contains(groupId, user.getId());
+    }
+}
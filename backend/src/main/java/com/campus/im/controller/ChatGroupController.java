@@ -1,5 +1,7 @@
 package com.campus.im.controller;
 
+import com.campus.im.common.constant.GroupConstant;
+import com.campus.im.dto.GroupMemberPageDTO;
 import com.campus.im.entity.ChatGroup;
 import com.campus.im.entity.GroupMember;
 import com.campus.im.common.Result;
@@ -7,6 +9,7 @@ import com.campus.im.common.enumeration.ResultCode;
 import com.campus.im.entity.User;
 import com.campus.im.service.ChatGroupService;
 import com.campus.im.util.AuthUtil;
+import com.campus.im.util.CursorUtil;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
@@ -22,6 +25,9 @@ import java.util.Map;
 @RequestMapping("/api/group")
 public class ChatGroupController {
 
+    // 成员分页每页最大数量
+    private static final int MAX_MEMBER_PAGE_SIZE = 200;
+
     @Autowired
     private ChatGroupService chatGroupService;
 
@@ -75,6 +81,29 @@ public class ChatGroupController {
         }
     }
 
+    /**
+     * 升级为超级群
+     * 消息只推送群频道订阅，离线成员按序列号同步，成员上限放宽
+     *
+     * @param groupId 群组ID
+     * @param request HTTP请求
+     * @return 升级结果
+     */
+    @PostMapping("/{groupId}/supergroup")
+    public Result upgradeToSupergroup(@PathVariable Long groupId, HttpServletRequest request) {
+        Long operatorId = AuthUtil.getCurrentUserId(request);
+        if (operatorId == null) {
+            return Result.error(ResultCode.PARAM_ERROR, "操作者ID不能为空");
+        }
+
+        boolean success = chatGroupService.upgradeToSupergroup(groupId, operatorId);
+        if (success) {
+            return Result.success();
+        } else {
+            return Result.error("升级超级群失败，可能没有权限");
+        }
+    }
+
     /**
      * 更新群组信息
      *
@@ -349,10 +378,41 @@ public class ChatGroupController {
      */
     @GetMapping("/{groupId}/members")
     public Result getGroupMembers(@PathVariable Long groupId) {
+        if (chatGroupService.getFanoutMode(groupId) == GroupConstant.FANOUT_MODE_SUPER) {
+            return Result.error(ResultCode.PARAM_ERROR, "超级群请分页获取成员");
+        }
         List<GroupMember> members = chatGroupService.getGroupMembers(groupId);
         return Result.success(members);
     }
 
+    /**
+     * 分页获取群成员列表（游标分页）
+     * 首次请求不传cursor，之后传入上一页返回的nextCursor
+     *
+     * @param groupId 群组ID
+     * @param cursor 分页游标
+     * @param limit 每页数量
+     * @return 群成员分页
+     */
+    @GetMapping("/{groupId}/members/page")
+    public Result getGroupMembersPage(
+            @PathVariable Long groupId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
+        Long afterUserId = CursorUtil.decode(cursor);
+        if (cursor != null && !cursor.isEmpty() && afterUserId == null) {
+            return Result.error(ResultCode.PARAM_ERROR, "无效的分页游标");
+        }
+
+        int pageSize = Math.max(1, Math.min(limit, MAX_MEMBER_PAGE_SIZE));
+        // 多取一条用于判断是否还有下一页
+        List<GroupMember> members = chatGroupService.getGroupMembersPage(groupId, afterUserId, pageSize + 1);
+        boolean hasMore = members.size() > pageSize;
+        List<GroupMember> page = hasMore ? members.subList(0, pageSize) : members;
+        String nextCursor = hasMore ? CursorUtil.encode(page.get(page.size() - 1).getUserId()) : null;
+        return Result.success(new GroupMemberPageDTO(page, nextCursor, hasMore));
+    }
+
     /**
      * 获取群成员用户信息列表
      *
@@ -361,6 +421,9 @@ public class ChatGroupController {
      */
     @GetMapping("/{groupId}/users")
     public Result getGroupMemberUsers(@PathVariable Long groupId) {
+        if (chatGroupService.getFanoutMode(groupId) == GroupConstant.FANOUT_MODE_SUPER) {
+            return Result.error(ResultCode.PARAM_ERROR, "超级群请分页获取成员");
+        }
         List<User> users = chatGroupService.getGroupMemberUsers(groupId);
         return Result.success(users);
     }
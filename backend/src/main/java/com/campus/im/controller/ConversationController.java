@@ -1,9 +1,11 @@
 package com.campus.im.controller;
 
+import com.campus.im.dto.ConversationPreviewDTO;
 import com.campus.im.entity.Conversation;
 import com.campus.im.common.Result;
 import com.campus.im.common.enumeration.ResultCode;
 import com.campus.im.service.ConversationService;
+import com.campus.im.service.InboxService;
 import com.campus.im.util.AuthUtil;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -22,6 +24,12 @@ public class ConversationController {
     @Autowired
     private ConversationService conversationService;
 
+    @Autowired
+    private InboxService inboxService;
+
+    // 会话列表单次最多返回的会话数
+    private static final int MAX_INBOX_SIZE = 200;
+
     /**
      * 获取用户的会话列表
      *
@@ -39,6 +47,25 @@ public class ConversationController {
         return Result.success(conversations);
     }
 
+    /**
+     * 获取渲染好的会话列表，包含对方名称头像、最后一条消息摘要和未读数
+     *
+     * @param limit 最多返回的会话数
+     * @param request HTTP请求
+     * @return 会话列表
+     */
+    @GetMapping("/inbox")
+    public Result getInbox(@RequestParam(defaultValue = "50") int limit, HttpServletRequest request) {
+        Long userId = AuthUtil.getCurrentUserId(request);
+        if (userId == null) {
+            return Result.error(ResultCode.PARAM_ERROR, "用户ID不能为空");
+        }
+
+        int size = limit <= 0 ? 50 : Math.min(limit, MAX_INBOX_SIZE);
+        List<ConversationPreviewDTO> inbox = inboxService.getInbox(userId, size);
+        return Result.success(inbox);
+    }
+
     /**
      * 获取会话详情
      *
@@ -1,11 +1,16 @@
 package com.campus.im.controller;
 
+import com.campus.im.dto.ChatMessageDTO;
+import com.campus.im.dto.MessagePageDTO;
 import com.campus.im.entity.Message;
 import com.campus.im.common.Result;
 import com.campus.im.common.enumeration.ResultCode;
+import com.campus.im.service.ChatGroupService;
 import com.campus.im.service.MessageService;
 import com.campus.im.service.UserService;
 import com.campus.im.util.AuthUtil;
+import com.campus.im.util.ConversationKeyUtil;
+import com.campus.im.util.CursorUtil;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
@@ -14,7 +19,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.HashMap;
 
 /**
  * 消息控制器
@@ -29,6 +33,12 @@ public class MessageController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private ChatGroupService chatGroupService;
+
+    // 游标分页单页最大消息数
+    private static final int MAX_PAGE_SIZE = 100;
+
     /**
      * 发送私聊消息
      *
@@ -84,6 +94,12 @@ public class MessageController {
         if (senderId == null) {
             return Result.error(ResultCode.PARAM_ERROR, "发送者ID不能为空");
         }
+        if (!chatGroupService.isUserInGroup(groupId, senderId)) {
+            return Result.error(ResultCode.FORBIDDEN, "不是群组成员");
+        }
+        if (chatGroupService.isMemberMuted(groupId, senderId)) {
+            return Result.error(ResultCode.FORBIDDEN, "已被禁言");
+        }
 
         // 发送消息
         Message message = messageService.sendGroupMessage(senderId, groupId, contentType, content, extra);
@@ -130,7 +146,7 @@ public class MessageController {
         System.out.println("获取到 " + messages.size() + " 条私聊消息");
         
         // 转换消息格式
-        List<Map<String, Object>> convertedMessages = convertMessagesToFrontendFormat(messages);
+        List<ChatMessageDTO> convertedMessages = convertMessagesToFrontendFormat(messages);
         
         return Result.success(convertedMessages);
     }
@@ -153,64 +169,133 @@ public class MessageController {
         List<Message> messages = messageService.getGroupMessages(groupId, limit, offset);
         
         // 转换消息格式
-        List<Map<String, Object>> convertedMessages = convertMessagesToFrontendFormat(messages);
+        List<ChatMessageDTO> convertedMessages = convertMessagesToFrontendFormat(messages);
         
         return Result.success(convertedMessages);
     }
 
+    /**
+     * 获取私聊历史消息（游标分页）
+     * 首次请求不传cursor，之后传入上一页返回的nextCursor加载更早的消息
+     *
+     * @param friendId 好友ID
+     * @param cursor 分页游标
+     * @param limit 消息数量限制
+     * @param request HTTP请求
+     * @return 消息分页
+     */
+    @GetMapping("/private/{friendId}/history")
+    public Result getPrivateMessageHistory(
+            @PathVariable Long friendId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit,
+            HttpServletRequest request) {
+        Long userId = AuthUtil.getCurrentUserId(request);
+        Long beforeSeq = CursorUtil.decode(cursor);
+        if (cursor != null && !cursor.isEmpty() && beforeSeq == null) {
+            return Result.error(ResultCode.PARAM_ERROR, "无效的分页游标");
+        }
+        
+        int pageSize = normalizePageSize(limit);
+        // 多取一条用于判断是否还有更早的消息
+        List<Message> messages = messageService.getPrivateMessagesBeforeSeq(userId, friendId, beforeSeq, pageSize + 1);
+        return Result.success(buildMessagePage(messages, pageSize));
+    }
+
+    /**
+     * 获取群聊历史消息（游标分页）
+     * 首次请求不传cursor，之后传入上一页返回的nextCursor加载更早的消息
+     *
+     * @param groupId 群组ID
+     * @param cursor 分页游标
+     * @param limit 消息数量限制
+     * @param request HTTP请求
+     * @return 消息分页
+     */
+    @GetMapping("/group/{groupId}/history")
+    public Result getGroupMessageHistory(
+            @PathVariable Long groupId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit,
+            HttpServletRequest request) {
+        Long userId = AuthUtil.getCurrentUserId(request);
+        if (!chatGroupService.isUserInGroup(groupId, userId)) {
+            return Result.error(ResultCode.FORBIDDEN, "不是群组成员");
+        }
+        
+        Long beforeSeq = CursorUtil.decode(cursor);
+        if (cursor != null && !cursor.isEmpty() && beforeSeq == null) {
+            return Result.error(ResultCode.PARAM_ERROR, "无效的分页游标");
+        }
+        
+        int pageSize = normalizePageSize(limit);
+        // 多取一条用于判断是否还有更早的消息
+        List<Message> messages = messageService.getGroupMessagesBeforeSeq(groupId, beforeSeq, pageSize + 1);
+        return Result.success(buildMessagePage(messages, pageSize));
+    }
+
+    /**
+     * 限制单页消息数量
+     *
+     * @param limit 请求的数量
+     * @return 实际使用的数量
+     */
+    private int normalizePageSize(int limit) {
+        if (limit <= 0) {
+            return 20;
+        }
+        return Math.min(limit, MAX_PAGE_SIZE);
+    }
+
+    /**
+     * 构建游标分页结果
+     *
+     * @param messages 按序列号降序排列的消息，最多比页大小多一条
+     * @param pageSize 页大小
+     * @return 消息分页
+     */
+    private MessagePageDTO buildMessagePage(List<Message> messages, int pageSize) {
+        boolean hasMore = messages.size() > pageSize;
+        List<Message> page = hasMore ? new ArrayList<>(messages.subList(0, pageSize)) : new ArrayList<>(messages);
+        String nextCursor = hasMore ? CursorUtil.encode(page.get(page.size() - 1).getSeq()) : null;
+        
+        // 页内按序列号升序（从旧到新）返回
+        page.sort(Comparator.comparing(Message::getSeq));
+        List<ChatMessageDTO> converted = new ArrayList<>(page.size());
+        for (Message message : page) {
+            Long conversationId = message.getConversationType() == 0 ?
+                    ConversationKeyUtil.privateKey(message.getSenderId(), message.getReceiverId()) :
+                    message.getReceiverId();
+            converted.add(ChatMessageDTO.of(message, conversationId));
+        }
+        
+        return new MessagePageDTO(converted, nextCursor, hasMore);
+    }
+
     /**
      * 将后端Message实体转换为前端期望的格式
      *
      * @param messages 消息列表
      * @return 转换后的消息列表
      */
-    private List<Map<String, Object>> convertMessagesToFrontendFormat(List<Message> messages) {
-        List<Map<String, Object>> result = new ArrayList<>();
+    private List<ChatMessageDTO> convertMessagesToFrontendFormat(List<Message> messages) {
+        List<ChatMessageDTO> result = new ArrayList<>(messages.size());
         
         // 按发送时间升序排序（从旧到新）
         messages.sort(Comparator.comparing(Message::getSendTime));
         
         for (Message message : messages) {
-            Map<String, Object> convertedMessage = new HashMap<>();
-            
-            // 字段名称映射
-            convertedMessage.put("messageId", message.getId()); // id -> messageId
-            convertedMessage.put("conversationId", message.getConversationType() == 0 ? 
-                                                  createPrivateConversationId(message.getSenderId(), message.getReceiverId()) : 
-                                                  message.getReceiverId()); // 群聊使用groupId作为conversationId
-            convertedMessage.put("senderId", message.getSenderId());
-            convertedMessage.put("receiverId", message.getReceiverId());
-            convertedMessage.put("contentType", message.getContentType());
-            convertedMessage.put("content", message.getContent());
-            convertedMessage.put("extra", message.getExtra());
-            convertedMessage.put("isRecalled", message.getIsRecalled() == 1);
-            convertedMessage.put("isRead", message.getStatus() == 1);
-            convertedMessage.put("timestamp", message.getSendTime().toString()); // sendTime -> timestamp
-            convertedMessage.put("sender", message.getSenderId()); // 兼容前端代码
-            
-            result.add(convertedMessage);
+            // 群聊使用groupId作为conversationId
+            Long conversationId = message.getConversationType() == 0 ?
+                    ConversationKeyUtil.privateKey(message.getSenderId(), message.getReceiverId()) :
+                    message.getReceiverId();
+            result.add(ChatMessageDTO.of(message, conversationId));
         }
         
         System.out.println("转换后的消息数量: " + result.size());
         return result;
     }
     
-    /**
-     * 创建私聊会话ID（确保两个用户之间的会话ID一致）
-     *
-     * @param userId1 用户1的ID
-     * @param userId2 用户2的ID
-     * @return 会话ID
-     */
-    private Long createPrivateConversationId(Long userId1, Long userId2) {
-        // 使用较小的ID作为前缀，确保两个用户之间的会话ID一致
-        Long smallerId = Math.min(userId1, userId2);
-        Long largerId = Math.max(userId1, userId2);
-        
-        // 简单的组合方式，可以根据实际需求调整
-        return Long.parseLong(smallerId + "" + largerId);
-    }
-
     /**
      * 标记消息为已读
      *
@@ -8,6 +8,7 @@ import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -114,4 +115,37 @@ public class MessageSyncController {
         List<Message> messages = messageSyncService.getSyncMessages(userPhone, deviceId, lastSyncMessageId, limit);
         return Result.success(messages);
     }
-} 
\ No newline at end of file
+
+    /**
+     * 按序列号区间获取会话消息
+     * 客户端传入本地已有的最大序列号，返回其后的消息及会话当前最大序列号
+     *
+     * @param conversationType 会话类型：0-私聊，1-群聊
+     * @param targetId 目标ID：私聊为好友ID，群聊为群组ID
+     * @param afterSeq 本地已有的最大序列号
+     * @param limit 消息数量限制
+     * @param request HTTP请求
+     * @return 消息列表及最大序列号
+     */
+    @GetMapping("/range")
+    public Result getMessagesAfterSeq(
+            @RequestParam Integer conversationType,
+            @RequestParam Long targetId,
+            @RequestParam(defaultValue = "0") Long afterSeq,
+            @RequestParam(defaultValue = "50") Integer limit,
+            HttpServletRequest request) {
+        Long userId = AuthUtil.getCurrentUserId(request);
+        Long maxSeq = messageSyncService.getCurrentSeq(userId, conversationType, targetId);
+        if (maxSeq == null) {
+            return Result.error("无权访问该会话");
+        }
+        
+        List<Message> messages = messageSyncService.getMessagesAfterSeq(userId, conversationType, targetId, afterSeq, limit);
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("messages", messages);
+        result.put("maxSeq", maxSeq);
+        result.put("hasMore", !messages.isEmpty() && messages.get(messages.size() - 1).getSeq() < maxSeq);
+        return Result.success(result);
+    }
+}
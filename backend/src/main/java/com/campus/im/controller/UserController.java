@@ -3,6 +3,7 @@ package com.campus.im.controller;
 import com.campus.im.common.Result;
 import com.campus.im.common.enumeration.ResultCode;
 import com.campus.im.entity.User;
+import com.campus.im.service.PresenceService;
 import com.campus.im.service.UserService;
 import com.campus.im.util.AuthUtil;
 import jakarta.servlet.http.HttpServletRequest;
@@ -19,6 +20,9 @@ public class UserController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private PresenceService presenceService;
+
     /**
      * 获取当前登录用户信息
      *
@@ -133,7 +137,7 @@ public class UserController {
     @PutMapping("/status")
     public Result updateUserStatus(HttpServletRequest request) {
         String phone = AuthUtil.getCurrentUserPhone(request);
-        boolean success = userService.updateUserOnlineStatus(phone);
+        boolean success = presenceService.touch(phone);
         if (success) {
             return Result.success();
         } else {
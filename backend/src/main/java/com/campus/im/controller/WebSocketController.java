@@ -1,6 +1,10 @@
 package com.campus.im.controller;
 
+import com.campus.im.common.Result;
+import com.campus.im.common.constant.GroupConstant;
 import com.campus.im.common.constant.JwtConstant;
+import com.campus.im.common.enumeration.ResultCode;
+import com.campus.im.dto.ChatMessageDTO;
 import com.campus.im.entity.Message;
 import com.campus.im.entity.User;
 import com.campus.im.entity.GroupMember;
@@ -10,18 +14,23 @@ import com.campus.im.service.UserService;
 import com.campus.im.service.MentionService;
 import com.campus.im.service.ChatGroupService;
 import com.campus.im.service.ConversationService;
+import com.campus.im.service.GroupFanoutService;
+import com.campus.im.service.MessageDeliveryService;
+import com.campus.im.service.PresenceService;
+import com.campus.im.service.ReadReceiptService;
+import com.campus.im.service.TypingService;
+import com.campus.im.websocket.EncodedPayload;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Controller;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.HashMap;
 
 /**
  * WebSocket控制器
@@ -32,9 +41,6 @@ public class WebSocketController {
 
     private static final Logger logger = LoggerFactory.getLogger(WebSocketController.class);
 
-    @Autowired
-    private SimpMessagingTemplate messagingTemplate;
-
     @Autowired
     private MessageService messageService;
 
@@ -50,6 +56,21 @@ public class WebSocketController {
     @Autowired
     private ConversationService conversationService;
 
+    @Autowired
+    private GroupFanoutService groupFanoutService;
+
+    @Autowired
+    private MessageDeliveryService messageDeliveryService;
+
+    @Autowired
+    private PresenceService presenceService;
+
+    @Autowired
+    private TypingService typingService;
+
+    @Autowired
+    private ReadReceiptService readReceiptService;
+
     /**
      * 处理私聊消息
      *
@@ -101,20 +122,24 @@ public class WebSocketController {
             // 发送消息
             Message message = messageService.sendPrivateMessage(senderId, receiverId, contentType, content, extra);
             if (message != null) {
-                // 转换消息为前端期望的格式
-                Map<String, Object> convertedMessage = convertMessageToFrontendFormat(message);
+                // 转换消息为前端期望的格式，只序列化一次
+                ChatMessageDTO convertedMessage = convertMessageToFrontendFormat(message);
+                if (convertedMessage == null) {
+                    return;
+                }
+                EncodedPayload payloadBytes = messageDeliveryService.encode(convertedMessage);
                 logger.info("准备发送私聊消息 - 消息ID: {}, 发送者: {}, 接收者: {}", 
                     message.getId(), senderPhone, receiverPhone);
 
                 // 发送给接收者
                 logger.info("开始发送私聊消息到接收者: {} 的队列 /user/{}/queue/private.message", 
                     receiverPhone, receiverPhone);
-                messagingTemplate.convertAndSendToUser(receiverPhone, "/queue/private.message", convertedMessage);
+                messageDeliveryService.sendToUser(receiverPhone, "/queue/private.message", payloadBytes);
                 
                 // 发送给发送者（确认消息已发送）
                 logger.info("开始发送私聊消息到发送者: {} 的队列 /user/{}/queue/private.message", 
                     senderPhone, senderPhone);
-                messagingTemplate.convertAndSendToUser(senderPhone, "/queue/private.message", convertedMessage);
+                messageDeliveryService.sendToUser(senderPhone, "/queue/private.message", payloadBytes);
                 
                 logger.info("私聊消息发送完成 - 消息ID: {}", message.getId());
             }
@@ -171,24 +196,35 @@ public class WebSocketController {
             @SuppressWarnings("unchecked")
             List<Long> mentionedUserIds = (List<Long>) payload.get("mentionedUserIds");
 
+            // 非成员与禁言成员的消息直接拒绝，并通知发送者
+            if (!chatGroupService.isUserInGroup(groupId, senderId)) {
+                messageDeliveryService.sendToUser(senderPhone, "/queue/errors",
+                        messageDeliveryService.encode(Result.error(ResultCode.FORBIDDEN, "不是群组成员")));
+                return;
+            }
+            if (chatGroupService.isMemberMuted(groupId, senderId)) {
+                messageDeliveryService.sendToUser(senderPhone, "/queue/errors",
+                        messageDeliveryService.encode(Result.error(ResultCode.FORBIDDEN, "已被禁言")));
+                return;
+            }
+
             // 发送消息
             Message message = messageService.sendGroupMessage(senderId, groupId, contentType, content, extra);
             if (message != null) {
-                // 转换消息为前端期望的格式
-                Map<String, Object> convertedMessage = convertMessageToFrontendFormat(message);
+                // 转换消息为前端期望的格式，频道广播与成员队列共用同一份序列化结果
+                ChatMessageDTO convertedMessage = convertMessageToFrontendFormat(message);
+                if (convertedMessage == null) {
+                    return;
+                }
+                EncodedPayload payloadBytes = messageDeliveryService.encode(convertedMessage);
                 
                 // 将消息发送到群组频道
                 logger.info("发送群聊消息到群组: {}, 消息ID: {}", groupId, message.getId());
-                messagingTemplate.convertAndSend("/topic/group." + groupId, convertedMessage);
+                messageDeliveryService.broadcast("/topic/group." + groupId, payloadBytes);
                 
-                // 同时发送到每个群成员的私有队列
-                // 获取群组成员列表
-                List<User> groupMembers = userService.getAllUser();
-                for (User member : groupMembers) {
-                    Long memberId = member.getId();
-                    String memberPhone = userService.getUserById(memberId).getPhone();
-                    logger.info("发送群聊消息给成员: {}, 消息ID: {}", memberPhone, message.getId());
-                    messagingTemplate.convertAndSendToUser(memberPhone, "/queue/group.message", convertedMessage);
+                // 同时发送到在线群成员的私有队列；超级群只推送群频道，投递成本与成员数无关，离线成员上线后按序列号同步
+                if (chatGroupService.getFanoutMode(groupId) != GroupConstant.FANOUT_MODE_SUPER) {
+                    groupFanoutService.fanout(groupId, "/queue/group.message", payloadBytes);
                 }
                 
                 // 处理@提及
@@ -196,10 +232,11 @@ public class WebSocketController {
                     mentionService.processMentions(message.getId(), groupId, content, mentionedUserIds);
                     
                     // 向被@的用户发送通知
-                    for (Long mentionedUserId : mentionedUserIds) {
-                        String mentionedUserPhone = userService.getUserById(mentionedUserId).getPhone();
-                        messagingTemplate.convertAndSendToUser(mentionedUserPhone, "/queue/mentions", convertedMessage);
+                    List<String> mentionedPhones = new ArrayList<>();
+                    for (User mentionedUser : userService.getUserByIds(mentionedUserIds)) {
+                        mentionedPhones.add(mentionedUser.getPhone());
                     }
+                    messageDeliveryService.sendToUsers(mentionedPhones, "/queue/mentions", payloadBytes);
                 }
             }
         } catch (Exception e) {
@@ -208,7 +245,7 @@ public class WebSocketController {
     }
 
     /**
-     * 处理消息已读回执
+     * 处理消息已读回执（兼容只携带消息ID的旧回执，换算为所在会话的已读水位）
      *
      * @param payload 消息内容
      * @param headerAccessor 消息头访问器
@@ -217,7 +254,7 @@ public class WebSocketController {
     public void handleMessageRead(@Payload Map<String, Object> payload,
                                  SimpMessageHeaderAccessor headerAccessor) {
         try {
-            // 从会话中获取发送者手机号
+            // 从会话中获取读者手机号
             String readerPhone = getPhoneFromSession(headerAccessor);
             if (readerPhone == null) {
                 logger.warn("读者手机号为空");
@@ -230,24 +267,51 @@ public class WebSocketController {
                 return;
             }
 
-            // 获取消息ID
+            User reader = userService.getUserByPhone(readerPhone);
+            if (reader == null) {
+                return;
+            }
             Long messageId = Long.valueOf(payload.get("messageId").toString());
+            readReceiptService.markMessageRead(reader.getId(), messageId);
+        } catch (Exception e) {
+            logger.error("处理消息已读回执失败", e);
+        }
+    }
 
-            // 标记消息为已读
-            boolean success = messageService.markMessageAsRead(messageId, readerPhone);
-            if (success) {
-                // 获取消息详情
-                Message message = messageService.getMessage(messageId);
-                if (message != null && message.getSenderId() != null) {
-                    // 获取发送者手机号
-                    String senderPhone = userService.getUserById(message.getSenderId()).getPhone();
-                    
-                    // 将已读状态发送给消息发送者
-                    messagingTemplate.convertAndSendToUser(senderPhone, "/queue/read-receipts", payload);
-                }
+    /**
+     * 处理会话已读水位：会话已读到指定消息，短时间内的多次上报合并后落库并推送一条回执
+     *
+     * @param payload 消息内容
+     * @param headerAccessor 消息头访问器
+     */
+    @MessageMapping("/conversation.read")
+    public void handleConversationRead(@Payload Map<String, Object> payload,
+                                      SimpMessageHeaderAccessor headerAccessor) {
+        try {
+            // 从会话中获取读者手机号
+            String readerPhone = getPhoneFromSession(headerAccessor);
+            if (readerPhone == null) {
+                logger.warn("读者手机号为空");
+                return;
             }
+
+            // 检查必要的参数是否存在
+            if (payload.get("conversationType") == null || payload.get("targetId") == null
+                    || payload.get("messageId") == null) {
+                logger.warn("已读水位参数不完整: {}", payload);
+                return;
+            }
+
+            User reader = userService.getUserByPhone(readerPhone);
+            if (reader == null) {
+                return;
+            }
+            Integer conversationType = Integer.valueOf(payload.get("conversationType").toString());
+            Long targetId = Long.valueOf(payload.get("targetId").toString());
+            Long messageId = Long.valueOf(payload.get("messageId").toString());
+            readReceiptService.markReadUpTo(reader.getId(), conversationType, targetId, messageId);
         } catch (Exception e) {
-            logger.error("处理消息已读回执失败", e);
+            logger.error("处理会话已读水位失败", e);
         }
     }
 
@@ -267,11 +331,8 @@ public class WebSocketController {
                 return;
             }
 
-            // 更新用户在线状态
-            userService.updateUserOnlineStatus(userPhone);
-            
-            // 通知该用户的好友其在线状态变化
-            // 这里可以实现通知好友的逻辑
+            // 记录用户活跃，最后活跃时间批量写回；上下线由会话事件维护并通知好友
+            presenceService.touch(userPhone);
         } catch (Exception e) {
             logger.error("处理用户在线状态失败", e);
         }
@@ -310,16 +371,19 @@ public class WebSocketController {
                         // 通知接收者消息已撤回
                         Long receiverId = Long.valueOf(payload.get("receiverId").toString());
                         String receiverPhone = userService.getUserById(receiverId).getPhone();
-                        messagingTemplate.convertAndSendToUser(receiverPhone, "/queue/recall", payload);
+                        messageDeliveryService.sendToUser(receiverPhone, "/queue/recall",
+                                messageDeliveryService.encode(payload));
                         
                         // 通知发送者消息已撤回
                         String senderPhone = userService.getUserById(message.getSenderId()).getPhone();
-                        messagingTemplate.convertAndSendToUser(senderPhone, "/queue/recall", payload);
+                        messageDeliveryService.sendToUser(senderPhone, "/queue/recall",
+                                messageDeliveryService.encode(payload));
                     } else if (conversationType == 1) {
                         // 群聊消息
                         // 通知群组消息已撤回
                         Long groupId = Long.valueOf(payload.get("groupId").toString());
-                        messagingTemplate.convertAndSend("/topic/group." + groupId + ".recall", payload);
+                        messageDeliveryService.broadcast("/topic/group." + groupId + ".recall",
+                                messageDeliveryService.encode(payload));
                     }
                 }
             }
@@ -349,19 +413,12 @@ public class WebSocketController {
             Boolean isTyping = Boolean.valueOf(payload.get("isTyping").toString());
             Integer conversationType = Integer.valueOf(payload.get("conversationType").toString());
 
-            // 构建输入状态消息
-            Map<String, Object> typingStatus = Map.of(
-                "senderPhone", userPhone,
-                "isTyping", isTyping
-            );
-
+            // 输入状态经聚合后推送：私聊去抖，群聊按群定期合并
             if (conversationType == 0) {
-                // 私聊
-                messagingTemplate.convertAndSendToUser(receiverPhone, "/queue/typing", typingStatus);
+                typingService.onPrivateTyping(userPhone, receiverPhone, isTyping);
             } else if (conversationType == 1) {
-                // 群聊
                 Long groupId = Long.valueOf(payload.get("groupId").toString());
-                messagingTemplate.convertAndSend("/topic/group." + groupId + ".typing", typingStatus);
+                typingService.onGroupTyping(userPhone, groupId, isTyping);
             }
         } catch (Exception e) {
             logger.error("处理用户输入状态失败", e);
@@ -387,11 +444,8 @@ public class WebSocketController {
      * @param message 消息实体
      * @return 转换后的消息
      */
-    private Map<String, Object> convertMessageToFrontendFormat(Message message) {
-        Map<String, Object> result = new HashMap<>();
-        
-        // 字段名称映射
-        result.put("messageId", message.getId()); // id -> messageId
+    private ChatMessageDTO convertMessageToFrontendFormat(Message message) {
+        Long conversationId;
         
         // 设置会话ID
         if (message.getConversationType() == 0) {
@@ -399,7 +453,7 @@ public class WebSocketController {
             Conversation conversation = conversationService.createOrGetPrivateConversation(
                     message.getReceiverId(), message.getSenderId());
             if (conversation != null) {
-                result.put("conversationId", conversation.getId());
+                conversationId = conversation.getId();
             } else {
                 logger.error("获取或创建私聊会话失败，senderId: {}, receiverId: {}", 
                     message.getSenderId(), message.getReceiverId());
@@ -410,7 +464,7 @@ public class WebSocketController {
             Conversation conversation = conversationService.createOrGetGroupConversation(
                 message.getSenderId(), message.getReceiverId());
             if (conversation != null) {
-                result.put("conversationId", conversation.getId());
+                conversationId = conversation.getId();
             } else {
                 logger.error("获取或创建群聊会话失败，senderId: {}, groupId: {}", 
                     message.getSenderId(), message.getReceiverId());
@@ -418,16 +472,6 @@ public class WebSocketController {
             }
         }
         
-        result.put("senderId", message.getSenderId());
-        result.put("receiverId", message.getReceiverId());
-        result.put("contentType", message.getContentType());
-        result.put("content", message.getContent());
-        result.put("extra", message.getExtra());
-        result.put("isRecalled", message.getIsRecalled() == 1);
-        result.put("isRead", message.getStatus() == 1);
-        result.put("timestamp", message.getSendTime().toString()); // sendTime -> timestamp
-        result.put("sender", message.getSenderId()); // 兼容前端代码
-        
-        return result;
+        return ChatMessageDTO.of(message, conversationId);
     }
 }
\ No newline at end of file
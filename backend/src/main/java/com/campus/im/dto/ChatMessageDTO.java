@@ -0,0 +1,97 @@
+package com.campus.im.dto;
+
+import com.campus.im.common.constant.MessageConstant;
+import com.campus.im.entity.Message;
+import lombok.Data;
+
+/**
+ * 推送给前端的聊天消息数据传输对象
+ * 字段与前端约定保持一致，直接由消息实体构建，不经过中间Map
+ */
+@Data
+public class ChatMessageDTO {
+
+    /**
+     * 消息ID
+     */
+    private Long messageId;
+
+    /**
+     * 会话ID
+     */
+    private Long conversationId;
+
+    /**
+     * 发送者ID
+     */
+    private Long senderId;
+
+    /**
+     * 接收者ID：私聊为用户ID，群聊为群组ID
+     */
+    private Long receiverId;
+
+    /**
+     * 内容类型
+     */
+    private Integer contentType;
+
+    /**
+     * 消息内容
+     */
+    private String content;
+
+    /**
+     * 附加信息，JSON格式
+     */
+    private String extra;
+
+    /**
+     * 是否已撤回
+     */
+    private Boolean isRecalled;
+
+    /**
+     * 是否已读
+     */
+    private Boolean isRead;
+
+    /**
+     * 会话内序列号，客户端据此发现缺失的消息
+     */
+    private Long seq;
+
+    /**
+     * 发送时间
+     */
+    private String timestamp;
+
+    /**
+     * 发送者ID（兼容前端代码）
+     */
+    private Long sender;
+
+    /**
+     * 由消息实体构建
+     *
+     * @param message 消息实体
+     * @param conversationId 会话ID
+     * @return 消息数据传输对象
+     */
+    public static ChatMessageDTO of(Message message, Long conversationId) {
+        ChatMessageDTO dto = new ChatMessageDTO();
+        dto.setMessageId(message.getId());
+        dto.setConversationId(conversationId);
+        dto.setSenderId(message.getSenderId());
+        dto.setReceiverId(message.getReceiverId());
+        dto.setSeq(message.getSeq());
+        dto.setContentType(message.getContentType());
+        dto.setContent(message.getContent());
+        dto.setExtra(message.getExtra());
+        dto.setIsRecalled(message.getIsRecalled() == MessageConstant.IS_RECALLED_YES);
+        dto.setIsRead(message.getStatus() == 1);
+        dto.setTimestamp(message.getSendTime().toString());
+        dto.setSender(message.getSenderId());
+        return dto;
+    }
+}
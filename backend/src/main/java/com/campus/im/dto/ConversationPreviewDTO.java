@@ -0,0 +1,80 @@
+package com.campus.im.dto;
+
+import lombok.Data;
+
+/**
+ * 会话列表项数据传输对象，包含渲染会话列表所需的全部信息
+ */
+@Data
+public class ConversationPreviewDTO {
+
+    /**
+     * 会话类型：0-私聊，1-群聊
+     */
+    private Integer conversationType;
+
+    /**
+     * 目标ID：私聊为对方用户ID，群聊为群组ID
+     */
+    private Long targetId;
+
+    /**
+     * 目标名称：私聊为对方昵称，群聊为群名称
+     */
+    private String targetName;
+
+    /**
+     * 目标头像
+     */
+    private String targetAvatar;
+
+    /**
+     * 最后一条消息ID
+     */
+    private Long lastMessageId;
+
+    /**
+     * 最后一条消息发送者ID
+     */
+    private Long senderId;
+
+    /**
+     * 最后一条消息发送者昵称
+     */
+    private String senderNickname;
+
+    /**
+     * 最后一条消息内容类型
+     */
+    private Integer contentType;
+
+    /**
+     * 最后一条消息摘要
+     */
+    private String snippet;
+
+    /**
+     * 最后一条消息是否已撤回：0-否，1-是
+     */
+    private Integer isRecalled;
+
+    /**
+     * 最后一条消息时间（毫秒时间戳）
+     */
+    private Long lastMessageTime;
+
+    /**
+     * 未读消息数
+     */
+    private Integer unreadCount;
+
+    /**
+     * 是否置顶：0-否，1-是
+     */
+    private Integer isTop;
+
+    /**
+     * 是否免打扰：0-否，1-是
+     */
+    private Integer isMuted;
+}
@@ -0,0 +1,32 @@
+package com.campus.im.dto;
+
+import com.campus.im.entity.GroupMember;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 群成员分页数据传输对象（游标分页）
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class GroupMemberPageDTO {
+
+    /**
+     * 当前页成员，按用户ID升序
+     */
+    private List<GroupMember> members;
+
+    /**
+     * 加载下一页的游标，没有更多时为null
+     */
+    private String nextCursor;
+
+    /**
+     * 是否还有下一页
+     */
+    private Boolean hasMore;
+}
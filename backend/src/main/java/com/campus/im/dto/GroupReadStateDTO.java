@@ -0,0 +1,41 @@
+package com.campus.im.dto;
+
+import lombok.Data;
+
+/**
+ * 读扩散群组中成员的阅读进度
+ */
+@Data
+public class GroupReadStateDTO {
+
+    /**
+     * 群组ID
+     */
+    private Long groupId;
+
+    /**
+     * 群最新消息序列号
+     */
+    private Long lastSeq;
+
+    /**
+     * 成员已读到的消息序列号
+     */
+    private Long lastReadSeq;
+
+    /**
+     * 成员是否将该群设为免打扰：0-否，1-是
+     */
+    private Integer isMuted;
+
+    /**
+     * 未读消息数
+     *
+     * @return 最新序列号与已读序列号之差
+     */
+    public int getUnreadCount() {
+        long last = lastSeq == null ? 0L : lastSeq;
+        long read = lastReadSeq == null ? 0L : lastReadSeq;
+        return (int) Math.max(Math.min(last - read, Integer.MAX_VALUE), 0L);
+    }
+}
@@ -0,0 +1,31 @@
+package com.campus.im.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 消息分页数据传输对象（游标分页）
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class MessagePageDTO {
+
+    /**
+     * 当前页消息，按时间升序（从旧到新）
+     */
+    private List<ChatMessageDTO> messages;
+
+    /**
+     * 加载更早消息的游标，没有更多时为null
+     */
+    private String nextCursor;
+
+    /**
+     * 是否还有更早的消息
+     */
+    private Boolean hasMore;
+}
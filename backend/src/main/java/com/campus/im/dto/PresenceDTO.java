@@ -0,0 +1,31 @@
+package com.campus.im.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 好友在线状态变化数据传输对象
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PresenceDTO {
+
+    /**
+     * 状态变化的用户ID
+     */
+    private Long userId;
+
+    /**
+     * 是否在线
+     */
+    private Boolean online;
+
+    /**
+     * 最后活跃时间
+     */
+    private LocalDateTime lastActiveTime;
+}
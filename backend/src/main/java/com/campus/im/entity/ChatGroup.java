@@ -54,6 +54,16 @@ public class ChatGroup {
      */
     private Integer status;
     
+    /**
+     * 消息扇出模式：0-写扩散，1-读扩散，2-超级群
+     */
+    private Integer fanoutMode;
+    
+    /**
+     * 最新消息序列号（读扩散模式维护）
+     */
+    private Long lastSeq;
+    
     /**
      * 创建时间
      */
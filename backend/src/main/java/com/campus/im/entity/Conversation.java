@@ -44,6 +44,11 @@ public class Conversation {
      */
     private LocalDateTime lastMessageTime;
     
+    /**
+     * 已读到的消息ID（已读水位）
+     */
+    private Long lastReadMessageId;
+    
     /**
      * 是否置顶：0-否，1-是
      */
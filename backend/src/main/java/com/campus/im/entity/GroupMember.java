@@ -44,6 +44,11 @@ public class GroupMember {
      */
     private LocalDateTime joinTime;
     
+    /**
+     * 已读到的消息序列号（读扩散模式）
+     */
+    private Long lastReadSeq;
+    
     /**
      * 创建时间
      */
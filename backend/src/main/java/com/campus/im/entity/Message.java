@@ -29,6 +29,16 @@ public class Message {
      */
     private Long receiverId;
     
+    /**
+     * 会话键：由会话类型和双方ID计算，同一会话的所有消息相同，见 ConversationKeyUtil
+     */
+    private Long conversationKey;
+    
+    /**
+     * 会话内序列号：同一会话内从1开始单调递增
+     */
+    private Long seq;
+    
     /**
      * 内容类型：0-文本，1-图片，2-语音，3-视频，4-文件，5-位置，99-系统消息
      */
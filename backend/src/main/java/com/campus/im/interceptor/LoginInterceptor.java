@@ -1,11 +1,11 @@
 package com.campus.im.interceptor;
 
+import com.campus.im.cache.JwtClaimsCache;
 import com.campus.im.common.constant.JwtConstant;
 import com.campus.im.common.Result;
 import com.campus.im.common.enumeration.ResultCode;
 import com.campus.im.entity.User;
 import com.campus.im.service.UserService;
-import com.campus.im.util.JwtUtil;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
@@ -28,6 +28,9 @@ public class LoginInterceptor implements HandlerInterceptor {
     @Autowired
     private UserService userService;
     
+    @Autowired
+    private JwtClaimsCache jwtClaimsCache;
+    
     private ObjectMapper objectMapper = new ObjectMapper();
     
     /**
@@ -41,8 +44,8 @@ public class LoginInterceptor implements HandlerInterceptor {
         // 验证token
         if (StringUtils.hasText(token)) {
             try {
-                // 使用parseJWT方法解析token，如果解析成功则表示token有效
-                Claims claims = JwtUtil.parseJWT(token);
+                // 解析token，如果解析成功则表示token有效；同一token验签结果缓存到过期为止
+                Claims claims = jwtClaimsCache.parse(token);
                 
                 // 提取JWT中的用户信息
                 if (claims.get(JwtConstant.PHONE_KEY) != null) {
@@ -92,10 +95,17 @@ public class LoginInterceptor implements HandlerInterceptor {
     private void autoRegisterUserIfNotExists(Claims claims) {
         String phone = claims.get(JwtConstant.PHONE_KEY).toString();
         
+        // 已确认存在的用户不再查询
+        if (jwtClaimsCache.isKnownUser(phone)) {
+            return;
+        }
+        
         // 通过手机号查询用户是否存在
         User existingUser = userService.getUserByPhone(phone);
         
-        if (existingUser == null) {
+        if (existingUser != null) {
+            jwtClaimsCache.markKnownUser(phone);
+        } else {
             // 用户不存在，创建新用户
             User newUser = new User();
             newUser.setPhone(phone);
@@ -118,7 +128,9 @@ public class LoginInterceptor implements HandlerInterceptor {
             newUser.setLastActiveTime(now);
             
             // 保存用户到数据库
-            userService.createUser(newUser);
+            if (userService.createUser(newUser)) {
+                jwtClaimsCache.markKnownUser(phone);
+            }
         }
     }
     
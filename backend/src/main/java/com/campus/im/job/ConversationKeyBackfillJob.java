@@ -0,0 +1,73 @@
+package com.campus.im.job;
+
+import com.campus.im.mapper.MessageMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 会话键回填任务
+ * 开启后在应用启动时于后台线程中分批为历史消息回填 conversation_key，每批之间短暂停顿以降低对线上写入的影响
+ */
+@Component
+public class ConversationKeyBackfillJob implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConversationKeyBackfillJob.class);
+
+    @Autowired
+    private MessageMapper messageMapper;
+
+    @Value("${app.im.conversation-key.backfill.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.im.conversation-key.backfill.batch-size:1000}")
+    private int batchSize;
+
+    // 每批之间的停顿时间（毫秒）
+    @Value("${app.im.conversation-key.backfill.pause-ms:50}")
+    private long pauseMs;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+
+        Thread thread = new Thread(this::backfill, "conversation-key-backfill");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 循环回填直到没有待处理的消息
+     */
+    private void backfill() {
+        long total = 0;
+        logger.info("开始回填消息会话键 - 批量大小: {}", batchSize);
+        try {
+            while (true) {
+                int rows = messageMapper.backfillConversationKey(batchSize);
+                if (rows <= 0) {
+                    break;
+                }
+                total += rows;
+                if (total % (batchSize * 100L) < rows) {
+                    logger.info("消息会话键回填进度 - 已处理: {}", total);
+                }
+                TimeUnit.MILLISECONDS.sleep(pauseMs);
+            }
+            logger.info("消息会话键回填完成 - 共处理: {}", total);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("消息会话键回填被中断 - 已处理: {}", total);
+        } catch (Exception e) {
+            logger.error("消息会话键回填失败 - 已处理: {}", total, e);
+        }
+    }
+}
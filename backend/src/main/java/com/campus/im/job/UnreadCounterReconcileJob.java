@@ -0,0 +1,38 @@
+package com.campus.im.job;
+
+import com.campus.im.service.UnreadCounterService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 未读计数回写任务
+ * 定期把Redis中有变动的未读计数写回 conversation.unread_count，Redis数据丢失时可据此重新初始化
+ */
+@Component
+public class UnreadCounterReconcileJob {
+
+    private static final Logger logger = LoggerFactory.getLogger(UnreadCounterReconcileJob.class);
+
+    @Autowired
+    private UnreadCounterService unreadCounterService;
+
+    // 每轮最多回写的用户数
+    @Value("${app.im.unread.reconcile-batch-users:1000}")
+    private int batchUsers;
+
+    @Scheduled(fixedDelayString = "${app.im.unread.reconcile-interval-ms:30000}")
+    public void reconcile() {
+        try {
+            int users = unreadCounterService.reconcile(batchUsers);
+            if (users > 0) {
+                logger.debug("未读计数回写完成 - 用户数: {}", users);
+            }
+        } catch (Exception e) {
+            logger.error("未读计数回写失败", e);
+        }
+    }
+}
@@ -46,6 +46,34 @@ public interface ChatGroupMapper {
      */
     int updateMemberCount(@Param("groupId") Long groupId, @Param("count") Integer count);
     
+    /**
+     * 切换消息扇出模式
+     *
+     * @param groupId 群组ID
+     * @param fanoutMode 扇出模式
+     * @param lastSeq 切换时的最新消息序列号
+     * @return 影响行数
+     */
+    int updateFanoutMode(@Param("groupId") Long groupId, @Param("fanoutMode") Integer fanoutMode, @Param("lastSeq") Long lastSeq);
+    
+    /**
+     * 更新最大成员数量
+     *
+     * @param groupId 群组ID
+     * @param maxMemberCount 最大成员数量
+     * @return 影响行数
+     */
+    int updateMaxMemberCount(@Param("groupId") Long groupId, @Param("maxMemberCount") Integer maxMemberCount);
+    
+    /**
+     * 推进群最新消息序列号，只增不减
+     *
+     * @param groupId 群组ID
+     * @param seq 消息序列号
+     * @return 影响行数
+     */
+    int updateLastSeq(@Param("groupId") Long groupId, @Param("seq") Long seq);
+    
     /**
      * 根据ID查询群组
      *
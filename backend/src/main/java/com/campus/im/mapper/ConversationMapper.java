@@ -4,6 +4,7 @@ import com.campus.im.entity.Conversation;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -82,6 +83,21 @@ public interface ConversationMapper {
      */
     int resetUnreadCount(@Param("id") Long id);
     
+    /**
+     * 推进会话的已读水位
+     *
+     * @param userId 用户ID
+     * @param conversationType 会话类型
+     * @param targetId 目标ID
+     * @param messageId 已读到的消息ID
+     * @return 影响行数，水位未前进时为0
+     */
+    int updateReadWatermark(
+            @Param("userId") Long userId,
+            @Param("conversationType") Integer conversationType,
+            @Param("targetId") Long targetId,
+            @Param("messageId") Long messageId);
+    
     /**
      * 更新会话的最后一条消息
      *
@@ -108,4 +124,47 @@ public interface ConversationMapper {
      * @return 影响行数
      */
     int updateMuteStatus(@Param("id") Long id, @Param("isMuted") Integer isMuted);
-} 
\ No newline at end of file
+    
+    /**
+     * 收到新消息时更新会话：一条UPDATE同时更新最后一条消息和未读消息数，并恢复已删除的会话
+     *
+     * @param id 会话ID
+     * @param lastMessageId 最后一条消息ID
+     * @param lastMessageTime 最后一条消息时间
+     * @param unreadDelta 未读消息数增量
+     * @return 影响行数
+     */
+    int updateForNewMessage(
+            @Param("id") Long id,
+            @Param("lastMessageId") Long lastMessageId,
+            @Param("lastMessageTime") LocalDateTime lastMessageTime,
+            @Param("unreadDelta") Integer unreadDelta);
+    
+    /**
+     * 批量写入会话未读消息数，会话不存在时创建（依赖唯一键 uk_user_conversation）
+     *
+     * @param conversations 会话列表，需包含userId、conversationType、targetId、unreadCount
+     * @return 影响行数
+     */
+    int batchUpsertUnreadCount(@Param("conversations") List<Conversation> conversations);
+    
+    /**
+     * 批量更新群消息相关成员的会话（基于 uk_user_conversation 的多行插入或更新）
+     * 已存在的会话只在新消息更新时推进最后一条消息，免打扰会话不累加未读数，已删除的会话恢复并清零后累加
+     *
+     * @param conversations 会话列表，unreadCount 为本次未读增量
+     * @return 影响行数
+     */
+    int batchUpsertForNewMessage(@Param("conversations") List<Conversation> conversations);
+    
+    /**
+     * 查询将指定会话设为免打扰的用户ID
+     *
+     * @param conversationType 会话类型
+     * @param targetId 目标ID
+     * @return 用户ID列表
+     */
+    List<Long> selectMutedUserIds(
+            @Param("conversationType") Integer conversationType,
+            @Param("targetId") Long targetId);
+}
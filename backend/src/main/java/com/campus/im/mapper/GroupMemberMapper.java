@@ -1,5 +1,6 @@
 package com.campus.im.mapper;
 
+import com.campus.im.dto.GroupReadStateDTO;
 import com.campus.im.entity.GroupMember;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
@@ -55,6 +56,25 @@ public interface GroupMemberMapper {
      */
     List<GroupMember> selectByGroupId(@Param("groupId") Long groupId);
     
+    /**
+     * 查询群组所有成员的用户ID与角色，按用户ID升序
+     *
+     * @param groupId 群组ID
+     * @return 只含用户ID与角色的群成员列表
+     */
+    List<GroupMember> selectRolesByGroupId(@Param("groupId") Long groupId);
+    
+    /**
+     * 按用户ID分页查询群成员
+     *
+     * @param groupId 群组ID
+     * @param afterUserId 上一页最后一个成员的用户ID，首页为null
+     * @param limit 每页数量
+     * @return 群成员列表，按用户ID升序
+     */
+    List<GroupMember> selectPageByGroupId(@Param("groupId") Long groupId, @Param("afterUserId") Long afterUserId,
+                                          @Param("limit") Integer limit);
+    
     /**
      * 查询用户加入的所有群组
      *
@@ -72,6 +92,14 @@ public interface GroupMemberMapper {
      */
     List<GroupMember> selectByGroupIdAndRole(@Param("groupId") Long groupId, @Param("role") Integer role);
     
+    /**
+     * 查询群组中正在禁言的成员
+     *
+     * @param groupId 群组ID
+     * @return 群成员列表
+     */
+    List<GroupMember> selectMutedMembers(@Param("groupId") Long groupId);
+    
     /**
      * 更新群成员角色
      *
@@ -118,4 +146,40 @@ public interface GroupMemberMapper {
      * @return 影响行数
      */
     int batchDelete(@Param("groupId") Long groupId, @Param("userIds") List<Long> userIds);
-} 
\ No newline at end of file
+    
+    /**
+     * 推进成员已读序列号，只增不减
+     *
+     * @param groupId 群组ID
+     * @param userId 用户ID
+     * @param seq 已读序列号
+     * @return 影响行数
+     */
+    int updateLastReadSeq(@Param("groupId") Long groupId, @Param("userId") Long userId, @Param("seq") Long seq);
+    
+    /**
+     * 读扩散群组中将成员标记为已读到最新消息（写扩散群组不受影响）
+     *
+     * @param groupId 群组ID
+     * @param userId 用户ID
+     * @return 影响行数
+     */
+    int markReadToLatest(@Param("groupId") Long groupId, @Param("userId") Long userId);
+    
+    /**
+     * 切换为读扩散时按成员会话中的未读数初始化已读序列号
+     *
+     * @param groupId 群组ID
+     * @param lastSeq 群最新消息序列号
+     * @return 影响行数
+     */
+    int initLastReadSeq(@Param("groupId") Long groupId, @Param("lastSeq") Long lastSeq);
+    
+    /**
+     * 查询用户所在读扩散群组的阅读进度
+     *
+     * @param userId 用户ID
+     * @return 阅读进度列表
+     */
+    List<GroupReadStateDTO> selectReadStatesByUserId(@Param("userId") Long userId);
+}
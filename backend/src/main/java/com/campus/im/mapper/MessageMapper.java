@@ -20,6 +20,21 @@ public interface MessageMapper {
      */
     int insert(Message message);
     
+    /**
+     * 批量添加消息（使用预先分配的消息ID）
+     *
+     * @param messages 消息列表
+     * @return 影响行数
+     */
+    int batchInsert(@Param("messages") List<Message> messages);
+    
+    /**
+     * 查询当前最大消息ID
+     *
+     * @return 最大消息ID，无消息时返回null
+     */
+    Long selectMaxId();
+    
     /**
      * 根据ID查询消息
      *
@@ -35,136 +50,140 @@ public interface MessageMapper {
      * @return 消息列表
      */
     List<Message> selectByIds(@Param("ids") List<Long> ids);
-    
+                    
     /**
-     * 查询私聊消息
+     * 更新消息状态
      *
-     * @param senderId 发送者ID
-     * @param receiverId 接收者ID
-     * @param limit 数量限制
-     * @return 消息列表
+     * @param id 消息ID
+     * @param status 状态
+     * @return 影响行数
      */
-    List<Message> selectPrivateMessages(
-            @Param("senderId") Long senderId,
-            @Param("receiverId") Long receiverId,
-            @Param("limit") Integer limit);
+    int updateStatus(@Param("id") Long id, @Param("status") Integer status);
     
     /**
-     * 查询私聊消息（按时间降序）
+     * 更新消息撤回状态
      *
-     * @param senderId 发送者ID
-     * @param receiverId 接收者ID
-     * @param beforeMessageId 消息ID（查询该消息之前的消息）
-     * @param limit 数量限制
-     * @return 消息列表
+     * @param id 消息ID
+     * @param isRecalled 撤回状态
+     * @return 影响行数
      */
-    List<Message> selectPrivateMessagesBeforeId(
-            @Param("senderId") Long senderId,
-            @Param("receiverId") Long receiverId,
-            @Param("beforeMessageId") Long beforeMessageId,
-            @Param("limit") Integer limit);
-    
+    int updateRecallStatus(@Param("id") Long id, @Param("isRecalled") Integer isRecalled);
+            
     /**
-     * 查询群聊消息
+     * 更新消息已读状态
      *
-     * @param groupId 群组ID
-     * @param limit 数量限制
-     * @return 消息列表
+     * @param id 消息ID
+     * @param status 状态
+     * @return 影响行数
      */
-    List<Message> selectGroupMessages(
-            @Param("groupId") Long groupId,
-            @Param("limit") Integer limit);
+    int updateReadStatus(@Param("id") Long id, @Param("status") Integer status);
     
     /**
-     * 查询群聊消息（按时间降序）
+     * 查询用户的离线消息
      *
-     * @param groupId 群组ID
-     * @param beforeMessageId 消息ID（查询该消息之前的消息）
-     * @param limit 数量限制
-     * @return 消息列表
+     * @param userPhone 用户手机号
+     * @return 离线消息列表
      */
-    List<Message> selectGroupMessagesBeforeId(
-            @Param("groupId") Long groupId,
-            @Param("beforeMessageId") Long beforeMessageId,
-            @Param("limit") Integer limit);
+    List<Message> selectOfflineMessages(@Param("userPhone") String userPhone);
     
     /**
-     * 更新消息状态
+     * 确认接收离线消息
      *
-     * @param id 消息ID
-     * @param status 状态
+     * @param userPhone 用户手机号
+     * @param messageIds 消息ID列表
      * @return 影响行数
      */
-    int updateStatus(@Param("id") Long id, @Param("status") Integer status);
+    int confirmOfflineMessages(@Param("userPhone") String userPhone, @Param("messageIds") List<Long> messageIds);
+                    
+    /**
+     * 查询用户所有会话中ID大于指定值的消息（按ID升序），用于设备同步
+     *
+     * @param userId 用户ID
+     * @param lastMessageId 上次同步的消息ID
+     * @param limit 数量限制
+     * @return 消息列表
+     */
+    List<Message> selectMessagesAfterIdForUser(
+            @Param("userId") Long userId,
+            @Param("lastMessageId") Long lastMessageId,
+            @Param("limit") Integer limit);
     
     /**
-     * 更新消息撤回状态
+     * 按会话键查询最新消息（按消息ID降序）
      *
-     * @param id 消息ID
-     * @param isRecalled 撤回状态
-     * @return 影响行数
+     * @param conversationKey 会话键
+     * @param limit 数量限制
+     * @return 消息列表
      */
-    int updateRecallStatus(@Param("id") Long id, @Param("isRecalled") Integer isRecalled);
+    List<Message> selectByConversationKey(
+            @Param("conversationKey") Long conversationKey,
+            @Param("limit") Integer limit);
     
     /**
-     * 根据手机号查询私聊消息
+     * 按会话键查询指定消息之前的消息（按消息ID降序）
      *
-     * @param userPhone 用户手机号
-     * @param otherPhone 对方手机号
+     * @param conversationKey 会话键
+     * @param beforeMessageId 消息ID（查询该消息之前的消息）
      * @param limit 数量限制
-     * @param offset 偏移量
      * @return 消息列表
      */
-    List<Message> selectPrivateMessagesByPhone(
-            @Param("userPhone") String userPhone,
-            @Param("otherPhone") String otherPhone,
-            @Param("limit") int limit,
-            @Param("offset") int offset);
+    List<Message> selectByConversationKeyBeforeId(
+            @Param("conversationKey") Long conversationKey,
+            @Param("beforeMessageId") Long beforeMessageId,
+            @Param("limit") Integer limit);
     
     /**
-     * 查询群聊消息（带偏移量）
+     * 按会话键分页查询消息（按消息ID降序，偏移量分页）
      *
-     * @param groupId 群组ID
+     * @param conversationKey 会话键
      * @param limit 数量限制
      * @param offset 偏移量
      * @return 消息列表
      */
-    List<Message> selectGroupMessagesByOffset(
-            @Param("groupId") Long groupId,
+    List<Message> selectByConversationKeyWithOffset(
+            @Param("conversationKey") Long conversationKey,
             @Param("limit") int limit,
             @Param("offset") int offset);
     
     /**
-     * 更新消息已读状态
+     * 按会话键查询序列号小于指定值的消息（按序列号降序，游标分页）
      *
-     * @param id 消息ID
-     * @param status 状态
-     * @return 影响行数
+     * @param conversationKey 会话键
+     * @param beforeSeq 游标序列号（不包含），为null时从最新消息开始
+     * @param limit 数量限制
+     * @return 消息列表
      */
-    int updateReadStatus(@Param("id") Long id, @Param("status") Integer status);
+    List<Message> selectByConversationKeyBeforeSeq(
+            @Param("conversationKey") Long conversationKey,
+            @Param("beforeSeq") Long beforeSeq,
+            @Param("limit") Integer limit);
     
     /**
-     * 统计用户未读消息数
+     * 按会话键查询序列号大于指定值的消息（按序列号升序，区间同步）
      *
-     * @param userPhone 用户手机号
-     * @return 未读消息数
+     * @param conversationKey 会话键
+     * @param afterSeq 起始序列号（不包含）
+     * @param limit 数量限制
+     * @return 消息列表
      */
-    int countUnreadMessages(@Param("userPhone") String userPhone);
+    List<Message> selectByConversationKeyAfterSeq(
+            @Param("conversationKey") Long conversationKey,
+            @Param("afterSeq") Long afterSeq,
+            @Param("limit") Integer limit);
     
     /**
-     * 查询用户的离线消息
+     * 查询会话当前最大序列号
      *
-     * @param userPhone 用户手机号
-     * @return 离线消息列表
+     * @param conversationKey 会话键
+     * @return 最大序列号，无消息时返回null
      */
-    List<Message> selectOfflineMessages(@Param("userPhone") String userPhone);
+    Long selectMaxSeqByConversationKey(@Param("conversationKey") Long conversationKey);
     
     /**
-     * 确认接收离线消息
+     * 为尚未设置会话键的历史消息回填会话键（每次处理一批）
      *
-     * @param userPhone 用户手机号
-     * @param messageIds 消息ID列表
+     * @param batchSize 批量大小
      * @return 影响行数
      */
-    int confirmOfflineMessages(@Param("userPhone") String userPhone, @Param("messageIds") List<Long> messageIds);
-} 
\ No newline at end of file
+    int backfillConversationKey(@Param("batchSize") int batchSize);
+}
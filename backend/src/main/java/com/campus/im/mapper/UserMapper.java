@@ -4,7 +4,9 @@ import com.campus.im.entity.User;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 用户Mapper接口
@@ -60,6 +62,14 @@ public interface UserMapper {
      */
     int updateLastActiveTime(@Param("id") Long id);
 
+    /**
+     * 批量更新用户最后活跃时间
+     *
+     * @param times 用户ID到最后活跃时间的映射
+     * @return 影响行数
+     */
+    int batchUpdateLastActiveTime(@Param("times") Map<Long, LocalDateTime> times);
+
     /**
      * 获取所有用户
      *
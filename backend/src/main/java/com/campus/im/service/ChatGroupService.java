@@ -163,6 +163,16 @@ public interface ChatGroupService {
      */
     List<GroupMember> getGroupMembers(Long groupId);
     
+    /**
+     * 按用户ID分页获取群成员
+     *
+     * @param groupId 群组ID
+     * @param afterUserId 上一页最后一个成员的用户ID，首页为null
+     * @param limit 每页数量
+     * @return 群成员列表，按用户ID升序
+     */
+    List<GroupMember> getGroupMembersPage(Long groupId, Long afterUserId, int limit);
+    
     /**
      * 获取群成员用户信息列表
      *
@@ -196,6 +206,32 @@ public interface ChatGroupService {
      */
     boolean isUserInGroup(Long groupId, Long userId);
     
+    /**
+     * 检查用户当前是否在群中被禁言
+     *
+     * @param groupId 群组ID
+     * @param userId 用户ID
+     * @return 是否被禁言
+     */
+    boolean isMemberMuted(Long groupId, Long userId);
+    
+    /**
+     * 获取群组的消息扇出模式（读取群成员缓存）
+     *
+     * @param groupId 群组ID
+     * @return 扇出模式
+     */
+    int getFanoutMode(Long groupId);
+    
+    /**
+     * 将群组升级为超级群：切换为读扩散，消息只推送群频道订阅，并放宽成员上限
+     *
+     * @param groupId 群组ID
+     * @param operatorId 操作者ID（须为群主）
+     * @return 是否成功
+     */
+    boolean upgradeToSupergroup(Long groupId, Long operatorId);
+    
     /**
      * 检查用户是否有权限执行操作
      *
@@ -0,0 +1,38 @@
+package com.campus.im.service;
+
+import com.campus.im.websocket.EncodedPayload;
+
+import java.util.Collection;
+
+/**
+ * 跨节点消息转发服务接口
+ * 内置的STOMP代理只能投递到本节点的会话；多实例部署时由该服务把消息转发到持有目标会话或订阅的其他节点，
+ * 其他节点收到后只在本地投递，不会再次转发
+ */
+public interface ClusterRelayService {
+
+    /**
+     * 是否启用了跨节点转发
+     *
+     * @return 是否启用
+     */
+    boolean isEnabled();
+
+    /**
+     * 转发到其他节点上用户的私有队列
+     *
+     * @param users 用户标识（手机号）集合
+     * @param destination 用户目的地，如 /queue/private.message
+     * @param payload 已序列化的消息体
+     * @return 其他节点上持有会话的用户数
+     */
+    int relayToUsers(Collection<String> users, String destination, EncodedPayload payload);
+
+    /**
+     * 转发到其他节点上的订阅目的地
+     *
+     * @param destination 订阅目的地，如 /topic/group.{id}
+     * @param payload 已序列化的消息体
+     */
+    void relayBroadcast(String destination, EncodedPayload payload);
+}
@@ -0,0 +1,19 @@
+package com.campus.im.service;
+
+import com.campus.im.entity.Message;
+
+/**
+ * 群会话批量更新服务接口
+ * 一条群消息只用一条多行 INSERT ... ON DUPLICATE KEY UPDATE 更新全部成员的会话，并在投递线程之外执行；
+ * 读扩散群组只推进群的最新序列号和发送者自己的会话
+ */
+public interface GroupConversationUpdateService {
+
+    /**
+     * 提交一条群消息，异步更新所有成员的会话与未读计数；在事务中调用时于事务提交后才入队
+     *
+     * @param message 群消息
+     * @param readFanout 群组是否为读扩散模式
+     */
+    void submit(Message message, boolean readFanout);
+}
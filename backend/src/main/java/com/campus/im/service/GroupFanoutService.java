@@ -0,0 +1,30 @@
+package com.campus.im.service;
+
+import com.campus.im.websocket.EncodedPayload;
+
+import java.util.Set;
+
+/**
+ * 群消息扇出服务接口
+ * 只向群组成员中当前在线的用户投递消息，投递成本与群规模相关而与全站用户数无关
+ */
+public interface GroupFanoutService {
+
+    /**
+     * 向群组在线成员的私有队列投递消息
+     *
+     * @param groupId 群组ID
+     * @param destination 用户目的地，如 /queue/group.message
+     * @param payload 已序列化的消息体，所有成员共用
+     * @return 实际投递的成员数
+     */
+    int fanout(Long groupId, String destination, EncodedPayload payload);
+
+    /**
+     * 获取群组成员ID集合（读取群成员缓存）
+     *
+     * @param groupId 群组ID
+     * @return 只读的成员ID集合
+     */
+    Set<Long> getMemberIds(Long groupId);
+}
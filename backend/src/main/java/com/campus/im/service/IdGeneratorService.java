@@ -0,0 +1,23 @@
+package com.campus.im.service;
+
+/**
+ * ID生成服务接口
+ * 在写入数据库之前预先分配主键，使消息可以先投递、后落库，多个实例也可以同时写入
+ */
+public interface IdGeneratorService {
+
+    /**
+     * 生成下一个ID
+     * 开启雪花算法时返回全局唯一的时间有序ID，否则返回单实例内递增的消息ID
+     *
+     * @return ID
+     */
+    long nextId();
+
+    /**
+     * 是否开启雪花算法；开启后消息、会话、消息回执均由应用分配主键，不再依赖AUTO_INCREMENT
+     *
+     * @return 是否开启
+     */
+    boolean isSnowflakeEnabled();
+}
@@ -0,0 +1,69 @@
+package com.campus.im.service;
+
+import com.campus.im.dto.ConversationPreviewDTO;
+import com.campus.im.entity.Message;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 会话收件箱服务接口
+ * 每个用户在Redis中维护一个按最后消息时间排序的会话有序集合，每个会话的最后一条消息摘要单独存放，
+ * 发送、撤回、置顶、免打扰、删除时增量更新，一次调用即可返回渲染好的会话列表；
+ * 增量更新在调用方事务提交后执行，没有事务时立即执行
+ */
+public interface InboxService {
+
+    /**
+     * 获取用户的会话列表，置顶会话在前，其余按最后消息时间倒序
+     *
+     * @param userId 用户ID
+     * @param limit 最多返回的会话数
+     * @return 会话列表
+     */
+    List<ConversationPreviewDTO> getInbox(Long userId, int limit);
+
+    /**
+     * 新消息发送后更新会话摘要及相关用户的会话排序
+     *
+     * @param message 消息
+     * @param userIds 会话中的用户ID集合：私聊为双方，群聊为全部成员
+     */
+    void onMessageSent(Message message, Collection<Long> userIds);
+
+    /**
+     * 消息撤回后更新会话摘要（仅当被撤回的是最后一条消息时）
+     *
+     * @param message 被撤回的消息
+     */
+    void onMessageRecalled(Message message);
+
+    /**
+     * 更新会话置顶状态
+     *
+     * @param userId 用户ID
+     * @param conversationType 会话类型
+     * @param targetId 目标ID
+     * @param isTop 是否置顶
+     */
+    void updateTop(Long userId, Integer conversationType, Long targetId, boolean isTop);
+
+    /**
+     * 更新会话免打扰状态
+     *
+     * @param userId 用户ID
+     * @param conversationType 会话类型
+     * @param targetId 目标ID
+     * @param isMuted 是否免打扰
+     */
+    void updateMuted(Long userId, Integer conversationType, Long targetId, boolean isMuted);
+
+    /**
+     * 从用户的会话列表中移除会话
+     *
+     * @param userId 用户ID
+     * @param conversationType 会话类型
+     * @param targetId 目标ID
+     */
+    void remove(Long userId, Integer conversationType, Long targetId);
+}
@@ -0,0 +1,47 @@
+package com.campus.im.service;
+
+import com.campus.im.websocket.EncodedPayload;
+
+import java.util.Collection;
+
+/**
+ * 消息投递服务接口
+ * 消息先序列化一次，再把同一份字节投递给所有接收方
+ */
+public interface MessageDeliveryService {
+
+    /**
+     * 将消息序列化为JSON字节
+     *
+     * @param payload 消息对象
+     * @return 已序列化的消息体
+     */
+    EncodedPayload encode(Object payload);
+
+    /**
+     * 投递到指定用户的私有队列（本节点及持有该用户会话的其他节点）
+     *
+     * @param user 用户标识（手机号）
+     * @param destination 用户目的地，如 /queue/private.message
+     * @param payload 已序列化的消息体
+     */
+    void sendToUser(String user, String destination, EncodedPayload payload);
+
+    /**
+     * 投递到多个用户的私有队列
+     *
+     * @param users 用户标识（手机号）集合
+     * @param destination 用户目的地
+     * @param payload 已序列化的消息体
+     * @return 在线并已投递的用户数
+     */
+    int sendToUsers(Collection<String> users, String destination, EncodedPayload payload);
+
+    /**
+     * 广播到订阅目的地，如 /topic/group.{id}（本节点及有订阅者的其他节点）
+     *
+     * @param destination 订阅目的地
+     * @param payload 已序列化的消息体
+     */
+    void broadcast(String destination, EncodedPayload payload);
+}
@@ -0,0 +1,42 @@
+package com.campus.im.service;
+
+/**
+ * 会话序列号服务接口
+ * 为每个私聊/群聊会话分配单调递增的序列号，客户端据此发现缺失消息并按区间增量同步
+ */
+public interface MessageSequenceService {
+
+    /**
+     * 分配私聊会话的下一个序列号
+     *
+     * @param userId 用户ID
+     * @param friendId 好友ID
+     * @return 序列号
+     */
+    long nextPrivateSeq(Long userId, Long friendId);
+
+    /**
+     * 分配群聊会话的下一个序列号
+     *
+     * @param groupId 群组ID
+     * @return 序列号
+     */
+    long nextGroupSeq(Long groupId);
+
+    /**
+     * 获取私聊会话当前最大序列号
+     *
+     * @param userId 用户ID
+     * @param friendId 好友ID
+     * @return 最大序列号，无消息时为0
+     */
+    long getCurrentPrivateSeq(Long userId, Long friendId);
+
+    /**
+     * 获取群聊会话当前最大序列号
+     *
+     * @param groupId 群组ID
+     * @return 最大序列号，无消息时为0
+     */
+    long getCurrentGroupSeq(Long groupId);
+}
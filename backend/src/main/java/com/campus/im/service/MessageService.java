@@ -127,6 +127,27 @@ public interface MessageService {
      */
     List<Message> getGroupMessages(Long groupId, int limit, int offset);
     
+    /**
+     * 获取私聊历史消息（按会话序列号游标分页）
+     *
+     * @param userId 用户ID
+     * @param friendId 好友ID
+     * @param beforeSeq 游标序列号（查询该序列号之前的消息），为null时从最新消息开始
+     * @param limit 数量限制
+     * @return 按序列号降序排列的消息列表
+     */
+    List<Message> getPrivateMessagesBeforeSeq(Long userId, Long friendId, Long beforeSeq, Integer limit);
+    
+    /**
+     * 获取群聊历史消息（按会话序列号游标分页）
+     *
+     * @param groupId 群组ID
+     * @param beforeSeq 游标序列号（查询该序列号之前的消息），为null时从最新消息开始
+     * @param limit 数量限制
+     * @return 按序列号降序排列的消息列表
+     */
+    List<Message> getGroupMessagesBeforeSeq(Long groupId, Long beforeSeq, Integer limit);
+    
     /**
      * 标记消息为已读
      *
@@ -57,4 +57,26 @@ public interface MessageSyncService {
      * @return 是否成功
      */
     boolean unregisterDevice(String userPhone, String deviceId);
-} 
\ No newline at end of file
+
+    /**
+     * 获取会话中序列号大于指定值的消息，用于断线重连后补齐缺失区间
+     *
+     * @param userId 当前用户ID
+     * @param conversationType 会话类型：0-私聊，1-群聊
+     * @param targetId 目标ID：私聊为好友ID，群聊为群组ID
+     * @param afterSeq 客户端已有的最大序列号
+     * @param limit 消息数量限制
+     * @return 按序列号升序排列的消息列表
+     */
+    List<Message> getMessagesAfterSeq(Long userId, Integer conversationType, Long targetId, Long afterSeq, Integer limit);
+
+    /**
+     * 获取会话当前最大序列号
+     *
+     * @param userId 当前用户ID
+     * @param conversationType 会话类型：0-私聊，1-群聊
+     * @param targetId 目标ID：私聊为好友ID，群聊为群组ID
+     * @return 最大序列号，无权限或参数错误时返回null
+     */
+    Long getCurrentSeq(Long userId, Integer conversationType, Long targetId);
+}
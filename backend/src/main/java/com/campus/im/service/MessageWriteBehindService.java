@@ -0,0 +1,46 @@
+package com.campus.im.service;
+
+import com.campus.im.entity.Message;
+
+/**
+ * 消息异步落库服务接口
+ * 开启后消息先分配ID并投递，再由后台线程批量写入数据库
+ */
+public interface MessageWriteBehindService {
+
+    /**
+     * 是否开启异步落库
+     *
+     * @return 是否开启
+     */
+    boolean isEnabled();
+
+    /**
+     * 提交消息等待批量写入；队列已满时在当前线程同步写入
+     *
+     * @param message 已分配ID的消息
+     * @return 是否提交（或写入）成功
+     */
+    boolean submit(Message message);
+
+    /**
+     * 获取尚未落库的消息，包括写入失败等待重试的消息
+     *
+     * @param messageId 消息ID
+     * @return 消息，已落库或不存在时返回null
+     */
+    Message getPending(Long messageId);
+
+    /**
+     * 获取会话中尚未落库消息的最大序列号
+     *
+     * @param conversationKey 会话键
+     * @return 最大序列号，没有时返回0
+     */
+    long getMaxPendingSeq(Long conversationKey);
+
+    /**
+     * 立即写入所有排队中的消息，并立即重试写入失败的消息
+     */
+    void flush();
+}
@@ -0,0 +1,40 @@
+package com.campus.im.service;
+
+/**
+ * 在线状态服务接口
+ * 根据STOMP会话的连接与断开维护本节点的在线用户，最后活跃时间定期批量写回数据库，
+ * 上下线变化合并后推送给在线的好友
+ */
+public interface PresenceService {
+
+    /**
+     * 用户是否在本节点在线
+     *
+     * @param userId 用户ID
+     * @return 是否在线
+     */
+    boolean isOnline(Long userId);
+
+    /**
+     * 本节点的在线用户数
+     *
+     * @return 在线用户数
+     */
+    int getOnlineUserCount();
+
+    /**
+     * 记录用户活跃，最后活跃时间在下一次批量写回时落库
+     *
+     * @param userId 用户ID
+     * @return 是否记录成功
+     */
+    boolean touch(Long userId);
+
+    /**
+     * 根据手机号记录用户活跃
+     *
+     * @param phone 手机号
+     * @return 是否记录成功
+     */
+    boolean touch(String phone);
+}
@@ -0,0 +1,29 @@
+package com.campus.im.service;
+
+/**
+ * 已读回执服务接口
+ * 客户端上报“会话已读到某条消息”，短时间窗口内同一读者同一会话的上报合并为一个已读水位，
+ * 只落库一次，并向对方推送一条聚合后的回执
+ */
+public interface ReadReceiptService {
+
+    /**
+     * 上报会话已读水位
+     *
+     * @param readerId 读者用户ID
+     * @param conversationType 会话类型：0-私聊，1-群聊
+     * @param targetId 目标ID：私聊为对方用户ID，群聊为群组ID
+     * @param messageId 已读到的消息ID
+     * @return 是否接受上报
+     */
+    boolean markReadUpTo(Long readerId, Integer conversationType, Long targetId, Long messageId);
+
+    /**
+     * 按单条消息上报已读（兼容只携带消息ID的旧回执），换算为所在会话的已读水位
+     *
+     * @param readerId 读者用户ID
+     * @param messageId 消息ID
+     * @return 是否接受上报
+     */
+    boolean markMessageRead(Long readerId, Long messageId);
+}
@@ -0,0 +1,27 @@
+package com.campus.im.service;
+
+/**
+ * 输入状态聚合服务接口
+ * 私聊按（发送者，接收者）去抖，每个时间窗口最多推送一次状态变化；
+ * 群聊按群合并“正在输入”的成员，定期推送一帧；长时间没有刷新的输入状态自动过期
+ */
+public interface TypingService {
+
+    /**
+     * 记录私聊输入状态
+     *
+     * @param senderPhone 输入者手机号
+     * @param receiverPhone 接收者手机号
+     * @param typing 是否正在输入
+     */
+    void onPrivateTyping(String senderPhone, String receiverPhone, boolean typing);
+
+    /**
+     * 记录群聊输入状态
+     *
+     * @param senderPhone 输入者手机号
+     * @param groupId 群组ID
+     * @param typing 是否正在输入
+     */
+    void onGroupTyping(String senderPhone, Long groupId, boolean typing);
+}
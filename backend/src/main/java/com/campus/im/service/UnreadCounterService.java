@@ -0,0 +1,93 @@
+package com.campus.im.service;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 未读消息计数服务接口
+ * 每个用户一个Redis哈希，字段为 "会话类型:目标ID" 的未读数以及 total 总数，读取总未读数为O(1)；
+ * 计数定期回写到 conversation.unread_count；读扩散群组不写计数，未读数在读取时由序列号之差得出
+ */
+public interface UnreadCounterService {
+
+    /**
+     * 会话未读数加一
+     *
+     * @param userId 用户ID
+     * @param conversationType 会话类型
+     * @param targetId 目标ID：私聊为对方用户ID，群聊为群组ID
+     */
+    void increment(Long userId, Integer conversationType, Long targetId);
+
+    /**
+     * 批量为多个用户的同一会话未读数加一（管道批量执行）
+     *
+     * @param userIds 用户ID集合
+     * @param conversationType 会话类型
+     * @param targetId 目标ID
+     */
+    void incrementForUsers(Collection<Long> userIds, Integer conversationType, Long targetId);
+
+    /**
+     * 批量清零多个用户同一会话的未读数（管道批量执行）
+     *
+     * @param userIds 用户ID集合
+     * @param conversationType 会话类型
+     * @param targetId 目标ID
+     */
+    void clearForUsers(Collection<Long> userIds, Integer conversationType, Long targetId);
+
+    /**
+     * 将多个用户同一会话在Redis中的未读数立即写回会话表（管道批量读取），不等待定时回写
+     *
+     * @param userIds 用户ID集合
+     * @param conversationType 会话类型
+     * @param targetId 目标ID
+     */
+    void syncForUsers(Collection<Long> userIds, Integer conversationType, Long targetId);
+
+    /**
+     * 清零会话未读数，读扩散群组同时将已读序列号推进到最新
+     *
+     * @param userId 用户ID
+     * @param conversationType 会话类型
+     * @param targetId 目标ID
+     * @return 清零前的未读数
+     */
+    int clear(Long userId, Integer conversationType, Long targetId);
+
+    /**
+     * 获取用户总未读数
+     *
+     * @param userId 用户ID
+     * @return 总未读数
+     */
+    int getTotalUnread(Long userId);
+
+    /**
+     * 获取用户各会话的未读数
+     *
+     * @param userId 用户ID
+     * @return key为 "会话类型:目标ID"，value为未读数
+     */
+    Map<String, Integer> getUnreadCounts(Long userId);
+
+    /**
+     * 将有变动的用户计数回写到会话表
+     *
+     * @param maxUsers 本次最多处理的用户数
+     * @return 处理的用户数
+     */
+    int reconcile(int maxUsers);
+
+    /**
+     * 生成会话字段名
+     *
+     * @param conversationType 会话类型
+     * @param targetId 目标ID
+     * @return 字段名
+     */
+    static String field(Integer conversationType, Long targetId) {
+        return conversationType + ":" + targetId;
+    }
+}
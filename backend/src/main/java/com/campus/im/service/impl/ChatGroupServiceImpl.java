@@ -1,14 +1,24 @@
 package com.campus.im.service.impl;
 
+import com.campus.im.cache.GroupMemberCache;
+import com.campus.im.cache.GroupMuteRegistry;
+import com.campus.im.cache.ReadFanoutStateCache;
 import com.campus.im.common.constant.GroupConstant;
+import com.campus.im.common.constant.MessageConstant;
 import com.campus.im.entity.ChatGroup;
 import com.campus.im.entity.GroupMember;
 import com.campus.im.entity.User;
 import com.campus.im.mapper.ChatGroupMapper;
 import com.campus.im.mapper.GroupMemberMapper;
 import com.campus.im.service.ChatGroupService;
+import com.campus.im.service.MessageSequenceService;
+import com.campus.im.service.UnreadCounterService;
 import com.campus.im.service.UserService;
+import com.campus.im.util.TransactionUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -16,6 +26,7 @@ import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -24,6 +35,8 @@ import java.util.stream.Collectors;
 @Service
 public class ChatGroupServiceImpl implements ChatGroupService {
     
+    private static final Logger logger = LoggerFactory.getLogger(ChatGroupServiceImpl.class);
+    
     @Autowired
     private ChatGroupMapper chatGroupMapper;
     
@@ -33,6 +46,25 @@ public class ChatGroupServiceImpl implements ChatGroupService {
     @Autowired
     private UserService userService;
     
+    @Autowired
+    private GroupMemberCache groupMemberCache;
+    
+    @Autowired
+    private GroupMuteRegistry groupMuteRegistry;
+    
+    @Autowired
+    private ReadFanoutStateCache readFanoutStateCache;
+    
+    @Autowired
+    private MessageSequenceService messageSequenceService;
+    
+    @Autowired
+    private UnreadCounterService unreadCounterService;
+    
+    // 成员数达到该值的群组切换为读扩散
+    @Value("${app.im.group.read-fanout-threshold:200}")
+    private int readFanoutThreshold;
+    
     @Override
     @Transactional
     public ChatGroup createGroup(String name, String avatar, Long creatorId, String description, String announcement, List<Long> memberIds) {
@@ -70,6 +102,7 @@ public class ChatGroupServiceImpl implements ChatGroupService {
         if (memberIds != null && !memberIds.isEmpty()) {
             addGroupMembers(chatGroup.getId(), memberIds, creatorId);
         }
+        groupMemberCache.addMembers(chatGroup.getId(), Collections.singletonList(creator));
         
         return chatGroup;
     }
@@ -87,6 +120,8 @@ public class ChatGroupServiceImpl implements ChatGroupService {
         }
         
         // 更新群组状态为已解散
+        readFanoutStateCache.invalidateAll(groupMemberCache.getMemberIds(groupId));
+        groupMemberCache.invalidate(groupId);
         return chatGroupMapper.updateStatus(groupId, GroupConstant.STATUS_DISSOLVED) > 0;
     }
     
@@ -157,13 +192,22 @@ public class ChatGroupServiceImpl implements ChatGroupService {
         groupMember.setUserId(userId);
         groupMember.setRole(GroupConstant.ROLE_MEMBER);
         groupMember.setJoinTime(LocalDateTime.now());
+        // 读扩散群组中新成员从当前消息开始计未读
+        groupMember.setLastReadSeq(chatGroup.getLastSeq());
         
         if (groupMemberMapper.insert(groupMember) <= 0) {
             return false;
         }
+        groupMemberCache.addMembers(groupId, Collections.singletonList(groupMember));
+        readFanoutStateCache.invalidate(userId);
         
         // 更新群组成员数量
-        return chatGroupMapper.updateMemberCount(groupId, 1) > 0;
+        if (chatGroupMapper.updateMemberCount(groupId, 1) <= 0) {
+            return false;
+        }
+        
+        checkFanoutMode(chatGroup, chatGroup.getMemberCount() + 1);
+        return true;
     }
     
     @Override
@@ -183,10 +227,8 @@ public class ChatGroupServiceImpl implements ChatGroupService {
             return false;
         }
         
-        // 过滤掉已经在群组中的用户
-        List<Long> newUserIds = userIds.stream()
-                .filter(userId -> !isUserInGroup(groupId, userId))
-                .collect(Collectors.toList());
+        // 过滤掉已经在群组中的用户（整批只读取一次成员缓存）
+        List<Long> newUserIds = groupMemberCache.filterNonMembers(groupId, userIds);
         
         if (newUserIds.isEmpty()) {
             return true;
@@ -205,15 +247,23 @@ public class ChatGroupServiceImpl implements ChatGroupService {
             groupMember.setUserId(userId);
             groupMember.setRole(GroupConstant.ROLE_MEMBER);
             groupMember.setJoinTime(LocalDateTime.now());
+            groupMember.setLastReadSeq(chatGroup.getLastSeq());
             groupMembers.add(groupMember);
         }
         
         if (groupMemberMapper.batchInsert(groupMembers) <= 0) {
             return false;
         }
+        groupMemberCache.addMembers(groupId, groupMembers);
+        readFanoutStateCache.invalidateAll(newUserIds);
         
         // 更新群组成员数量
-        return chatGroupMapper.updateMemberCount(groupId, newUserIds.size()) > 0;
+        if (chatGroupMapper.updateMemberCount(groupId, newUserIds.size()) <= 0) {
+            return false;
+        }
+        
+        checkFanoutMode(chatGroup, chatGroup.getMemberCount() + newUserIds.size());
+        return true;
     }
     
     @Override
@@ -229,23 +279,23 @@ public class ChatGroupServiceImpl implements ChatGroupService {
         }
         
         // 群主不能被移除
-        GroupMember member = groupMemberMapper.selectByGroupIdAndUserId(groupId, userId);
-        if (member == null || member.getRole() == GroupConstant.ROLE_OWNER) {
+        int role = groupMemberCache.getRole(groupId, userId);
+        if (role == GroupMemberCache.NOT_MEMBER || role == GroupConstant.ROLE_OWNER) {
             return false;
         }
         
         // 管理员不能移除其他管理员，只有群主可以
-        if (member.getRole() == GroupConstant.ROLE_ADMIN) {
-            GroupMember operator = groupMemberMapper.selectByGroupIdAndUserId(groupId, operatorId);
-            if (operator == null || operator.getRole() != GroupConstant.ROLE_OWNER) {
-                return false;
-            }
+        if (role == GroupConstant.ROLE_ADMIN
+                && groupMemberCache.getRole(groupId, operatorId) != GroupConstant.ROLE_OWNER) {
+            return false;
         }
         
         // 移除群成员
         if (groupMemberMapper.delete(groupId, userId) <= 0) {
             return false;
         }
+        groupMemberCache.removeMember(groupId, userId);
+        readFanoutStateCache.invalidate(userId);
         
         // 更新群组成员数量
         return chatGroupMapper.updateMemberCount(groupId, -1) > 0;
@@ -277,13 +327,13 @@ public class ChatGroupServiceImpl implements ChatGroupService {
         }
         
         // 检查用户是否在群组中
-        GroupMember member = groupMemberMapper.selectByGroupIdAndUserId(groupId, userId);
-        if (member == null) {
+        int role = groupMemberCache.getRole(groupId, userId);
+        if (role == GroupMemberCache.NOT_MEMBER) {
             return false;
         }
         
         // 群主不能退出群，必须先转让群主或解散群
-        if (member.getRole() == GroupConstant.ROLE_OWNER) {
+        if (role == GroupConstant.ROLE_OWNER) {
             return false;
         }
         
@@ -291,6 +341,8 @@ public class ChatGroupServiceImpl implements ChatGroupService {
         if (groupMemberMapper.delete(groupId, userId) <= 0) {
             return false;
         }
+        groupMemberCache.removeMember(groupId, userId);
+        readFanoutStateCache.invalidate(userId);
         
         // 更新群组成员数量
         return chatGroupMapper.updateMemberCount(groupId, -1) > 0;
@@ -324,7 +376,11 @@ public class ChatGroupServiceImpl implements ChatGroupService {
         }
         
         // 设置角色
-        return groupMemberMapper.updateRole(groupId, userId, role) > 0;
+        if (groupMemberMapper.updateRole(groupId, userId, role) <= 0) {
+            return false;
+        }
+        groupMemberCache.updateRole(groupId, userId, role);
+        return true;
     }
     
     @Override
@@ -356,26 +412,28 @@ public class ChatGroupServiceImpl implements ChatGroupService {
         }
         
         // 检查被禁言用户是否在群组中
-        GroupMember member = groupMemberMapper.selectByGroupIdAndUserId(groupId, userId);
-        if (member == null) {
+        int role = groupMemberCache.getRole(groupId, userId);
+        if (role == GroupMemberCache.NOT_MEMBER) {
             return false;
         }
         
         // 群主不能被禁言
-        if (member.getRole() == GroupConstant.ROLE_OWNER) {
+        if (role == GroupConstant.ROLE_OWNER) {
             return false;
         }
         
         // 管理员不能禁言其他管理员，只有群主可以
-        if (member.getRole() == GroupConstant.ROLE_ADMIN) {
-            GroupMember operator = groupMemberMapper.selectByGroupIdAndUserId(groupId, operatorId);
-            if (operator == null || operator.getRole() != GroupConstant.ROLE_OWNER) {
-                return false;
-            }
+        if (role == GroupConstant.ROLE_ADMIN
+                && groupMemberCache.getRole(groupId, operatorId) != GroupConstant.ROLE_OWNER) {
+            return false;
         }
         
         // 设置禁言
-        return groupMemberMapper.updateMuteStatus(groupId, userId, muteEndTime) > 0;
+        if (groupMemberMapper.updateMuteStatus(groupId, userId, muteEndTime) <= 0) {
+            return false;
+        }
+        groupMuteRegistry.mute(groupId, userId, muteEndTime);
+        return true;
     }
     
     @Override
@@ -396,7 +454,11 @@ public class ChatGroupServiceImpl implements ChatGroupService {
         }
         
         // 取消禁言
-        return groupMemberMapper.updateMuteStatus(groupId, userId, null) > 0;
+        if (groupMemberMapper.updateMuteStatus(groupId, userId, null) <= 0) {
+            return false;
+        }
+        groupMuteRegistry.unmute(groupId, userId);
+        return true;
     }
     
     @Override
@@ -426,6 +488,15 @@ public class ChatGroupServiceImpl implements ChatGroupService {
         return groupMemberMapper.selectByGroupId(groupId);
     }
     
+    @Override
+    public List<GroupMember> getGroupMembersPage(Long groupId, Long afterUserId, int limit) {
+        if (groupId == null || limit <= 0) {
+            return Collections.emptyList();
+        }
+        
+        return groupMemberMapper.selectPageByGroupId(groupId, afterUserId, limit);
+    }
+    
     @Override
     public List<User> getGroupMemberUsers(Long groupId) {
         List<GroupMember> members = getGroupMembers(groupId);
@@ -464,8 +535,49 @@ public class ChatGroupServiceImpl implements ChatGroupService {
             return false;
         }
         
-        GroupMember member = groupMemberMapper.selectByGroupIdAndUserId(groupId, userId);
-        return member != null;
+        return groupMemberCache.contains(groupId, userId);
+    }
+    
+    @Override
+    public boolean isMemberMuted(Long groupId, Long userId) {
+        if (groupId == null || userId == null) {
+            return false;
+        }
+        
+        return groupMuteRegistry.isMuted(groupId, userId);
+    }
+    
+    @Override
+    public int getFanoutMode(Long groupId) {
+        return groupMemberCache.getFanoutMode(groupId);
+    }
+    
+    @Override
+    @Transactional
+    public boolean upgradeToSupergroup(Long groupId, Long operatorId) {
+        if (groupId == null || operatorId == null) {
+            return false;
+        }
+        
+        // 只有群主可以升级
+        if (!hasPermission(groupId, operatorId, GroupConstant.ROLE_OWNER)) {
+            return false;
+        }
+        
+        ChatGroup chatGroup = chatGroupMapper.selectById(groupId);
+        if (chatGroup == null || chatGroup.getStatus() == GroupConstant.STATUS_DISSOLVED) {
+            return false;
+        }
+        if (chatGroup.getFanoutMode() != null && chatGroup.getFanoutMode() == GroupConstant.FANOUT_MODE_SUPER) {
+            return true;
+        }
+        
+        switchFanoutMode(chatGroup, GroupConstant.FANOUT_MODE_SUPER);
+        if (chatGroup.getMaxMemberCount() < GroupConstant.SUPERGROUP_MAX_MEMBER_COUNT) {
+            chatGroupMapper.updateMaxMemberCount(groupId, GroupConstant.SUPERGROUP_MAX_MEMBER_COUNT);
+        }
+        logger.info("群组升级为超级群 - 群组: {}, 成员数: {}", groupId, chatGroup.getMemberCount());
+        return true;
     }
     
     @Override
@@ -474,27 +586,68 @@ public class ChatGroupServiceImpl implements ChatGroupService {
             return false;
         }
         
-        GroupMember member = groupMemberMapper.selectByGroupIdAndUserId(groupId, userId);
-        if (member == null) {
+        int role = groupMemberCache.getRole(groupId, userId);
+        if (role == GroupMemberCache.NOT_MEMBER) {
             return false;
         }
         
         // 群主有所有权限
-        if (member.getRole() == GroupConstant.ROLE_OWNER) {
+        if (role == GroupConstant.ROLE_OWNER) {
             return true;
         }
         
         // 管理员有管理权限和普通成员权限
-        if (member.getRole() == GroupConstant.ROLE_ADMIN && requiredRole <= GroupConstant.ROLE_ADMIN) {
+        if (role == GroupConstant.ROLE_ADMIN && requiredRole <= GroupConstant.ROLE_ADMIN) {
             return true;
         }
         
         // 普通成员只有普通成员权限
-        return member.getRole() == requiredRole;
+        return role == requiredRole;
     }
     
     @Override
     public List<ChatGroup> getAllGroups() {
         return chatGroupMapper.selectList();
     }
-} 
\ No newline at end of file
+    
+    /**
+     * 成员数达到阈值的写扩散群组切换为读扩散
+     *
+     * @param chatGroup 群组
+     * @param memberCount 当前成员数
+     */
+    private void checkFanoutMode(ChatGroup chatGroup, int memberCount) {
+        if (memberCount < readFanoutThreshold
+                || (chatGroup.getFanoutMode() != null && chatGroup.getFanoutMode() != GroupConstant.FANOUT_MODE_WRITE)) {
+            return;
+        }
+        
+        switchFanoutMode(chatGroup, GroupConstant.FANOUT_MODE_READ);
+        logger.info("群组切换为读扩散 - 群组: {}, 成员数: {}", chatGroup.getId(), memberCount);
+    }
+    
+    /**
+     * 切换群组的扇出模式。从写扩散切出时群只维护最新序列号，成员的已读序列号按Redis中的最新未读数初始化，
+     * 之后每条消息的写入量与群规模无关
+     *
+     * @param chatGroup 群组
+     * @param fanoutMode 新的扇出模式（读扩散或超级群）
+     */
+    private void switchFanoutMode(ChatGroup chatGroup, int fanoutMode) {
+        Long groupId = chatGroup.getId();
+        long lastSeq = messageSequenceService.getCurrentGroupSeq(groupId);
+        chatGroupMapper.updateFanoutMode(groupId, fanoutMode, lastSeq);
+        if (chatGroup.getFanoutMode() == null || chatGroup.getFanoutMode() == GroupConstant.FANOUT_MODE_WRITE) {
+            // Redis中的计数最多落后会话表一个回写周期，先把成员的计数写回，再据此初始化已读序列号
+            Set<Long> memberIds = groupMemberCache.getMemberIds(groupId);
+            unreadCounterService.syncForUsers(memberIds, MessageConstant.CONVERSATION_TYPE_GROUP, groupId);
+            groupMemberMapper.initLastReadSeq(groupId, lastSeq);
+            // 未读数改由序列号计算，提交后清掉成员在Redis中的计数；回滚时计数保持不变
+            TransactionUtil.afterCommit(() -> unreadCounterService.clearForUsers(memberIds,
+                    MessageConstant.CONVERSATION_TYPE_GROUP, groupId));
+            readFanoutStateCache.invalidateAll(memberIds);
+        }
+        groupMemberCache.updateFanoutMode(groupId, fanoutMode);
+        chatGroup.setFanoutMode(fanoutMode);
+    }
+}
@@ -1,11 +1,16 @@
 package com.campus.im.service.impl;
 
+import com.campus.im.cache.ReadFanoutStateCache;
 import com.campus.im.common.constant.ConversationConstant;
 import com.campus.im.common.constant.MessageConstant;
 import com.campus.im.entity.Conversation;
 import com.campus.im.entity.Message;
 import com.campus.im.mapper.ConversationMapper;
 import com.campus.im.service.ConversationService;
+import com.campus.im.service.IdGeneratorService;
+import com.campus.im.service.InboxService;
+import com.campus.im.service.UnreadCounterService;
+import com.campus.im.util.TransactionUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -13,6 +18,7 @@ import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDateTime;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 会话服务实现类
@@ -23,6 +29,18 @@ public class ConversationServiceImpl implements ConversationService {
     @Autowired
     private ConversationMapper conversationMapper;
     
+    @Autowired
+    private IdGeneratorService idGeneratorService;
+    
+    @Autowired
+    private UnreadCounterService unreadCounterService;
+    
+    @Autowired
+    private InboxService inboxService;
+    
+    @Autowired
+    private ReadFanoutStateCache readFanoutStateCache;
+    
     @Override
     @Transactional
     public Conversation getOrCreateConversation(Long userId, Integer conversationType, Long targetId) {
@@ -43,6 +61,9 @@ public class ConversationServiceImpl implements ConversationService {
             conversation.setIsTop(ConversationConstant.IS_TOP_NO);
             conversation.setIsMuted(ConversationConstant.IS_MUTED_NO);
             conversation.setStatus(ConversationConstant.STATUS_NORMAL);
+            if (idGeneratorService.isSnowflakeEnabled()) {
+                conversation.setId(idGeneratorService.nextId());
+            }
             
             if (conversationMapper.insert(conversation) <= 0) {
                 return null;
@@ -69,7 +90,15 @@ public class ConversationServiceImpl implements ConversationService {
             return false;
         }
         
-        return conversationMapper.delete(conversationId) > 0;
+        Conversation conversation = conversationMapper.selectById(conversationId);
+        if (conversation == null || conversationMapper.delete(conversationId) <= 0) {
+            return false;
+        }
+        
+        clearUnreadCounter(conversation);
+        inboxService.remove(conversation.getUserId(), conversation.getConversationType(), conversation.getTargetId());
+        invalidateReadFanoutState(conversation);
+        return true;
     }
     
     @Override
@@ -78,7 +107,19 @@ public class ConversationServiceImpl implements ConversationService {
             return Collections.emptyList();
         }
         
-        return conversationMapper.selectByUserId(userId);
+        List<Conversation> conversations = conversationMapper.selectByUserId(userId);
+        if (conversations.isEmpty()) {
+            return conversations;
+        }
+        
+        // 未读数以Redis计数为准，数据库中的值可能尚未回写
+        Map<String, Integer> unreadCounts = unreadCounterService.getUnreadCounts(userId);
+        for (Conversation conversation : conversations) {
+            Integer unread = unreadCounts.get(UnreadCounterService.field(
+                    conversation.getConversationType(), conversation.getTargetId()));
+            conversation.setUnreadCount(unread == null ? 0 : unread);
+        }
+        return conversations;
     }
     
     @Override
@@ -151,14 +192,22 @@ public class ConversationServiceImpl implements ConversationService {
             return false;
         }
         
-        // 更新最后一条消息
-        if (!updateLastMessage(conversation.getId(), message.getId())) {
+        // 如果是接收消息，且不是免打扰的会话，未读消息数加一
+        boolean countUnread = !userId.equals(message.getSenderId())
+                && conversation.getIsMuted() == ConversationConstant.IS_MUTED_NO;
+        
+        // 最后一条消息与未读数在一条UPDATE中完成，不再回查消息表
+        LocalDateTime lastMessageTime = message.getSendTime() != null ? message.getSendTime() : LocalDateTime.now();
+        if (conversationMapper.updateForNewMessage(conversation.getId(), message.getId(),
+                lastMessageTime, countUnread ? 1 : 0) <= 0) {
             return false;
         }
         
-        // 如果是接收消息，且不是免打扰的会话，更新未读消息数
-        if (!userId.equals(message.getSenderId()) && conversation.getIsMuted() == ConversationConstant.IS_MUTED_NO) {
-            return updateUnreadCount(conversation.getId(), 1);
+        // Redis计数与待回写集合在提交后修改，回滚的消息不会留下未读数
+        if (countUnread) {
+            Integer conversationType = conversation.getConversationType();
+            Long targetId = conversation.getTargetId();
+            TransactionUtil.afterCommit(() -> unreadCounterService.increment(userId, conversationType, targetId));
         }
         
         return true;
@@ -221,7 +270,14 @@ public class ConversationServiceImpl implements ConversationService {
         }
         
         // 删除会话
-        return conversationMapper.delete(conversationId) > 0;
+        if (conversationMapper.delete(conversationId) <= 0) {
+            return false;
+        }
+        
+        clearUnreadCounter(conversation);
+        inboxService.remove(userId, conversation.getConversationType(), conversation.getTargetId());
+        invalidateReadFanoutState(conversation);
+        return true;
     }
     
     @Override
@@ -239,7 +295,12 @@ public class ConversationServiceImpl implements ConversationService {
         
         // 设置置顶状态
         int topStatus = isTop ? ConversationConstant.IS_TOP_YES : ConversationConstant.IS_TOP_NO;
-        return conversationMapper.updateTopStatus(conversationId, topStatus) > 0;
+        if (conversationMapper.updateTopStatus(conversationId, topStatus) <= 0) {
+            return false;
+        }
+        
+        inboxService.updateTop(userId, conversation.getConversationType(), conversation.getTargetId(), isTop);
+        return true;
     }
     
     @Override
@@ -257,7 +318,13 @@ public class ConversationServiceImpl implements ConversationService {
         
         // 设置免打扰状态
         int muteStatus = isMuted ? ConversationConstant.IS_MUTED_YES : ConversationConstant.IS_MUTED_NO;
-        return conversationMapper.updateMuteStatus(conversationId, muteStatus) > 0;
+        if (conversationMapper.updateMuteStatus(conversationId, muteStatus) <= 0) {
+            return false;
+        }
+        
+        inboxService.updateMuted(userId, conversation.getConversationType(), conversation.getTargetId(), isMuted);
+        invalidateReadFanoutState(conversation);
+        return true;
     }
     
     @Override
@@ -278,7 +345,12 @@ public class ConversationServiceImpl implements ConversationService {
         conversation.setLastMessageTime(null);
         conversation.setUnreadCount(0);
         
-        return conversationMapper.update(conversation) > 0;
+        if (conversationMapper.update(conversation) <= 0) {
+            return false;
+        }
+        
+        clearUnreadCounter(conversation);
+        return true;
     }
     
     @Override
@@ -295,6 +367,32 @@ public class ConversationServiceImpl implements ConversationService {
         }
         
         // 重置未读消息数
-        return resetUnreadCount(conversationId);
+        if (!resetUnreadCount(conversationId)) {
+            return false;
+        }
+        
+        clearUnreadCounter(conversation);
+        return true;
+    }
+    
+    /**
+     * 清零会话在Redis中的未读计数
+     *
+     * @param conversation 会话
+     */
+    private void clearUnreadCounter(Conversation conversation) {
+        unreadCounterService.clear(conversation.getUserId(), conversation.getConversationType(),
+                conversation.getTargetId());
+    }
+    
+    /**
+     * 群会话的免打扰或删除状态变化后，清除用户缓存的读扩散阅读进度
+     *
+     * @param conversation 会话
+     */
+    private void invalidateReadFanoutState(Conversation conversation) {
+        if (conversation.getConversationType() == MessageConstant.CONVERSATION_TYPE_GROUP) {
+            readFanoutStateCache.invalidate(conversation.getUserId());
+        }
     }
 } 
\ No newline at end of file
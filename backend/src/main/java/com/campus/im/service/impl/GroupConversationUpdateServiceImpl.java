@@ -0,0 +1,214 @@
+package com.campus.im.service.impl;
+
+import com.campus.im.cache.ReadFanoutStateCache;
+import com.campus.im.common.constant.MessageConstant;
+import com.campus.im.entity.Conversation;
+import com.campus.im.entity.Message;
+import com.campus.im.mapper.ChatGroupMapper;
+import com.campus.im.mapper.ConversationMapper;
+import com.campus.im.service.GroupConversationUpdateService;
+import com.campus.im.service.GroupFanoutService;
+import com.campus.im.service.IdGeneratorService;
+import com.campus.im.service.UnreadCounterService;
+import com.campus.im.util.TransactionUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 群会话批量更新服务实现类
+ */
+@Service
+public class GroupConversationUpdateServiceImpl implements GroupConversationUpdateService {
+
+    private static final Logger logger = LoggerFactory.getLogger(GroupConversationUpdateServiceImpl.class);
+
+    // 单条多行INSERT的最大行数
+    private static final int UPSERT_BATCH_SIZE = 500;
+
+    @Autowired
+    private ConversationMapper conversationMapper;
+
+    @Autowired
+    private ChatGroupMapper chatGroupMapper;
+
+    @Autowired
+    private GroupFanoutService groupFanoutService;
+
+    @Autowired
+    private UnreadCounterService unreadCounterService;
+
+    @Autowired
+    private IdGeneratorService idGeneratorService;
+
+    @Autowired
+    private ReadFanoutStateCache readFanoutStateCache;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.im.conversation.group-update.threads:2}")
+    private int threads;
+
+    @Value("${app.im.conversation.group-update.queue-capacity:10000}")
+    private int queueCapacity;
+
+    private ThreadPoolExecutor executor;
+
+    private Timer updateTimer;
+
+    private Counter fallbackCounter;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger index = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "group-conversation-update-" + index.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        updateTimer = Timer.builder("im.conversation.group-update.latency")
+                .description("单条群消息更新全部成员会话的耗时")
+                .register(meterRegistry);
+        fallbackCounter = Counter.builder("im.conversation.group-update.fallback")
+                .description("队列已满转为同步更新的群消息数")
+                .register(meterRegistry);
+        Gauge.builder("im.conversation.group-update.queue.size", executor, e -> e.getQueue().size())
+                .description("等待更新会话的群消息数")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                logger.warn("群会话更新队列未能在关闭前处理完 - 剩余: {}", executor.getQueue().size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void submit(Message message, boolean readFanout) {
+        if (message == null || message.getId() == null
+                || message.getConversationType() != MessageConstant.CONVERSATION_TYPE_GROUP) {
+            return;
+        }
+
+        // 消息提交后才入队，工作线程不会为未提交或已回滚的消息更新会话、未读数与群序列号
+        TransactionUtil.afterCommit(() -> enqueue(readFanout ? () -> advance(message) : () -> update(message)));
+    }
+
+    private void enqueue(Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // 队列已满时在当前线程执行，保证会话不丢更新
+            fallbackCounter.increment();
+            task.run();
+        }
+    }
+
+    /**
+     * 更新群消息所有成员的会话：发送者只推进最后一条消息，其他成员同时累加未读数
+     *
+     * @param message 群消息
+     */
+    private void update(Message message) {
+        long start = System.nanoTime();
+        Long groupId = message.getReceiverId();
+        Long senderId = message.getSenderId();
+        try {
+            Set<Long> memberIds = groupFanoutService.getMemberIds(groupId);
+            Set<Long> mutedIds = new HashSet<>(
+                    conversationMapper.selectMutedUserIds(MessageConstant.CONVERSATION_TYPE_GROUP, groupId));
+            LocalDateTime lastMessageTime = message.getSendTime() != null ? message.getSendTime() : LocalDateTime.now();
+
+            List<Conversation> batch = new ArrayList<>(Math.min(memberIds.size() + 1, UPSERT_BATCH_SIZE));
+            List<Long> unreadUserIds = new ArrayList<>(memberIds.size());
+            if (!memberIds.contains(senderId)) {
+                batch.add(newRow(senderId, groupId, message, lastMessageTime, 0));
+            }
+            for (Long memberId : memberIds) {
+                boolean countUnread = !memberId.equals(senderId) && !mutedIds.contains(memberId);
+                if (countUnread) {
+                    unreadUserIds.add(memberId);
+                }
+                batch.add(newRow(memberId, groupId, message, lastMessageTime, countUnread ? 1 : 0));
+                if (batch.size() >= UPSERT_BATCH_SIZE) {
+                    conversationMapper.batchUpsertForNewMessage(batch);
+                    batch = new ArrayList<>(UPSERT_BATCH_SIZE);
+                }
+            }
+            if (!batch.isEmpty()) {
+                conversationMapper.batchUpsertForNewMessage(batch);
+            }
+
+            unreadCounterService.incrementForUsers(unreadUserIds, MessageConstant.CONVERSATION_TYPE_GROUP, groupId);
+        } catch (Exception e) {
+            logger.error("群会话批量更新失败 - 群组: {}, 消息ID: {}", groupId, message.getId(), e);
+        } finally {
+            updateTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 读扩散群组：只推进群最新序列号和发送者的会话，写入量与群规模无关
+     *
+     * @param message 群消息
+     */
+    private void advance(Message message) {
+        long start = System.nanoTime();
+        Long groupId = message.getReceiverId();
+        try {
+            if (message.getSeq() != null) {
+                chatGroupMapper.updateLastSeq(groupId, message.getSeq());
+                readFanoutStateCache.advanceLastSeq(groupId, message.getSeq());
+            }
+            LocalDateTime lastMessageTime = message.getSendTime() != null ? message.getSendTime() : LocalDateTime.now();
+            conversationMapper.batchUpsertForNewMessage(Collections.singletonList(
+                    newRow(message.getSenderId(), groupId, message, lastMessageTime, 0)));
+        } catch (Exception e) {
+            logger.error("读扩散群组序列号推进失败 - 群组: {}, 消息ID: {}", groupId, message.getId(), e);
+        } finally {
+            updateTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Conversation newRow(Long userId, Long groupId, Message message, LocalDateTime lastMessageTime, int unreadDelta) {
+        Conversation conversation = new Conversation();
+        conversation.setUserId(userId);
+        conversation.setConversationType(MessageConstant.CONVERSATION_TYPE_GROUP);
+        conversation.setTargetId(groupId);
+        conversation.setUnreadCount(unreadDelta);
+        conversation.setLastMessageId(message.getId());
+        conversation.setLastMessageTime(lastMessageTime);
+        if (idGeneratorService.isSnowflakeEnabled()) {
+            conversation.setId(idGeneratorService.nextId());
+        }
+        return conversation;
+    }
+}
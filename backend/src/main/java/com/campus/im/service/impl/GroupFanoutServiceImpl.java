@@ -0,0 +1,91 @@
+package com.campus.im.service.impl;
+
+import com.campus.im.cache.GroupMemberCache;
+import com.campus.im.entity.User;
+import com.campus.im.service.GroupFanoutService;
+import com.campus.im.service.MessageDeliveryService;
+import com.campus.im.service.UserService;
+import com.campus.im.websocket.EncodedPayload;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 群消息扇出服务实现类
+ */
+@Service
+public class GroupFanoutServiceImpl implements GroupFanoutService {
+
+    private static final Logger logger = LoggerFactory.getLogger(GroupFanoutServiceImpl.class);
+
+    @Autowired
+    private GroupMemberCache groupMemberCache;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private MessageDeliveryService messageDeliveryService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Timer fanoutTimer;
+
+    private DistributionSummary fanoutSize;
+
+    @PostConstruct
+    public void init() {
+        fanoutTimer = Timer.builder("im.group.fanout.latency")
+                .description("单条群消息扇出耗时")
+                .register(meterRegistry);
+        fanoutSize = DistributionSummary.builder("im.group.fanout.size")
+                .description("单条群消息实际投递的在线成员数")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public int fanout(Long groupId, String destination, EncodedPayload payload) {
+        if (groupId == null || destination == null || payload == null) {
+            return 0;
+        }
+
+        long start = System.nanoTime();
+        int delivered = 0;
+
+        Set<Long> memberIds = getMemberIds(groupId);
+        if (!memberIds.isEmpty()) {
+            // 一次批量查询解析所有成员手机号，投递服务只投递给在线（本节点或其他节点）的成员
+            List<User> members = userService.getUserByIds(new ArrayList<>(memberIds));
+            List<String> phones = new ArrayList<>(members.size());
+            for (User member : members) {
+                if (member.getPhone() != null) {
+                    phones.add(member.getPhone());
+                }
+            }
+            delivered = messageDeliveryService.sendToUsers(phones, destination, payload);
+        }
+
+        long elapsed = System.nanoTime() - start;
+        fanoutTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        fanoutSize.record(delivered);
+        logger.debug("群消息扇出完成 - 群组: {}, 成员数: {}, 投递数: {}, 耗时: {}μs",
+                groupId, memberIds.size(), delivered, TimeUnit.NANOSECONDS.toMicros(elapsed));
+        return delivered;
+    }
+
+    @Override
+    public Set<Long> getMemberIds(Long groupId) {
+        return groupMemberCache.getMemberIds(groupId);
+    }
+}
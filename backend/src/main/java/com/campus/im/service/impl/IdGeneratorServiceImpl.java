@@ -0,0 +1,95 @@
+package com.campus.im.service.impl;
+
+import com.campus.im.mapper.MessageMapper;
+import com.campus.im.service.IdGeneratorService;
+import com.campus.im.util.SnowflakeIdGenerator;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ID生成服务实现类
+ * 默认以消息表当前最大ID为起点在进程内原子递增，仅适用于单实例；
+ * 开启雪花算法后由 {@link SnowflakeIdGenerator} 生成，各实例通过节点ID区分
+ */
+@Service
+public class IdGeneratorServiceImpl implements IdGeneratorService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdGeneratorServiceImpl.class);
+
+    @Autowired
+    private MessageMapper messageMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.im.id.snowflake.enabled:false}")
+    private boolean snowflakeEnabled;
+
+    // 节点ID，取值0~1023；未配置时由主机名推导
+    @Value("${app.im.id.snowflake.node-id:-1}")
+    private long nodeId;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private SnowflakeIdGenerator snowflake;
+
+    @PostConstruct
+    public void init() {
+        if (snowflakeEnabled) {
+            long resolvedNodeId = nodeId >= 0 ? nodeId : deriveNodeId();
+            snowflake = new SnowflakeIdGenerator(resolvedNodeId);
+            Gauge.builder("im.id.snowflake.clock.drift", snowflake, SnowflakeIdGenerator::getClockDrift)
+                    .description("雪花ID逻辑时钟领先系统时钟的毫秒数")
+                    .baseUnit("milliseconds")
+                    .register(meterRegistry);
+            logger.info("雪花ID生成器初始化完成 - 节点ID: {}", resolvedNodeId);
+            return;
+        }
+
+        Long maxId = messageMapper.selectMaxId();
+        sequence.set(maxId == null ? 0L : maxId);
+        logger.info("消息ID生成器初始化完成 - 起始ID: {}", sequence.get());
+    }
+
+    @Override
+    public long nextId() {
+        if (snowflake != null) {
+            return snowflake.nextId();
+        }
+
+        return sequence.incrementAndGet();
+    }
+
+    @Override
+    public boolean isSnowflakeEnabled() {
+        return snowflakeEnabled;
+    }
+
+    /**
+     * 由主机名推导节点ID；多实例部署时应显式配置以避免冲突
+     *
+     * @return 节点ID
+     */
+    private long deriveNodeId() {
+        String hostName;
+        try {
+            hostName = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            hostName = "localhost";
+        }
+        long derived = (hostName.hashCode() & 0x7fffffffL) % (SnowflakeIdGenerator.MAX_NODE_ID + 1);
+        logger.warn("未配置雪花ID节点ID，根据主机名 {} 推导为 {}，多实例部署请显式配置 app.im.id.snowflake.node-id",
+                hostName, derived);
+        return derived;
+    }
+}
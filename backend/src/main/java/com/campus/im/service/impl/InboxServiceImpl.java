@@ -0,0 +1,590 @@
+package com.campus.im.service.impl;
+
+import com.campus.im.cache.ReadFanoutStateCache;
+import com.campus.im.common.constant.ConversationConstant;
+import com.campus.im.common.constant.MessageConstant;
+import com.campus.im.dto.ConversationPreviewDTO;
+import com.campus.im.dto.GroupReadStateDTO;
+import com.campus.im.entity.ChatGroup;
+import com.campus.im.entity.Conversation;
+import com.campus.im.entity.Message;
+import com.campus.im.entity.User;
+import com.campus.im.mapper.ConversationMapper;
+import com.campus.im.mapper.MessageMapper;
+import com.campus.im.service.ChatGroupService;
+import com.campus.im.service.InboxService;
+import com.campus.im.service.UnreadCounterService;
+import com.campus.im.service.UserService;
+import com.campus.im.util.ConversationKeyUtil;
+import com.campus.im.util.TransactionUtil;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 会话收件箱服务实现类
+ * 有序集合的分值为最后消息时间（毫秒），置顶会话额外加上 TOP_BONUS，使置顶会话始终排在前面；
+ * 用户的有序集合不存在时从会话表重建，之后只做增量更新；读扩散群组发消息时不更新成员的有序集合，
+ * 由成员读取收件箱时按会话摘要的时间推进（用户所在的读扩散群组取自进程内缓存，读取时不查询数据库）。
+ * 所有写操作都在事务提交后执行，避免其他请求读到未提交的消息摘要，或在回滚后留下不存在的会话
+ */
+@Service
+public class InboxServiceImpl implements InboxService {
+
+    // Redis key
+    private static final String INBOX_KEY_PREFIX = "inbox:";
+    private static final String MUTED_KEY_PREFIX = "inbox:muted:";
+    private static final String PREVIEW_KEY_PREFIX = "inbox:preview:";
+
+    // 摘要哈希字段
+    private static final String FIELD_MESSAGE_ID = "messageId";
+    private static final String FIELD_SENDER_ID = "senderId";
+    private static final String FIELD_SENDER_NICKNAME = "senderNickname";
+    private static final String FIELD_CONTENT_TYPE = "contentType";
+    private static final String FIELD_SNIPPET = "snippet";
+    private static final String FIELD_RECALLED = "recalled";
+    private static final String FIELD_TIME = "time";
+
+    // 置顶会话的分值加成，远大于任何毫秒时间戳
+    private static final long TOP_BONUS = 10_000_000_000_000L;
+
+    // 摘要最大字符数
+    private static final int SNIPPET_MAX_LENGTH = 50;
+
+    private static final String RECALLED_SNIPPET = "[消息已撤回]";
+
+    // KEYS[1]=用户有序集合 ARGV[1]=会话成员 ARGV[2]=消息时间 ARGV[3]=置顶加成
+    // 有序集合不存在时不创建，留给读取时整体重建；保留置顶加成，且只向前推进
+    private static final String ADVANCE_LUA =
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return 0 end " +
+            "local bonus = tonumber(ARGV[3]) " +
+            "local score = tonumber(ARGV[2]) " +
+            "local current = redis.call('ZSCORE', KEYS[1], ARGV[1]) " +
+            "if current then " +
+            "  current = tonumber(current) " +
+            "  if current >= bonus then score = score + bonus end " +
+            "  if current >= score then return 0 end " +
+            "end " +
+            "redis.call('ZADD', KEYS[1], score, ARGV[1]) " +
+            "return 1";
+
+    private static final byte[] ADVANCE_SCRIPT_BYTES = ADVANCE_LUA.getBytes(StandardCharsets.UTF_8);
+
+    // KEYS[1]=用户有序集合 ARGV[1]=会话成员 ARGV[2]=置顶加成 ARGV[3]=1置顶/0取消
+    private static final RedisScript<Long> SET_TOP_SCRIPT = new DefaultRedisScript<>(
+            "local current = redis.call('ZSCORE', KEYS[1], ARGV[1]) " +
+            "if not current then return 0 end " +
+            "local bonus = tonumber(ARGV[2]) " +
+            "local base = tonumber(current) " +
+            "if base >= bonus then base = base - bonus end " +
+            "if ARGV[3] == '1' then base = base + bonus end " +
+            "redis.call('ZADD', KEYS[1], base, ARGV[1]) " +
+            "return 1",
+            Long.class);
+
+    // KEYS[1]=摘要哈希 ARGV[1]=被撤回的消息ID ARGV[2]=撤回后的摘要
+    private static final RedisScript<Long> RECALL_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('HGET', KEYS[1], 'messageId') ~= ARGV[1] then return 0 end " +
+            "redis.call('HSET', KEYS[1], 'recalled', '1', 'snippet', ARGV[2]) " +
+            "return 1",
+            Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private ConversationMapper conversationMapper;
+
+    @Autowired
+    private MessageMapper messageMapper;
+
+    @Autowired
+    private ReadFanoutStateCache readFanoutStateCache;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private ChatGroupService chatGroupService;
+
+    @Autowired
+    private UnreadCounterService unreadCounterService;
+
+    // 会话列表与摘要的过期时间，过期后从数据库重建
+    @Value("${app.im.inbox.ttl-hours:168}")
+    private long ttlHours;
+
+    @Override
+    public List<ConversationPreviewDTO> getInbox(Long userId, int limit) {
+        if (userId == null || limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        String inboxKey = INBOX_KEY_PREFIX + userId;
+        List<GroupReadStateDTO> readStates = readFanoutStateCache.get(userId);
+        if (!Boolean.TRUE.equals(stringRedisTemplate.hasKey(inboxKey)) && !rebuild(userId, readStates)) {
+            return Collections.emptyList();
+        }
+        advanceReadFanoutGroups(userId, readStates);
+
+        Set<ZSetOperations.TypedTuple<String>> entries =
+                stringRedisTemplate.opsForZSet().reverseRangeWithScores(inboxKey, 0, limit - 1);
+        if (entries == null || entries.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<ConversationPreviewDTO> items = new ArrayList<>(entries.size());
+        for (ZSetOperations.TypedTuple<String> entry : entries) {
+            String member = entry.getValue();
+            int separator = member.indexOf(':');
+            ConversationPreviewDTO item = new ConversationPreviewDTO();
+            item.setConversationType(Integer.valueOf(member.substring(0, separator)));
+            item.setTargetId(Long.valueOf(member.substring(separator + 1)));
+            item.setIsTop(entry.getScore() != null && entry.getScore() >= TOP_BONUS
+                    ? ConversationConstant.IS_TOP_YES : ConversationConstant.IS_TOP_NO);
+            items.add(item);
+        }
+
+        // 一次管道读取所有会话摘要
+        List<Object> previews = stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                for (ConversationPreviewDTO item : items) {
+                    ops.opsForHash().entries(previewKey(userId, item.getConversationType(), item.getTargetId()));
+                }
+                return null;
+            }
+        });
+
+        Map<String, Integer> unreadCounts = unreadCounterService.getUnreadCounts(userId);
+        Set<String> muted = stringRedisTemplate.opsForSet().members(MUTED_KEY_PREFIX + userId);
+
+        for (int i = 0; i < items.size(); i++) {
+            ConversationPreviewDTO item = items.get(i);
+            String field = UnreadCounterService.field(item.getConversationType(), item.getTargetId());
+            Object preview = i < previews.size() ? previews.get(i) : null;
+            if (preview instanceof Map && !((Map<?, ?>) preview).isEmpty()) {
+                applyPreview(item, (Map<?, ?>) preview);
+            } else {
+                // 摘要已过期，回查该会话最后一条消息（只在冷数据上发生）
+                loadPreview(userId, item);
+            }
+            Integer unread = unreadCounts.get(field);
+            item.setUnreadCount(unread == null ? 0 : unread);
+            item.setIsMuted(muted != null && muted.contains(field)
+                    ? ConversationConstant.IS_MUTED_YES : ConversationConstant.IS_MUTED_NO);
+        }
+
+        resolveNames(userId, items);
+
+        stringRedisTemplate.expire(inboxKey, ttlHours, TimeUnit.HOURS);
+        stringRedisTemplate.expire(MUTED_KEY_PREFIX + userId, ttlHours, TimeUnit.HOURS);
+        return items;
+    }
+
+    @Override
+    public void onMessageSent(Message message, Collection<Long> userIds) {
+        if (message == null || message.getId() == null || userIds == null || userIds.isEmpty()) {
+            return;
+        }
+
+        List<Long> users = new ArrayList<>(userIds);
+        TransactionUtil.afterCommit(() -> applyMessageSent(message, users));
+    }
+
+    @Override
+    public void onMessageRecalled(Message message) {
+        if (message == null || message.getId() == null || message.getConversationKey() == null) {
+            return;
+        }
+
+        TransactionUtil.afterCommit(() -> stringRedisTemplate.execute(RECALL_SCRIPT,
+                Collections.singletonList(PREVIEW_KEY_PREFIX + message.getConversationKey()),
+                String.valueOf(message.getId()), RECALLED_SNIPPET));
+    }
+
+    @Override
+    public void updateTop(Long userId, Integer conversationType, Long targetId, boolean isTop) {
+        if (userId == null || conversationType == null || targetId == null) {
+            return;
+        }
+
+        TransactionUtil.afterCommit(() -> stringRedisTemplate.execute(SET_TOP_SCRIPT,
+                Collections.singletonList(INBOX_KEY_PREFIX + userId),
+                UnreadCounterService.field(conversationType, targetId), String.valueOf(TOP_BONUS), isTop ? "1" : "0"));
+    }
+
+    @Override
+    public void updateMuted(Long userId, Integer conversationType, Long targetId, boolean isMuted) {
+        if (userId == null || conversationType == null || targetId == null) {
+            return;
+        }
+
+        String key = MUTED_KEY_PREFIX + userId;
+        String field = UnreadCounterService.field(conversationType, targetId);
+        TransactionUtil.afterCommit(() -> {
+            if (isMuted) {
+                stringRedisTemplate.opsForSet().add(key, field);
+                stringRedisTemplate.expire(key, ttlHours, TimeUnit.HOURS);
+            } else {
+                stringRedisTemplate.opsForSet().remove(key, field);
+            }
+        });
+    }
+
+    @Override
+    public void remove(Long userId, Integer conversationType, Long targetId) {
+        if (userId == null || conversationType == null || targetId == null) {
+            return;
+        }
+
+        String field = UnreadCounterService.field(conversationType, targetId);
+        TransactionUtil.afterCommit(() -> {
+            stringRedisTemplate.opsForZSet().remove(INBOX_KEY_PREFIX + userId, field);
+            stringRedisTemplate.opsForSet().remove(MUTED_KEY_PREFIX + userId, field);
+        });
+    }
+
+    /**
+     * 写入会话摘要并推进相关用户的会话排序
+     *
+     * @param message 消息
+     * @param users 会话中的用户ID
+     */
+    private void applyMessageSent(Message message, List<Long> users) {
+        User sender = userService.getUserById(message.getSenderId());
+        long time = toMillis(message.getSendTime());
+
+        Map<String, String> preview = new HashMap<>(16);
+        preview.put(FIELD_MESSAGE_ID, String.valueOf(message.getId()));
+        preview.put(FIELD_SENDER_ID, String.valueOf(message.getSenderId()));
+        preview.put(FIELD_SENDER_NICKNAME, sender != null && sender.getNickname() != null ? sender.getNickname() : "");
+        preview.put(FIELD_CONTENT_TYPE, String.valueOf(message.getContentType()));
+        preview.put(FIELD_SNIPPET, snippet(message.getContentType(), message.getContent()));
+        preview.put(FIELD_RECALLED, String.valueOf(MessageConstant.IS_RECALLED_NO));
+        preview.put(FIELD_TIME, String.valueOf(time));
+
+        String previewKey = PREVIEW_KEY_PREFIX + message.getConversationKey();
+        stringRedisTemplate.opsForHash().putAll(previewKey, preview);
+        stringRedisTemplate.expire(previewKey, ttlHours, TimeUnit.HOURS);
+
+        // 各用户的会话排序通过管道批量推进
+        byte[] timeBytes = String.valueOf(time).getBytes(StandardCharsets.UTF_8);
+        byte[] bonusBytes = String.valueOf(TOP_BONUS).getBytes(StandardCharsets.UTF_8);
+        boolean isPrivate = message.getConversationType() == MessageConstant.CONVERSATION_TYPE_PRIVATE;
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Long userId : users) {
+                Long targetId = isPrivate
+                        ? (userId.equals(message.getSenderId()) ? message.getReceiverId() : message.getSenderId())
+                        : message.getReceiverId();
+                byte[] key = (INBOX_KEY_PREFIX + userId).getBytes(StandardCharsets.UTF_8);
+                byte[] member = UnreadCounterService.field(message.getConversationType(), targetId)
+                        .getBytes(StandardCharsets.UTF_8);
+                connection.scriptingCommands().eval(ADVANCE_SCRIPT_BYTES, ReturnType.INTEGER, 1,
+                        key, member, timeBytes, bonusBytes);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 按会话摘要的时间推进用户所在读扩散群组的排序
+     *
+     * @param userId 用户ID
+     * @param readStates 用户所在读扩散群组的阅读进度
+     */
+    private void advanceReadFanoutGroups(Long userId, List<GroupReadStateDTO> readStates) {
+        if (readStates.isEmpty()) {
+            return;
+        }
+
+        List<Object> previewTimes = stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                for (GroupReadStateDTO state : readStates) {
+                    ops.opsForHash().get(PREVIEW_KEY_PREFIX + ConversationKeyUtil.groupKey(state.getGroupId()),
+                            FIELD_TIME);
+                }
+                return null;
+            }
+        });
+
+        byte[] key = (INBOX_KEY_PREFIX + userId).getBytes(StandardCharsets.UTF_8);
+        byte[] bonusBytes = String.valueOf(TOP_BONUS).getBytes(StandardCharsets.UTF_8);
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (int i = 0; i < readStates.size() && i < previewTimes.size(); i++) {
+                Object time = previewTimes.get(i);
+                if (time == null) {
+                    continue;
+                }
+                byte[] member = UnreadCounterService.field(MessageConstant.CONVERSATION_TYPE_GROUP,
+                        readStates.get(i).getGroupId()).getBytes(StandardCharsets.UTF_8);
+                connection.scriptingCommands().eval(ADVANCE_SCRIPT_BYTES, ReturnType.INTEGER, 1,
+                        key, member, time.toString().getBytes(StandardCharsets.UTF_8), bonusBytes);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 从会话表重建用户的会话有序集合与免打扰集合
+     *
+     * @param userId 用户ID
+     * @param readStates 用户所在读扩散群组的阅读进度，没有会话行的群组也加入有序集合
+     * @return 用户是否有会话
+     */
+    private boolean rebuild(Long userId, List<GroupReadStateDTO> readStates) {
+        List<Conversation> conversations = new ArrayList<>(conversationMapper.selectByUserId(userId));
+        Set<Long> groupIds = new HashSet<>();
+        for (Conversation conversation : conversations) {
+            if (conversation.getConversationType() == MessageConstant.CONVERSATION_TYPE_GROUP) {
+                groupIds.add(conversation.getTargetId());
+            }
+        }
+        for (GroupReadStateDTO state : readStates) {
+            if (!groupIds.contains(state.getGroupId())) {
+                Conversation conversation = new Conversation();
+                conversation.setConversationType(MessageConstant.CONVERSATION_TYPE_GROUP);
+                conversation.setTargetId(state.getGroupId());
+                conversation.setIsMuted(state.getIsMuted());
+                conversations.add(conversation);
+            }
+        }
+        if (conversations.isEmpty()) {
+            return false;
+        }
+
+        // 群成员的会话行可能落后于摘要，取两者中较新的时间
+        List<Object> previewTimes = stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                for (Conversation conversation : conversations) {
+                    ops.opsForHash().get(previewKey(userId, conversation.getConversationType(),
+                            conversation.getTargetId()), FIELD_TIME);
+                }
+                return null;
+            }
+        });
+
+        Set<ZSetOperations.TypedTuple<String>> tuples = new HashSet<>(conversations.size() * 2);
+        List<String> mutedFields = new ArrayList<>();
+        for (int i = 0; i < conversations.size(); i++) {
+            Conversation conversation = conversations.get(i);
+            String field = UnreadCounterService.field(conversation.getConversationType(), conversation.getTargetId());
+            long score = conversation.getLastMessageTime() != null ? toMillis(conversation.getLastMessageTime()) : 0L;
+            Object previewTime = i < previewTimes.size() ? previewTimes.get(i) : null;
+            if (previewTime != null) {
+                score = Math.max(score, Long.parseLong(previewTime.toString()));
+            }
+            if (conversation.getIsTop() != null && conversation.getIsTop() == ConversationConstant.IS_TOP_YES) {
+                score += TOP_BONUS;
+            }
+            tuples.add(ZSetOperations.TypedTuple.of(field, (double) score));
+            if (conversation.getIsMuted() != null && conversation.getIsMuted() == ConversationConstant.IS_MUTED_YES) {
+                mutedFields.add(field);
+            }
+        }
+
+        String inboxKey = INBOX_KEY_PREFIX + userId;
+        String mutedKey = MUTED_KEY_PREFIX + userId;
+        stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                ops.delete(Arrays.asList(inboxKey, mutedKey));
+                ops.opsForZSet().add(inboxKey, tuples);
+                ops.expire(inboxKey, ttlHours, TimeUnit.HOURS);
+                if (!mutedFields.isEmpty()) {
+                    ops.opsForSet().add(mutedKey, mutedFields.toArray(new String[0]));
+                    ops.expire(mutedKey, ttlHours, TimeUnit.HOURS);
+                }
+                return null;
+            }
+        });
+        return true;
+    }
+
+    /**
+     * 摘要缺失时从消息表加载会话最后一条消息并写回摘要
+     *
+     * @param userId 用户ID
+     * @param item 会话列表项
+     */
+    private void loadPreview(Long userId, ConversationPreviewDTO item) {
+        long conversationKey = ConversationKeyUtil.of(item.getConversationType(), userId, item.getTargetId());
+        List<Message> latest = messageMapper.selectByConversationKey(conversationKey, 1);
+        if (latest.isEmpty()) {
+            return;
+        }
+
+        Message message = latest.get(0);
+        User sender = userService.getUserById(message.getSenderId());
+        boolean recalled = message.getIsRecalled() != null && message.getIsRecalled() == MessageConstant.IS_RECALLED_YES;
+
+        Map<String, String> preview = new HashMap<>(16);
+        preview.put(FIELD_MESSAGE_ID, String.valueOf(message.getId()));
+        preview.put(FIELD_SENDER_ID, String.valueOf(message.getSenderId()));
+        preview.put(FIELD_SENDER_NICKNAME, sender != null && sender.getNickname() != null ? sender.getNickname() : "");
+        preview.put(FIELD_CONTENT_TYPE, String.valueOf(message.getContentType()));
+        preview.put(FIELD_SNIPPET, recalled ? RECALLED_SNIPPET : snippet(message.getContentType(), message.getContent()));
+        preview.put(FIELD_RECALLED, String.valueOf(recalled ? MessageConstant.IS_RECALLED_YES : MessageConstant.IS_RECALLED_NO));
+        preview.put(FIELD_TIME, String.valueOf(toMillis(message.getSendTime())));
+
+        String previewKey = PREVIEW_KEY_PREFIX + conversationKey;
+        stringRedisTemplate.opsForHash().putAll(previewKey, preview);
+        stringRedisTemplate.expire(previewKey, ttlHours, TimeUnit.HOURS);
+        applyPreview(item, preview);
+    }
+
+    /**
+     * 将摘要哈希填充到会话列表项
+     *
+     * @param item 会话列表项
+     * @param preview 摘要哈希
+     */
+    private void applyPreview(ConversationPreviewDTO item, Map<?, ?> preview) {
+        item.setLastMessageId(parseLong(preview.get(FIELD_MESSAGE_ID)));
+        item.setSenderId(parseLong(preview.get(FIELD_SENDER_ID)));
+        Object nickname = preview.get(FIELD_SENDER_NICKNAME);
+        item.setSenderNickname(nickname != null ? nickname.toString() : null);
+        Long contentType = parseLong(preview.get(FIELD_CONTENT_TYPE));
+        item.setContentType(contentType != null ? contentType.intValue() : null);
+        Object snippet = preview.get(FIELD_SNIPPET);
+        item.setSnippet(snippet != null ? snippet.toString() : null);
+        Long recalled = parseLong(preview.get(FIELD_RECALLED));
+        item.setIsRecalled(recalled != null ? recalled.intValue() : MessageConstant.IS_RECALLED_NO);
+        item.setLastMessageTime(parseLong(preview.get(FIELD_TIME)));
+    }
+
+    /**
+     * 批量解析会话目标的名称与头像：私聊对方一次批量查询，群组一次查询用户所在的全部群
+     *
+     * @param userId 用户ID
+     * @param items 会话列表
+     */
+    private void resolveNames(Long userId, List<ConversationPreviewDTO> items) {
+        List<Long> peerIds = new ArrayList<>();
+        boolean hasGroup = false;
+        for (ConversationPreviewDTO item : items) {
+            if (item.getConversationType() == MessageConstant.CONVERSATION_TYPE_PRIVATE) {
+                peerIds.add(item.getTargetId());
+            } else {
+                hasGroup = true;
+            }
+        }
+
+        Map<Long, User> users = new HashMap<>(peerIds.size() * 2);
+        if (!peerIds.isEmpty()) {
+            for (User user : userService.getUserByIds(peerIds)) {
+                users.put(user.getId(), user);
+            }
+        }
+
+        Map<Long, ChatGroup> groups = new HashMap<>();
+        if (hasGroup) {
+            for (ChatGroup group : chatGroupService.getUserGroups(userId)) {
+                groups.put(group.getId(), group);
+            }
+        }
+
+        for (ConversationPreviewDTO item : items) {
+            if (item.getConversationType() == MessageConstant.CONVERSATION_TYPE_PRIVATE) {
+                User user = users.get(item.getTargetId());
+                if (user != null) {
+                    item.setTargetName(user.getNickname());
+                    item.setTargetAvatar(user.getAvatar());
+                }
+            } else {
+                ChatGroup group = groups.get(item.getTargetId());
+                if (group != null) {
+                    item.setTargetName(group.getName());
+                    item.setTargetAvatar(group.getAvatar());
+                }
+            }
+        }
+    }
+
+    /**
+     * 生成会话列表中显示的消息摘要
+     *
+     * @param contentType 内容类型
+     * @param content 消息内容
+     * @return 摘要
+     */
+    private static String snippet(Integer contentType, String content) {
+        if (contentType != null) {
+            switch (contentType) {
+                case MessageConstant.CONTENT_TYPE_IMAGE:
+                    return "[图片]";
+                case MessageConstant.CONTENT_TYPE_VOICE:
+                    return "[语音]";
+                case MessageConstant.CONTENT_TYPE_VIDEO:
+                    return "[视频]";
+                case MessageConstant.CONTENT_TYPE_FILE:
+                    return "[文件]";
+                case MessageConstant.CONTENT_TYPE_LOCATION:
+                    return "[位置]";
+                default:
+                    break;
+            }
+        }
+
+        if (content == null) {
+            return "";
+        }
+        if (content.codePointCount(0, content.length()) <= SNIPPET_MAX_LENGTH) {
+            return content;
+        }
+        return content.substring(0, content.offsetByCodePoints(0, SNIPPET_MAX_LENGTH)) + "...";
+    }
+
+    private static String previewKey(Long userId, Integer conversationType, Long targetId) {
+        return PREVIEW_KEY_PREFIX + ConversationKeyUtil.of(conversationType, userId, targetId);
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        LocalDateTime value = time != null ? time : LocalDateTime.now();
+        return value.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static Long parseLong(Object value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.valueOf(value.toString());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
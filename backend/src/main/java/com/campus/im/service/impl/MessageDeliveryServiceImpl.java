@@ -0,0 +1,85 @@
+package com.campus.im.service.impl;
+
+import com.campus.im.service.ClusterRelayService;
+import com.campus.im.service.MessageDeliveryService;
+import com.campus.im.websocket.EncodedPayload;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * 消息投递服务实现类
+ * 配合 {@link com.campus.im.websocket.EncodedPayloadMessageConverter}，投递时不会重复序列化；
+ * 本节点只投递给本地在线的会话，其他节点上的会话与订阅交给 {@link ClusterRelayService} 转发
+ */
+@Service
+public class MessageDeliveryServiceImpl implements MessageDeliveryService {
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private SimpUserRegistry simpUserRegistry;
+
+    @Autowired
+    private ClusterRelayService clusterRelayService;
+
+    @Override
+    public EncodedPayload encode(Object payload) {
+        if (payload instanceof EncodedPayload encoded) {
+            return encoded;
+        }
+        try {
+            return new EncodedPayload(objectMapper.writeValueAsBytes(payload));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("消息序列化失败", e);
+        }
+    }
+
+    @Override
+    public void sendToUser(String user, String destination, EncodedPayload payload) {
+        if (user == null || destination == null || payload == null) {
+            return;
+        }
+        if (simpUserRegistry.getUser(user) != null) {
+            messagingTemplate.convertAndSendToUser(user, destination, payload);
+        }
+        clusterRelayService.relayToUsers(Collections.singletonList(user), destination, payload);
+    }
+
+    @Override
+    public int sendToUsers(Collection<String> users, String destination, EncodedPayload payload) {
+        if (users == null || users.isEmpty() || destination == null || payload == null) {
+            return 0;
+        }
+
+        int delivered = 0;
+        for (String user : users) {
+            // 只投递给本节点在线的用户
+            if (user != null && simpUserRegistry.getUser(user) != null) {
+                messagingTemplate.convertAndSendToUser(user, destination, payload);
+                delivered++;
+            }
+        }
+        // 用户可能同时在多个节点上有会话，整批交给转发服务按节点分组
+        return delivered + clusterRelayService.relayToUsers(users, destination, payload);
+    }
+
+    @Override
+    public void broadcast(String destination, EncodedPayload payload) {
+        if (destination == null || payload == null) {
+            return;
+        }
+        messagingTemplate.convertAndSend(destination, payload);
+        clusterRelayService.relayBroadcast(destination, payload);
+    }
+}
@@ -3,6 +3,7 @@ package com.campus.im.service.impl;
 import com.campus.im.common.constant.MessageReceiptConstant;
 import com.campus.im.entity.MessageReceipt;
 import com.campus.im.mapper.MessageReceiptMapper;
+import com.campus.im.service.IdGeneratorService;
 import com.campus.im.service.MessageReceiptService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -22,6 +23,9 @@ public class MessageReceiptServiceImpl implements MessageReceiptService {
     @Autowired
     private MessageReceiptMapper messageReceiptMapper;
     
+    @Autowired
+    private IdGeneratorService idGeneratorService;
+    
     @Override
     @Transactional
     public boolean addMessageReceipt(Long messageId, Long userId) {
@@ -33,6 +37,9 @@ public class MessageReceiptServiceImpl implements MessageReceiptService {
         receipt.setMessageId(messageId);
         receipt.setUserId(userId);
         receipt.setIsRead(MessageReceiptConstant.IS_READ_NO);
+        if (idGeneratorService.isSnowflakeEnabled()) {
+            receipt.setId(idGeneratorService.nextId());
+        }
         
         return messageReceiptMapper.insert(receipt) > 0;
     }
@@ -50,6 +57,9 @@ public class MessageReceiptServiceImpl implements MessageReceiptService {
             receipt.setMessageId(messageId);
             receipt.setUserId(userId);
             receipt.setIsRead(MessageReceiptConstant.IS_READ_NO);
+            if (idGeneratorService.isSnowflakeEnabled()) {
+                receipt.setId(idGeneratorService.nextId());
+            }
             receipts.add(receipt);
         }
         
@@ -0,0 +1,103 @@
+package com.campus.im.service.impl;
+
+import com.campus.im.mapper.MessageMapper;
+import com.campus.im.service.MessageSequenceService;
+import com.campus.im.service.MessageWriteBehindService;
+import com.campus.im.util.ConversationKeyUtil;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+
+/**
+ * 会话序列号服务实现类
+ * 序列号计数器保存在Redis中，由INCR保证多实例下的原子递增；
+ * 计数器不存在（首次使用或Redis数据丢失）时以数据库中该会话的最大序列号为起点
+ */
+@Service
+public class MessageSequenceServiceImpl implements MessageSequenceService {
+
+    // Redis key前缀
+    private static final String PRIVATE_SEQ_KEY_PREFIX = "msg:seq:private:";
+    private static final String GROUP_SEQ_KEY_PREFIX = "msg:seq:group:";
+
+    // 计数器存在时递增，不存在时返回-1，由调用方从数据库加载起点
+    private static final RedisScript<Long> INCR_IF_EXISTS_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 1 then return redis.call('INCR', KEYS[1]) end return -1",
+            Long.class);
+
+    // 以数据库最大值初始化计数器（并发初始化时只有第一个生效）后递增
+    private static final RedisScript<Long> SEED_AND_INCR_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('SET', KEYS[1], ARGV[1], 'NX') return redis.call('INCR', KEYS[1])",
+            Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private MessageMapper messageMapper;
+
+    @Autowired
+    private MessageWriteBehindService messageWriteBehindService;
+
+    @Override
+    public long nextPrivateSeq(Long userId, Long friendId) {
+        return next(privateKey(userId, friendId), ConversationKeyUtil.privateKey(userId, friendId));
+    }
+
+    @Override
+    public long nextGroupSeq(Long groupId) {
+        return next(GROUP_SEQ_KEY_PREFIX + groupId, ConversationKeyUtil.groupKey(groupId));
+    }
+
+    @Override
+    public long getCurrentPrivateSeq(Long userId, Long friendId) {
+        return current(privateKey(userId, friendId), ConversationKeyUtil.privateKey(userId, friendId));
+    }
+
+    @Override
+    public long getCurrentGroupSeq(Long groupId) {
+        return current(GROUP_SEQ_KEY_PREFIX + groupId, ConversationKeyUtil.groupKey(groupId));
+    }
+
+    /**
+     * 私聊计数器key，两个方向共用一个计数器
+     */
+    private String privateKey(Long userId, Long friendId) {
+        long min = Math.min(userId, friendId);
+        long max = Math.max(userId, friendId);
+        return PRIVATE_SEQ_KEY_PREFIX + min + ":" + max;
+    }
+
+    private long next(String key, long conversationKey) {
+        Long seq = stringRedisTemplate.execute(INCR_IF_EXISTS_SCRIPT, Collections.singletonList(key));
+        if (seq != null && seq > 0) {
+            return seq;
+        }
+
+        long start = loadMaxSeq(conversationKey);
+        seq = stringRedisTemplate.execute(SEED_AND_INCR_SCRIPT, Collections.singletonList(key), String.valueOf(start));
+        return seq == null ? start + 1 : seq;
+    }
+
+    private long current(String key, long conversationKey) {
+        String value = stringRedisTemplate.opsForValue().get(key);
+        if (value != null) {
+            return Long.parseLong(value);
+        }
+
+        return loadMaxSeq(conversationKey);
+    }
+
+    private long loadMaxSeq(long conversationKey) {
+        // 异步落库模式下先写完排队中的消息，避免读到过期的最大值
+        messageWriteBehindService.flush();
+        Long maxSeq = messageMapper.selectMaxSeqByConversationKey(conversationKey);
+        // 写入失败等待重试的消息已占用序列号
+        long pendingSeq = messageWriteBehindService.getMaxPendingSeq(conversationKey);
+        return Math.max(maxSeq == null ? 0L : maxSeq, pendingSeq);
+    }
+}
@@ -1,19 +1,33 @@
 package com.campus.im.service.impl;
 
+import com.campus.im.cache.RecentMessageCache;
 import com.campus.im.common.constant.GroupConstant;
 import com.campus.im.common.constant.MessageConstant;
-import com.campus.im.entity.GroupMember;
 import com.campus.im.entity.Message;
-import com.campus.im.mapper.GroupMemberMapper;
+import com.campus.im.entity.User;
 import com.campus.im.mapper.MessageMapper;
 import com.campus.im.service.ChatGroupService;
+import com.campus.im.service.ConversationService;
+import com.campus.im.service.GroupConversationUpdateService;
+import com.campus.im.service.GroupFanoutService;
+import com.campus.im.service.IdGeneratorService;
+import com.campus.im.service.InboxService;
+import com.campus.im.service.MessageSequenceService;
 import com.campus.im.service.MessageService;
+import com.campus.im.service.MessageWriteBehindService;
+import com.campus.im.service.UnreadCounterService;
+import com.campus.im.service.UserService;
+import com.campus.im.util.ConversationKeyUtil;
+import com.campus.im.util.TransactionUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
 /**
@@ -26,10 +40,41 @@ public class MessageServiceImpl implements MessageService {
     private MessageMapper messageMapper;
     
     @Autowired
-    private GroupMemberMapper groupMemberMapper;
+    private ChatGroupService chatGroupService;
     
     @Autowired
-    private ChatGroupService chatGroupService;
+    private IdGeneratorService idGeneratorService;
+    
+    @Autowired
+    private MessageWriteBehindService messageWriteBehindService;
+    
+    @Autowired
+    private MessageSequenceService messageSequenceService;
+    
+    @Autowired
+    private UserService userService;
+    
+    @Autowired
+    private RecentMessageCache recentMessageCache;
+    
+    @Autowired
+    private ConversationService conversationService;
+    
+    @Autowired
+    private GroupFanoutService groupFanoutService;
+    
+    @Autowired
+    private UnreadCounterService unreadCounterService;
+    
+    @Autowired
+    private GroupConversationUpdateService groupConversationUpdateService;
+    
+    @Autowired
+    private InboxService inboxService;
+    
+    private static final Comparator<Message> ID_DESC = Comparator.comparing(Message::getId).reversed();
+    
+    private static final Comparator<Message> SEQ_DESC = Comparator.comparing(Message::getSeq).reversed();
     
     @Override
     @Transactional
@@ -42,6 +87,8 @@ public class MessageServiceImpl implements MessageService {
         message.setConversationType(MessageConstant.CONVERSATION_TYPE_PRIVATE);
         message.setSenderId(senderId);
         message.setReceiverId(receiverId);
+        message.setConversationKey(ConversationKeyUtil.privateKey(senderId, receiverId));
+        message.setSeq(messageSequenceService.nextPrivateSeq(senderId, receiverId));
         message.setContentType(contentType);
         message.setContent(content);
         message.setExtra(extra);
@@ -49,7 +96,12 @@ public class MessageServiceImpl implements MessageService {
         message.setStatus(MessageConstant.STATUS_NORMAL);
         message.setSendTime(LocalDateTime.now());
         
-        if (messageMapper.insert(message) > 0) {
+        if (saveMessage(message)) {
+            // 提交后再追加：提交前追加会让并发回填缓存未提交的消息，或在回滚后留下不存在的消息
+            TransactionUtil.afterCommit(() -> recentMessageCache.append(message));
+            conversationService.updateConversationForNewMessage(senderId, message);
+            conversationService.updateConversationForNewMessage(receiverId, message);
+            inboxService.onMessageSent(message, Arrays.asList(senderId, receiverId));
             return message;
         }
         
@@ -63,10 +115,17 @@ public class MessageServiceImpl implements MessageService {
             return null;
         }
         
+        // 已退出群组或正在禁言的成员不能发言（均读取内存中的成员与禁言登记）
+        if (!chatGroupService.isUserInGroup(groupId, senderId) || chatGroupService.isMemberMuted(groupId, senderId)) {
+            return null;
+        }
+        
         Message message = new Message();
         message.setConversationType(MessageConstant.CONVERSATION_TYPE_GROUP);
         message.setSenderId(senderId);
         message.setReceiverId(groupId);
+        message.setConversationKey(ConversationKeyUtil.groupKey(groupId));
+        message.setSeq(messageSequenceService.nextGroupSeq(groupId));
         message.setContentType(contentType);
         message.setContent(content);
         message.setExtra(extra);
@@ -74,7 +133,15 @@ public class MessageServiceImpl implements MessageService {
         message.setStatus(MessageConstant.STATUS_NORMAL);
         message.setSendTime(LocalDateTime.now());
         
-        if (messageMapper.insert(message) > 0) {
+        if (saveMessage(message)) {
+            // 提交后再追加：提交前追加会让并发回填缓存未提交的消息，或在回滚后留下不存在的消息
+            TransactionUtil.afterCommit(() -> recentMessageCache.append(message));
+            // 全部成员的会话与未读数在投递线程之外批量更新；读扩散群组（含超级群）只推进群序列号
+            boolean readFanout = chatGroupService.getFanoutMode(groupId) != GroupConstant.FANOUT_MODE_WRITE;
+            groupConversationUpdateService.submit(message, readFanout);
+            // 读扩散群组其他成员的会话排序在读取收件箱时推进
+            inboxService.onMessageSent(message, readFanout
+                    ? Collections.singletonList(senderId) : groupFanoutService.getMemberIds(groupId));
             return message;
         }
         
@@ -92,6 +159,7 @@ public class MessageServiceImpl implements MessageService {
         if (message == null) {
             return false;
         }
+        flushIfPending(messageId);
         
         // 私聊消息只能由发送者撤回
         if (message.getConversationType() == MessageConstant.CONVERSATION_TYPE_PRIVATE 
@@ -116,21 +184,20 @@ public class MessageServiceImpl implements MessageService {
                     return false; // 超过2分钟不允许撤回
                 }
             } else {
-                // 非消息发送者（管理员或群主）撤回他人消息
-                GroupMember operator = groupMemberMapper.selectByGroupIdAndUserId(groupId, operatorId);
-                if (operator == null) {
-                    return false; // 操作者不在群中
-                }
-                
-                // 只有群主或管理员可以撤回他人消息
-                if (operator.getRole() != GroupConstant.ROLE_OWNER && 
-                    operator.getRole() != GroupConstant.ROLE_ADMIN) {
+                // 非消息发送者撤回他人消息，只有群主或管理员可以
+                if (!chatGroupService.hasPermission(groupId, operatorId, GroupConstant.ROLE_ADMIN)) {
                     return false;
                 }
             }
         }
         
-        return messageMapper.updateRecallStatus(messageId, MessageConstant.IS_RECALLED_YES) > 0;
+        if (messageMapper.updateRecallStatus(messageId, MessageConstant.IS_RECALLED_YES) > 0) {
+            TransactionUtil.afterCommit(() -> recentMessageCache.invalidate(message.getConversationKey()));
+            inboxService.onMessageRecalled(message);
+            return true;
+        }
+        
+        return false;
     }
     
     @Override
@@ -140,7 +207,18 @@ public class MessageServiceImpl implements MessageService {
             return false;
         }
         
-        return messageMapper.updateStatus(messageId, MessageConstant.STATUS_DELETED) > 0;
+        Message message = getMessage(messageId);
+        if (message == null) {
+            return false;
+        }
+        flushIfPending(messageId);
+        
+        if (messageMapper.updateStatus(messageId, MessageConstant.STATUS_DELETED) > 0) {
+            TransactionUtil.afterCommit(() -> recentMessageCache.invalidate(message.getConversationKey()));
+            return true;
+        }
+        
+        return false;
     }
     
     @Override
@@ -149,6 +227,12 @@ public class MessageServiceImpl implements MessageService {
             return null;
         }
         
+        // 异步落库模式下，刚发送的消息可能还在写入队列中
+        Message pending = messageWriteBehindService.getPending(messageId);
+        if (pending != null) {
+            return pending;
+        }
+        
         return messageMapper.selectById(messageId);
     }
     
@@ -162,7 +246,7 @@ public class MessageServiceImpl implements MessageService {
             limit = 20; // 默认获取20条
         }
         
-        return messageMapper.selectPrivateMessages(userId, friendId, limit);
+        return selectLatest(ConversationKeyUtil.privateKey(userId, friendId), limit, ID_DESC);
     }
     
     @Override
@@ -175,7 +259,8 @@ public class MessageServiceImpl implements MessageService {
             limit = 20; // 默认获取20条
         }
         
-        return messageMapper.selectPrivateMessagesBeforeId(userId, friendId, beforeMessageId, limit);
+        return messageMapper.selectByConversationKeyBeforeId(
+                ConversationKeyUtil.privateKey(userId, friendId), beforeMessageId, limit);
     }
     
     @Override
@@ -188,7 +273,7 @@ public class MessageServiceImpl implements MessageService {
             limit = 20; // 默认获取20条
         }
         
-        return messageMapper.selectGroupMessages(groupId, limit);
+        return selectLatest(ConversationKeyUtil.groupKey(groupId), limit, ID_DESC);
     }
     
     @Override
@@ -201,7 +286,8 @@ public class MessageServiceImpl implements MessageService {
             limit = 20; // 默认获取20条
         }
         
-        return messageMapper.selectGroupMessagesBeforeId(groupId, beforeMessageId, limit);
+        return messageMapper.selectByConversationKeyBeforeId(
+                ConversationKeyUtil.groupKey(groupId), beforeMessageId, limit);
     }
     
     @Override
@@ -210,6 +296,18 @@ public class MessageServiceImpl implements MessageService {
             return false;
         }
         
+        // 开启异步落库或雪花ID时由应用预先分配ID
+        if (message.getId() == null
+                && (messageWriteBehindService.isEnabled() || idGeneratorService.isSnowflakeEnabled())) {
+            message.setId(idGeneratorService.nextId());
+        }
+        
+        // 开启异步落库时在事务提交后放入写入队列，事务回滚的消息不会落库；否则直接插入
+        if (messageWriteBehindService.isEnabled()) {
+            TransactionUtil.afterCommit(() -> messageWriteBehindService.submit(message));
+            return true;
+        }
+        
         return messageMapper.insert(message) > 0;
     }
     
@@ -223,7 +321,18 @@ public class MessageServiceImpl implements MessageService {
             limit = 20; // 默认获取20条
         }
         
-        return messageMapper.selectPrivateMessagesByPhone(userPhone, otherPhone, limit, offset);
+        User user = userService.getUserByPhone(userPhone);
+        User other = userService.getUserByPhone(otherPhone);
+        if (user == null || other == null) {
+            return Collections.emptyList();
+        }
+        
+        long conversationKey = ConversationKeyUtil.privateKey(user.getId(), other.getId());
+        if (offset <= 0) {
+            return selectLatest(conversationKey, limit, ID_DESC);
+        }
+        
+        return messageMapper.selectByConversationKeyWithOffset(conversationKey, limit, offset);
     }
     
     @Override
@@ -236,7 +345,48 @@ public class MessageServiceImpl implements MessageService {
             limit = 20; // 默认获取20条
         }
         
-        return messageMapper.selectGroupMessagesByOffset(groupId, limit, offset);
+        long conversationKey = ConversationKeyUtil.groupKey(groupId);
+        if (offset <= 0) {
+            return selectLatest(conversationKey, limit, ID_DESC);
+        }
+        
+        return messageMapper.selectByConversationKeyWithOffset(conversationKey, limit, offset);
+    }
+    
+    @Override
+    public List<Message> getPrivateMessagesBeforeSeq(Long userId, Long friendId, Long beforeSeq, Integer limit) {
+        if (userId == null || friendId == null) {
+            return Collections.emptyList();
+        }
+        
+        if (limit == null || limit <= 0) {
+            limit = 20; // 默认获取20条
+        }
+        
+        long conversationKey = ConversationKeyUtil.privateKey(userId, friendId);
+        if (beforeSeq == null) {
+            return selectLatest(conversationKey, limit, SEQ_DESC);
+        }
+        
+        return messageMapper.selectByConversationKeyBeforeSeq(conversationKey, beforeSeq, limit);
+    }
+    
+    @Override
+    public List<Message> getGroupMessagesBeforeSeq(Long groupId, Long beforeSeq, Integer limit) {
+        if (groupId == null) {
+            return Collections.emptyList();
+        }
+        
+        if (limit == null || limit <= 0) {
+            limit = 20; // 默认获取20条
+        }
+        
+        long conversationKey = ConversationKeyUtil.groupKey(groupId);
+        if (beforeSeq == null) {
+            return selectLatest(conversationKey, limit, SEQ_DESC);
+        }
+        
+        return messageMapper.selectByConversationKeyBeforeSeq(conversationKey, beforeSeq, limit);
     }
     
     @Override
@@ -292,7 +442,13 @@ public class MessageServiceImpl implements MessageService {
             // 与上面的recallMessage(Long messageId, Long operatorId)方法类似
         }
         
-        return messageMapper.updateRecallStatus(messageId, MessageConstant.IS_RECALLED_YES) > 0;
+        if (messageMapper.updateRecallStatus(messageId, MessageConstant.IS_RECALLED_YES) > 0) {
+            TransactionUtil.afterCommit(() -> recentMessageCache.invalidate(message.getConversationKey()));
+            inboxService.onMessageRecalled(message);
+            return true;
+        }
+        
+        return false;
     }
     
     @Override
@@ -301,11 +457,13 @@ public class MessageServiceImpl implements MessageService {
             return 0;
         }
         
-        // 假设已有方法将手机号转换为用户ID
-        // Long userId = userService.getUserIdByPhone(userPhone);
+        User user = userService.getUserByPhone(userPhone);
+        if (user == null) {
+            return 0;
+        }
         
-        // 返回未读消息数量
-        return messageMapper.countUnreadMessages(userPhone);
+        // 直接读取Redis中的总未读数
+        return unreadCounterService.getTotalUnread(user.getId());
     }
     
     @Override
@@ -324,8 +482,14 @@ public class MessageServiceImpl implements MessageService {
         
         // 检查权限（只有消息发送者或接收者可以删除）
         // 这里简化处理，实际应该通过手机号获取用户ID后再进行比较
+        flushIfPending(messageId);
         
-        return messageMapper.updateStatus(messageId, MessageConstant.STATUS_DELETED) > 0;
+        if (messageMapper.updateStatus(messageId, MessageConstant.STATUS_DELETED) > 0) {
+            TransactionUtil.afterCommit(() -> recentMessageCache.invalidate(message.getConversationKey()));
+            return true;
+        }
+        
+        return false;
     }
     
     @Override
@@ -347,6 +511,48 @@ public class MessageServiceImpl implements MessageService {
         
         // 确认接收离线消息
         // 这里假设messageMapper中有相应的方法
-        return messageMapper.confirmOfflineMessages(userPhone, messageIds) > 0;
+        if (messageMapper.confirmOfflineMessages(userPhone, messageIds) <= 0) {
+            return false;
+        }
+        
+        // 确认后的消息不再出现在历史中，使所在会话的缓存窗口失效
+        for (Message message : messageMapper.selectByIds(messageIds)) {
+            TransactionUtil.afterCommit(() -> recentMessageCache.invalidate(message.getConversationKey()));
+        }
+        return true;
+    }
+
+    /**
+     * 查询会话最新的消息：优先读取最近消息缓存，未命中时从数据库加载并回填
+     *
+     * @param conversationKey 会话键
+     * @param limit 数量限制
+     * @param order 排序方式
+     * @return 消息列表
+     */
+    private List<Message> selectLatest(long conversationKey, int limit, Comparator<Message> order) {
+        List<Message> cached = recentMessageCache.getLatest(conversationKey, limit, order);
+        if (cached != null) {
+            return cached;
+        }
+        
+        long stamp = recentMessageCache.stamp(conversationKey);
+        int loadSize = recentMessageCache.loadSize(limit);
+        List<Message> messages = messageMapper.selectByConversationKey(conversationKey, loadSize);
+        recentMessageCache.fill(conversationKey, messages, loadSize, stamp);
+        
+        messages.sort(order);
+        return messages.size() > limit ? new ArrayList<>(messages.subList(0, limit)) : messages;
+    }
+    
+    /**
+     * 修改消息前确保其已落库，否则UPDATE会落空
+     *
+     * @param messageId 消息ID
+     */
+    private void flushIfPending(Long messageId) {
+        if (messageWriteBehindService.getPending(messageId) != null) {
+            messageWriteBehindService.flush();
+        }
     }
-} 
\ No newline at end of file
+}
@@ -1,9 +1,14 @@
 package com.campus.im.service.impl;
 
+import com.campus.im.common.constant.MessageConstant;
 import com.campus.im.entity.Message;
+import com.campus.im.entity.User;
 import com.campus.im.mapper.MessageMapper;
+import com.campus.im.service.ChatGroupService;
+import com.campus.im.service.MessageSequenceService;
 import com.campus.im.service.MessageSyncService;
 import com.campus.im.service.UserService;
+import com.campus.im.util.ConversationKeyUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
@@ -29,10 +34,19 @@ public class MessageSyncServiceImpl implements MessageSyncService {
     @Autowired
     private UserService userService;
     
+    @Autowired
+    private ChatGroupService chatGroupService;
+    
+    @Autowired
+    private MessageSequenceService messageSequenceService;
+    
     // Redis key前缀
     private static final String DEVICE_SYNC_KEY_PREFIX = "user:devices:sync:";
     private static final String USER_DEVICES_KEY_PREFIX = "user:devices:";
     
+    // 单次区间同步的最大消息数
+    private static final int MAX_SYNC_LIMIT = 500;
+    
     @Override
     public Map<String, Long> getDeviceSyncStatus(String userPhone) {
         if (userPhone == null) {
@@ -77,20 +91,65 @@ public class MessageSyncServiceImpl implements MessageSyncService {
         }
         
         // 获取用户ID
-        Long userId = userService.getUserByPhone(userPhone).getId();
-        if (userId == null) {
+        User user = userService.getUserByPhone(userPhone);
+        if (user == null) {
+            return Collections.emptyList();
+        }
+        
+        if (lastSyncMessageId == null) {
+            lastSyncMessageId = 0L;
+        }
+        
+        return messageMapper.selectMessagesAfterIdForUser(user.getId(), lastSyncMessageId, limit);
+    }
+    
+    @Override
+    public List<Message> getMessagesAfterSeq(Long userId, Integer conversationType, Long targetId, Long afterSeq, Integer limit) {
+        if (userId == null || conversationType == null || targetId == null) {
             return Collections.emptyList();
         }
         
-        // 获取需要同步的消息
-        // 这里需要根据实际业务逻辑调整
-        // 假设messageMapper中有相应的方法
-        // return messageMapper.selectMessagesAfterIdForUser(userId, lastSyncMessageId, limit);
+        if (afterSeq == null || afterSeq < 0) {
+            afterSeq = 0L;
+        }
+        
+        if (limit == null || limit <= 0) {
+            limit = 50; // 默认获取50条
+        }
+        limit = Math.min(limit, MAX_SYNC_LIMIT);
+        
+        if (conversationType == MessageConstant.CONVERSATION_TYPE_PRIVATE) {
+            return messageMapper.selectByConversationKeyAfterSeq(
+                    ConversationKeyUtil.privateKey(userId, targetId), afterSeq, limit);
+        }
+        
+        if (conversationType == MessageConstant.CONVERSATION_TYPE_GROUP
+                && chatGroupService.isUserInGroup(targetId, userId)) {
+            return messageMapper.selectByConversationKeyAfterSeq(
+                    ConversationKeyUtil.groupKey(targetId), afterSeq, limit);
+        }
         
-        // 临时返回空列表，实际实现需要查询数据库
         return Collections.emptyList();
     }
     
+    @Override
+    public Long getCurrentSeq(Long userId, Integer conversationType, Long targetId) {
+        if (userId == null || conversationType == null || targetId == null) {
+            return null;
+        }
+        
+        if (conversationType == MessageConstant.CONVERSATION_TYPE_PRIVATE) {
+            return messageSequenceService.getCurrentPrivateSeq(userId, targetId);
+        }
+        
+        if (conversationType == MessageConstant.CONVERSATION_TYPE_GROUP
+                && chatGroupService.isUserInGroup(targetId, userId)) {
+            return messageSequenceService.getCurrentGroupSeq(targetId);
+        }
+        
+        return null;
+    }
+    
     @Override
     public boolean registerDevice(String userPhone, String deviceId) {
         if (userPhone == null || deviceId == null) {
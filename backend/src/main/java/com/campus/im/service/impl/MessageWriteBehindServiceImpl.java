@@ -0,0 +1,412 @@
+package com.campus.im.service.impl;
+
+import com.campus.im.entity.Message;
+import com.campus.im.mapper.MessageMapper;
+import com.campus.im.service.MessageWriteBehindService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 消息异步落库服务实现类
+ * 有界队列 + 单写线程：攒满batch-size条或等待flush-interval毫秒后，用一条多行INSERT写入。
+ * 逐条重试后仍写入失败的消息进入重试列表，按指数退避重新写入，写入成功前一直留在待落库集合中
+ */
+@Service
+public class MessageWriteBehindServiceImpl implements MessageWriteBehindService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageWriteBehindServiceImpl.class);
+
+    @Autowired
+    private MessageMapper messageMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.im.message.write-behind.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.im.message.write-behind.batch-size:200}")
+    private int batchSize;
+
+    @Value("${app.im.message.write-behind.flush-interval-ms:50}")
+    private long flushIntervalMs;
+
+    @Value("${app.im.message.write-behind.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${app.im.message.write-behind.offer-timeout-ms:20}")
+    private long offerTimeoutMs;
+
+    @Value("${app.im.message.write-behind.retry-initial-ms:1000}")
+    private long retryInitialMs;
+
+    @Value("${app.im.message.write-behind.retry-max-ms:30000}")
+    private long retryMaxMs;
+
+    private BlockingQueue<Message> queue;
+
+    // 已入队但尚未落库的消息，供按ID查询、撤回等操作读取
+    private final Map<Long, Message> pending = new ConcurrentHashMap<>();
+
+    // 写线程与主动flush互斥，保证同一条消息只写一次；消息只在持锁时出队，flush返回时不会有已出队未写入的消息。
+    // 公平锁避免写线程连续持锁时flush长时间等待
+    private final ReentrantLock writeLock = new ReentrantLock(true);
+
+    // 入队成功后释放一个许可，写线程在锁外等待许可而不是等待出队
+    private final Semaphore available = new Semaphore(0);
+
+    // 写入失败等待重试的消息，仅在持有writeLock时访问
+    private final List<FailedWrite> retries = new ArrayList<>();
+
+    // 重试列表长度，供监控读取
+    private volatile int retrySize;
+
+    private volatile boolean running;
+
+    private Thread writerThread;
+
+    private DistributionSummary batchSizeSummary;
+
+    private Counter fallbackCounter;
+
+    private Counter failureCounter;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        batchSizeSummary = DistributionSummary.builder("im.message.write-behind.batch.size")
+                .description("单次批量写入的消息条数")
+                .register(meterRegistry);
+        fallbackCounter = Counter.builder("im.message.write-behind.fallback")
+                .description("队列已满转为同步写入的消息数")
+                .register(meterRegistry);
+        failureCounter = Counter.builder("im.message.write-behind.failure")
+                .description("写入失败的消息数")
+                .register(meterRegistry);
+        Gauge.builder("im.message.write-behind.queue.size", queue, BlockingQueue::size)
+                .description("等待落库的消息数")
+                .register(meterRegistry);
+        Gauge.builder("im.message.write-behind.retry.size", this, service -> service.retrySize)
+                .description("写入失败等待重试的消息数")
+                .register(meterRegistry);
+
+        running = true;
+        writerThread = new Thread(this::writeLoop, "message-write-behind");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        logger.info("消息异步落库已开启 - 批量大小: {}, 刷新间隔: {}ms, 队列容量: {}",
+                batchSize, flushIntervalMs, queueCapacity);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!enabled) {
+            return;
+        }
+
+        running = false;
+        writerThread.interrupt();
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // 写线程退出后把剩余消息全部写完
+        flush();
+        if (retrySize > 0) {
+            logger.error("消息异步落库已停止，{}条消息仍写入失败", retrySize);
+            return;
+        }
+        logger.info("消息异步落库已停止，剩余消息已写入");
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public boolean submit(Message message) {
+        if (!enabled || message == null || message.getId() == null) {
+            return false;
+        }
+
+        pending.put(message.getId(), message);
+        try {
+            if (running && queue.offer(message, offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                available.release();
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // 队列已满（或正在停机）：由调用线程同步写入，形成背压
+        fallbackCounter.increment();
+        writeLock.lock();
+        try {
+            writeAndRelease(Collections.singletonList(message));
+            // 写入失败的消息已进入重试列表，不会丢失
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public Message getPending(Long messageId) {
+        if (!enabled || messageId == null) {
+            return null;
+        }
+
+        return pending.get(messageId);
+    }
+
+    @Override
+    public long getMaxPendingSeq(Long conversationKey) {
+        if (!enabled || conversationKey == null) {
+            return 0L;
+        }
+
+        long maxSeq = 0L;
+        for (Message message : pending.values()) {
+            if (conversationKey.equals(message.getConversationKey()) && message.getSeq() != null) {
+                maxSeq = Math.max(maxSeq, message.getSeq());
+            }
+        }
+        return maxSeq;
+    }
+
+    @Override
+    public void flush() {
+        if (!enabled) {
+            return;
+        }
+
+        List<Message> batch = new ArrayList<>(batchSize);
+        writeLock.lock();
+        try {
+            // 已放入待落库集合但尚未入队的消息（提交线程正在入队）最多再等待一个入队超时
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(offerTimeoutMs);
+            while (true) {
+                while (queue.drainTo(batch, batchSize) > 0) {
+                    writeAndRelease(batch);
+                    batch.clear();
+                }
+                if (pending.size() <= retries.size() || System.nanoTime() - deadline >= 0) {
+                    break;
+                }
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+            }
+            // 不等退避到期，立即重试一次
+            retryFailed(true);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * 写线程主循环：锁外等待入队许可，持锁后再出队并写入
+     */
+    private void writeLoop() {
+        List<Message> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                // 没有新消息时也按刷新间隔醒来，检查到期的重试
+                if (!available.tryAcquire(flushIntervalMs, TimeUnit.MILLISECONDS)) {
+                    if (retrySize > 0) {
+                        writeLock.lock();
+                        try {
+                            retryFailed(false);
+                        } finally {
+                            writeLock.unlock();
+                        }
+                    }
+                    continue;
+                }
+
+                writeLock.lock();
+                try {
+                    // 许可只用于唤醒，出队以队列为准
+                    available.drainPermits();
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                    // 攒够一批或到达刷新间隔后写入
+                    while (batch.size() < batchSize) {
+                        if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                            continue;
+                        }
+                        // 已被flush取走
+                        if (batch.isEmpty()) {
+                            break;
+                        }
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) {
+                            break;
+                        }
+                        Message next;
+                        try {
+                            next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                        } catch (InterruptedException e) {
+                            // 停机信号：先写完当前批次，下一轮循环再退出
+                            Thread.currentThread().interrupt();
+                            break;
+                        }
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                    }
+                    writeAndRelease(batch);
+                    retryFailed(false);
+                } finally {
+                    batch.clear();
+                    writeLock.unlock();
+                }
+            } catch (InterruptedException e) {
+                // 停机信号，退出循环后由shutdown完成剩余写入
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                logger.error("消息批量写入线程异常", e);
+            }
+        }
+    }
+
+    /**
+     * 写入一批消息，成功的从待落库集合中移除，失败的进入重试列表；调用方需持有writeLock
+     *
+     * @param batch 消息列表
+     */
+    private void writeAndRelease(List<Message> batch) {
+        List<Message> failed = writeBatch(batch);
+        for (Message message : batch) {
+            if (!failed.contains(message)) {
+                pending.remove(message.getId());
+            }
+        }
+        long now = System.nanoTime();
+        for (Message message : failed) {
+            retries.add(new FailedWrite(message, now + TimeUnit.MILLISECONDS.toNanos(retryInitialMs)));
+        }
+        retrySize = retries.size();
+    }
+
+    /**
+     * 重新写入重试列表中退避到期的消息，再次失败的加倍退避时间；调用方需持有writeLock
+     *
+     * @param force 是否忽略退避时间全部重试
+     */
+    private void retryFailed(boolean force) {
+        if (retries.isEmpty()) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        List<FailedWrite> due = new ArrayList<>();
+        Iterator<FailedWrite> iterator = retries.iterator();
+        while (iterator.hasNext()) {
+            FailedWrite failedWrite = iterator.next();
+            if (force || now - failedWrite.nextAttemptNanos >= 0) {
+                due.add(failedWrite);
+                iterator.remove();
+            }
+        }
+
+        for (int from = 0; from < due.size(); from += batchSize) {
+            List<FailedWrite> chunk = due.subList(from, Math.min(from + batchSize, due.size()));
+            List<Message> messages = new ArrayList<>(chunk.size());
+            for (FailedWrite failedWrite : chunk) {
+                messages.add(failedWrite.message);
+            }
+            List<Message> failed = writeBatch(messages);
+            for (FailedWrite failedWrite : chunk) {
+                if (!failed.contains(failedWrite.message)) {
+                    pending.remove(failedWrite.message.getId());
+                    continue;
+                }
+                failedWrite.attempts++;
+                long backoffMs = Math.min(retryMaxMs, retryInitialMs << Math.min(failedWrite.attempts - 1, 20));
+                failedWrite.nextAttemptNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoffMs);
+                retries.add(failedWrite);
+                logger.warn("消息重试写入失败 - 消息ID: {}, 已重试: {}次, {}ms后再试",
+                        failedWrite.message.getId(), failedWrite.attempts, backoffMs);
+            }
+        }
+        retrySize = retries.size();
+    }
+
+    /**
+     * 多行INSERT写入一批消息；整批失败时逐条重试，避免一条坏数据拖垮整批
+     *
+     * @param batch 消息列表
+     * @return 写入失败的消息
+     */
+    private List<Message> writeBatch(List<Message> batch) {
+        if (batch.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        try {
+            messageMapper.batchInsert(batch);
+            batchSizeSummary.record(batch.size());
+            return Collections.emptyList();
+        } catch (Exception e) {
+            if (batch.size() == 1) {
+                failureCounter.increment();
+                logger.error("消息写入失败 - 消息ID: {}", batch.get(0).getId(), e);
+                return batch;
+            }
+            logger.warn("消息批量写入失败，改为逐条写入 - 条数: {}", batch.size(), e);
+        }
+
+        List<Message> failed = new ArrayList<>();
+        for (Message message : batch) {
+            failed.addAll(writeBatch(Collections.singletonList(message)));
+        }
+        return failed;
+    }
+
+    /**
+     * 等待重试的消息
+     */
+    private static class FailedWrite {
+
+        private final Message message;
+
+        // 已重试次数
+        private int attempts;
+
+        // 下次重试时间（System.nanoTime）
+        private long nextAttemptNanos;
+
+        FailedWrite(Message message, long nextAttemptNanos) {
+            this.message = message;
+            this.nextAttemptNanos = nextAttemptNanos;
+        }
+    }
+}
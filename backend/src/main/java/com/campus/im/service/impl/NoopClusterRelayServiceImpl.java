@@ -0,0 +1,30 @@
+package com.campus.im.service.impl;
+
+import com.campus.im.service.ClusterRelayService;
+import com.campus.im.websocket.EncodedPayload;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+
+/**
+ * 单节点部署时的跨节点转发服务，不做任何转发
+ */
+@Service
+@ConditionalOnProperty(name = "app.im.cluster.relay", havingValue = "none", matchIfMissing = true)
+public class NoopClusterRelayServiceImpl implements ClusterRelayService {
+
+    @Override
+    public boolean isEnabled() {
+        return false;
+    }
+
+    @Override
+    public int relayToUsers(Collection<String> users, String destination, EncodedPayload payload) {
+        return 0;
+    }
+
+    @Override
+    public void relayBroadcast(String destination, EncodedPayload payload) {
+    }
+}
@@ -0,0 +1,243 @@
+package com.campus.im.service.impl;
+
+import com.campus.im.dto.PresenceDTO;
+import com.campus.im.entity.User;
+import com.campus.im.mapper.UserMapper;
+import com.campus.im.service.ClusterRelayService;
+import com.campus.im.service.FriendshipService;
+import com.campus.im.service.MessageDeliveryService;
+import com.campus.im.service.PresenceService;
+import com.campus.im.service.UserService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.security.Principal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 在线状态服务实现类
+ * 在线状态只反映本节点的会话；开启跨节点转发时，上下线通知发给全部好友，由转发服务送达其他节点上的好友
+ */
+@Service
+public class PresenceServiceImpl implements PresenceService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PresenceServiceImpl.class);
+
+    // 好友在线状态推送地址
+    private static final String PRESENCE_DESTINATION = "/queue/presence";
+
+    // 单条UPDATE语句的最大行数
+    private static final int UPDATE_BATCH_SIZE = 500;
+
+    @Autowired
+    private UserMapper userMapper;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private FriendshipService friendshipService;
+
+    @Autowired
+    private MessageDeliveryService messageDeliveryService;
+
+    @Autowired
+    private ClusterRelayService clusterRelayService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // 用户ID到本节点会话数
+    private final Map<Long, Integer> sessionCounts = new ConcurrentHashMap<>();
+
+    // 会话ID到用户ID，断开事件可能重复发布，按会话只回收一次
+    private final Map<String, Long> sessionUsers = new ConcurrentHashMap<>();
+
+    // 待写回的最后活跃时间
+    private final Map<Long, LocalDateTime> pendingActiveTimes = new ConcurrentHashMap<>();
+
+    // 上下线状态有变化、待通知好友的用户
+    private final Set<Long> pendingChanges = ConcurrentHashMap.newKeySet();
+
+    // 已通知好友为在线的用户，用于合并通知间隔内的反复上下线
+    private final Set<Long> announcedOnline = ConcurrentHashMap.newKeySet();
+
+    private Counter notifiedCounter;
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("im.presence.online", sessionCounts, Map::size)
+                .description("本节点在线用户数")
+                .register(meterRegistry);
+        Gauge.builder("im.presence.active-time.pending", pendingActiveTimes, Map::size)
+                .description("待写回的最后活跃时间数")
+                .register(meterRegistry);
+        notifiedCounter = Counter.builder("im.presence.notified")
+                .description("推送给好友的在线状态变化消息数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 关闭前写回剩余的最后活跃时间
+     */
+    @PreDestroy
+    public void shutdown() {
+        flushActiveTimes();
+    }
+
+    @Override
+    public boolean isOnline(Long userId) {
+        return userId != null && sessionCounts.containsKey(userId);
+    }
+
+    @Override
+    public int getOnlineUserCount() {
+        return sessionCounts.size();
+    }
+
+    @Override
+    public boolean touch(Long userId) {
+        if (userId == null) {
+            return false;
+        }
+        pendingActiveTimes.put(userId, LocalDateTime.now());
+        return true;
+    }
+
+    @Override
+    public boolean touch(String phone) {
+        if (phone == null || phone.isEmpty()) {
+            return false;
+        }
+        User user = userService.getUserByPhone(phone);
+        return user != null && touch(user.getId());
+    }
+
+    @EventListener
+    public void onSessionConnected(SessionConnectedEvent event) {
+        Principal principal = event.getUser();
+        String sessionId = StompHeaderAccessor.wrap(event.getMessage()).getSessionId();
+        if (principal == null || sessionId == null) {
+            return;
+        }
+        User user = userService.getUserByPhone(principal.getName());
+        if (user == null || sessionUsers.putIfAbsent(sessionId, user.getId()) != null) {
+            return;
+        }
+
+        Long userId = user.getId();
+        sessionCounts.merge(userId, 1, Integer::sum);
+        touch(userId);
+        pendingChanges.add(userId);
+    }
+
+    @EventListener
+    public void onSessionDisconnect(SessionDisconnectEvent event) {
+        Long userId = sessionUsers.remove(event.getSessionId());
+        if (userId == null) {
+            return;
+        }
+
+        sessionCounts.computeIfPresent(userId, (k, count) -> count <= 1 ? null : count - 1);
+        touch(userId);
+        pendingChanges.add(userId);
+    }
+
+    /**
+     * 批量写回最后活跃时间
+     */
+    @Scheduled(fixedDelayString = "${app.im.presence.flush-interval-ms:30000}")
+    public void flushActiveTimes() {
+        if (pendingActiveTimes.isEmpty()) {
+            return;
+        }
+
+        Map<Long, LocalDateTime> batch = new HashMap<>();
+        for (Map.Entry<Long, LocalDateTime> entry : pendingActiveTimes.entrySet()) {
+            // 只移除取出时的值，期间再次活跃的时间留到下一轮
+            if (pendingActiveTimes.remove(entry.getKey(), entry.getValue())) {
+                batch.put(entry.getKey(), entry.getValue());
+            }
+            if (batch.size() >= UPDATE_BATCH_SIZE) {
+                writeActiveTimes(batch);
+                batch = new HashMap<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            writeActiveTimes(batch);
+        }
+    }
+
+    /**
+     * 合并通知间隔内的上下线变化，每个在线好友只收到一条包含全部变化的消息
+     */
+    @Scheduled(fixedDelayString = "${app.im.presence.notify-interval-ms:1000}")
+    public void notifyFriends() {
+        if (pendingChanges.isEmpty()) {
+            return;
+        }
+
+        Map<Long, List<PresenceDTO>> deltasByFriend = new HashMap<>();
+        for (Long userId : pendingChanges) {
+            pendingChanges.remove(userId);
+            boolean online = isOnline(userId);
+            // 上次通知后又恢复原状态的用户不再通知
+            boolean changed = online ? announcedOnline.add(userId) : announcedOnline.remove(userId);
+            if (!changed) {
+                continue;
+            }
+
+            PresenceDTO delta = new PresenceDTO(userId, online, LocalDateTime.now());
+            for (Long friendId : friendshipService.getFriendIdList(userId)) {
+                if (clusterRelayService.isEnabled() || isOnline(friendId)) {
+                    deltasByFriend.computeIfAbsent(friendId, k -> new ArrayList<>()).add(delta);
+                }
+            }
+        }
+
+        for (Map.Entry<Long, List<PresenceDTO>> entry : deltasByFriend.entrySet()) {
+            User friend = userService.getUserById(entry.getKey());
+            if (friend == null) {
+                continue;
+            }
+            try {
+                messageDeliveryService.sendToUser(friend.getPhone(), PRESENCE_DESTINATION,
+                        messageDeliveryService.encode(entry.getValue()));
+                notifiedCounter.increment();
+            } catch (Exception e) {
+                logger.warn("推送好友在线状态失败 - 用户ID: {}", entry.getKey(), e);
+            }
+        }
+    }
+
+    /**
+     * 写入一批最后活跃时间，失败时放回待写回集合，保留较新的时间
+     */
+    private void writeActiveTimes(Map<Long, LocalDateTime> batch) {
+        try {
+            userMapper.batchUpdateLastActiveTime(batch);
+        } catch (Exception e) {
+            logger.error("批量写回最后活跃时间失败 - 用户数: {}", batch.size(), e);
+            batch.forEach((userId, time) -> pendingActiveTimes.merge(userId, time,
+                    (current, failed) -> current.isAfter(failed) ? current : failed));
+        }
+    }
+}
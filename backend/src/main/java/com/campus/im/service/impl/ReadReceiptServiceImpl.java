@@ -0,0 +1,237 @@
+package com.campus.im.service.impl;
+
+import com.campus.im.common.constant.MessageConstant;
+import com.campus.im.entity.Conversation;
+import com.campus.im.entity.Message;
+import com.campus.im.entity.User;
+import com.campus.im.mapper.ConversationMapper;
+import com.campus.im.service.MessageDeliveryService;
+import com.campus.im.service.MessageService;
+import com.campus.im.service.ReadReceiptService;
+import com.campus.im.service.UnreadCounterService;
+import com.campus.im.service.UserService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 已读回执服务实现类
+ * 上报先按（读者，会话）合并到内存中取最大消息ID，窗口到期后由定时任务落库并推送回执
+ */
+@Service
+public class ReadReceiptServiceImpl implements ReadReceiptService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReadReceiptServiceImpl.class);
+
+    // 已读回执推送地址
+    private static final String RECEIPT_DESTINATION = "/queue/read-receipts";
+
+    @Autowired
+    private ConversationMapper conversationMapper;
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UnreadCounterService unreadCounterService;
+
+    @Autowired
+    private MessageDeliveryService messageDeliveryService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.im.read-receipt.window-ms:300}")
+    private long windowMs;
+
+    // 等待落库的已读水位
+    private final Map<ReadKey, PendingRead> pending = new ConcurrentHashMap<>();
+
+    private Counter receivedCounter;
+
+    private Counter flushedCounter;
+
+    @PostConstruct
+    public void init() {
+        receivedCounter = Counter.builder("im.read-receipt.received")
+                .description("收到的已读上报数")
+                .register(meterRegistry);
+        flushedCounter = Counter.builder("im.read-receipt.flushed")
+                .description("合并后落库的已读水位数")
+                .register(meterRegistry);
+        Gauge.builder("im.read-receipt.pending", pending, Map::size)
+                .description("等待落库的已读水位数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 关闭前落库剩余的已读水位
+     */
+    @PreDestroy
+    public void shutdown() {
+        flush(Long.MAX_VALUE);
+    }
+
+    @Override
+    public boolean markReadUpTo(Long readerId, Integer conversationType, Long targetId, Long messageId) {
+        if (readerId == null || conversationType == null || targetId == null || messageId == null) {
+            return false;
+        }
+        if (conversationType != MessageConstant.CONVERSATION_TYPE_PRIVATE
+                && conversationType != MessageConstant.CONVERSATION_TYPE_GROUP) {
+            return false;
+        }
+        receivedCounter.increment();
+
+        long now = System.currentTimeMillis();
+        pending.merge(new ReadKey(readerId, conversationType, targetId), new PendingRead(messageId, now),
+                (current, reported) -> reported.messageId() > current.messageId()
+                        ? new PendingRead(reported.messageId(), current.firstAt())
+                        : current);
+        return true;
+    }
+
+    @Override
+    public boolean markMessageRead(Long readerId, Long messageId) {
+        if (readerId == null || messageId == null) {
+            return false;
+        }
+
+        Message message = messageService.getMessage(messageId);
+        if (message == null || message.getConversationType() == null) {
+            return false;
+        }
+        if (message.getConversationType() == MessageConstant.CONVERSATION_TYPE_GROUP) {
+            return markReadUpTo(readerId, message.getConversationType(), message.getReceiverId(), messageId);
+        }
+        // 私聊只有接收者可以上报已读
+        if (!readerId.equals(message.getReceiverId())) {
+            return false;
+        }
+        return markReadUpTo(readerId, message.getConversationType(), message.getSenderId(), messageId);
+    }
+
+    /**
+     * 落库窗口已到期的已读水位
+     */
+    @Scheduled(fixedDelayString = "${app.im.read-receipt.tick-ms:100}")
+    public void flushExpired() {
+        flush(System.currentTimeMillis() - windowMs);
+    }
+
+    /**
+     * 落库首次上报不晚于指定时间的已读水位
+     *
+     * @param deadline 首次上报时间上限
+     */
+    private void flush(long deadline) {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        Map<ReadKey, Long> due = new HashMap<>();
+        for (Map.Entry<ReadKey, PendingRead> entry : pending.entrySet()) {
+            // 只移除取出时的值，期间又有更新的水位留到下一轮
+            if (entry.getValue().firstAt() <= deadline && pending.remove(entry.getKey(), entry.getValue())) {
+                due.put(entry.getKey(), entry.getValue().messageId());
+            }
+        }
+        for (Map.Entry<ReadKey, Long> entry : due.entrySet()) {
+            try {
+                apply(entry.getKey(), entry.getValue());
+            } catch (Exception e) {
+                logger.error("已读水位落库失败 - 读者ID: {}, 会话类型: {}, 目标ID: {}, 消息ID: {}",
+                        entry.getKey().readerId(), entry.getKey().conversationType(),
+                        entry.getKey().targetId(), entry.getValue(), e);
+            }
+        }
+    }
+
+    /**
+     * 推进已读水位，水位覆盖最后一条消息时清零未读计数，再向对方推送回执
+     */
+    private void apply(ReadKey key, Long messageId) {
+        Conversation conversation = conversationMapper.selectByUserIdAndTarget(
+                key.readerId(), key.conversationType(), key.targetId());
+        if (conversation == null) {
+            return;
+        }
+        Long lastRead = conversation.getLastReadMessageId();
+        if (lastRead != null && lastRead >= messageId) {
+            return;
+        }
+        if (conversationMapper.updateReadWatermark(key.readerId(), key.conversationType(),
+                key.targetId(), messageId) <= 0) {
+            return;
+        }
+        flushedCounter.increment();
+
+        if (conversation.getLastMessageId() == null || conversation.getLastMessageId() <= messageId) {
+            unreadCounterService.clear(key.readerId(), key.conversationType(), key.targetId());
+        }
+        sendReceipt(key, messageId);
+    }
+
+    /**
+     * 私聊回执发给对方；群聊回执发给水位所在消息的发送者
+     */
+    private void sendReceipt(ReadKey key, Long messageId) {
+        Long notifyUserId = key.targetId();
+        if (key.conversationType() == MessageConstant.CONVERSATION_TYPE_GROUP) {
+            Message message = messageService.getMessage(messageId);
+            if (message == null || key.readerId().equals(message.getSenderId())) {
+                return;
+            }
+            notifyUserId = message.getSenderId();
+        }
+
+        User reader = userService.getUserById(key.readerId());
+        User notifyUser = userService.getUserById(notifyUserId);
+        if (reader == null || notifyUser == null) {
+            return;
+        }
+        Map<String, Object> receipt = new HashMap<>();
+        receipt.put("conversationType", key.conversationType());
+        receipt.put("targetId", key.conversationType() == MessageConstant.CONVERSATION_TYPE_GROUP
+                ? key.targetId() : key.readerId());
+        receipt.put("readerId", key.readerId());
+        receipt.put("readerPhone", reader.getPhone());
+        receipt.put("lastReadMessageId", messageId);
+        messageDeliveryService.sendToUser(notifyUser.getPhone(), RECEIPT_DESTINATION,
+                messageDeliveryService.encode(receipt));
+    }
+
+    /**
+     * 读者与会话
+     *
+     * @param readerId 读者用户ID
+     * @param conversationType 会话类型
+     * @param targetId 目标ID
+     */
+    private record ReadKey(Long readerId, Integer conversationType, Long targetId) {
+    }
+
+    /**
+     * 窗口内合并后的已读水位
+     *
+     * @param messageId 已读到的最大消息ID
+     * @param firstAt 窗口内首次上报时间
+     */
+    private record PendingRead(long messageId, long firstAt) {
+    }
+}
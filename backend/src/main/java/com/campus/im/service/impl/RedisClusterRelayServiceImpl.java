@@ -0,0 +1,664 @@
+package com.campus.im.service.impl;
+
+import com.campus.im.service.ClusterRelayService;
+import com.campus.im.websocket.EncodedPayload;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 基于Redis发布订阅的跨节点转发服务实现类
+ * <ul>
+ *     <li>每个节点订阅自己的频道 ws:relay:{nodeId}，收到的消息只在本地投递</li>
+ *     <li>用户在哪些节点上有会话、订阅目的地在哪些节点上有订阅者，记录在Redis集合中，只转发给需要的节点；
+ *     本地计数在内存中原子更新，Redis登记由单个任务按当前计数串行写入，不在计数的原子更新内执行网络操作</li>
+ *     <li>用户所在节点在本地短暂缓存，群消息扇出时只为未命中的用户查询Redis；
+ *     节点登记或注销用户后通过Redis发布订阅通知各节点清除对应缓存</li>
+ *     <li>发往同一节点的消息进入该节点的队列，由刷新线程合并为一次发布，空闲时不增加延迟</li>
+ *     <li>节点定时心跳，已下线节点留在集合中的记录在转发时忽略并清理</li>
+ * </ul>
+ */
+@Service
+@ConditionalOnProperty(name = "app.im.cluster.relay", havingValue = "redis")
+public class RedisClusterRelayServiceImpl implements ClusterRelayService, MessageListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisClusterRelayServiceImpl.class);
+
+    // Redis key
+    private static final String NODES_KEY = "ws:nodes";
+    private static final String NODE_KEY_PREFIX = "ws:node:";
+    private static final String USER_NODES_KEY_PREFIX = "ws:user:nodes:";
+    private static final String TOPIC_NODES_KEY_PREFIX = "ws:topic:nodes:";
+    private static final String CHANNEL_PREFIX = "ws:relay:";
+    private static final String LOCATION_CHANNEL = "ws:user:nodes:changed";
+
+    // 需要跨节点转发的订阅目的地前缀
+    private static final String TOPIC_PREFIX = "/topic/";
+
+    private static final TypeReference<List<RelayEnvelope>> BATCH_TYPE = new TypeReference<>() {
+    };
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.im.cluster.node-id:}")
+    private String configuredNodeId;
+
+    @Value("${app.im.cluster.heartbeat-interval-ms:10000}")
+    private long heartbeatIntervalMs;
+
+    @Value("${app.im.cluster.flush-threads:2}")
+    private int flushThreads;
+
+    @Value("${app.im.cluster.max-batch:256}")
+    private int maxBatch;
+
+    @Value("${app.im.cluster.location-cache.ttl-ms:5000}")
+    private long locationTtlMs;
+
+    @Value("${app.im.cluster.location-cache.max-users:200000}")
+    private long locationMaxUsers;
+
+    private String nodeId;
+
+    // 存活节点，由心跳定时刷新
+    private volatile Set<String> liveNodes = Collections.emptySet();
+
+    // 本节点各用户的会话数、各订阅目的地的订阅数
+    private final Map<String, Integer> localUsers = new ConcurrentHashMap<>();
+    private final Map<String, Integer> localTopics = new ConcurrentHashMap<>();
+
+    // 计数在0与非0之间变化、需要同步到Redis的用户与订阅目的地
+    private final Set<String> dirtyUsers = ConcurrentHashMap.newKeySet();
+    private final Set<String> dirtyTopics = ConcurrentHashMap.newKeySet();
+
+    // 是否已有登记任务在同步，保证Redis登记串行写入
+    private final AtomicBoolean registrationScheduled = new AtomicBoolean();
+
+    // 用户所在节点，key为用户标识
+    private Cache<String, Set<String>> locations;
+
+    // 会话ID到用户、会话ID到（订阅ID到目的地）的映射，用于取消订阅与断开连接时回收计数
+    private final Map<String, String> sessionUsers = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, String>> sessionTopics = new ConcurrentHashMap<>();
+
+    // 发往各节点的待发布消息
+    private final Map<String, NodeQueue> queues = new ConcurrentHashMap<>();
+
+    private ExecutorService flushExecutor;
+
+    private Counter relayedCounter;
+
+    private Counter batchCounter;
+
+    private Counter receivedCounter;
+
+    private Counter locationLookupCounter;
+
+    @PostConstruct
+    public void init() {
+        nodeId = configuredNodeId != null && !configuredNodeId.isEmpty() ? configuredNodeId : defaultNodeId();
+
+        AtomicInteger index = new AtomicInteger();
+        flushExecutor = Executors.newFixedThreadPool(flushThreads, runnable -> {
+            Thread thread = new Thread(runnable, "cluster-relay-flush-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        relayedCounter = Counter.builder("im.cluster.relay.sent")
+                .description("转发到其他节点的消息数")
+                .register(meterRegistry);
+        batchCounter = Counter.builder("im.cluster.relay.batches")
+                .description("向其他节点发布的批次数")
+                .register(meterRegistry);
+        receivedCounter = Counter.builder("im.cluster.relay.received")
+                .description("从其他节点收到的消息数")
+                .register(meterRegistry);
+        locationLookupCounter = Counter.builder("im.cluster.relay.location.lookups")
+                .description("缓存未命中、从Redis查询所在节点的用户数")
+                .register(meterRegistry);
+        locations = Caffeine.newBuilder()
+                .maximumSize(locationMaxUsers)
+                .expireAfterWrite(Duration.ofMillis(locationTtlMs))
+                .build();
+
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL_PREFIX + nodeId));
+        listenerContainer.addMessageListener(this, new ChannelTopic(LOCATION_CHANNEL));
+        heartbeat();
+        logger.info("跨节点转发已启用 - 节点: {}", nodeId);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushExecutor.shutdown();
+        try {
+            // 等待进行中的登记任务结束，避免清理后又被写回
+            flushExecutor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                    RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                    for (String user : localUsers.keySet()) {
+                        ops.opsForSet().remove(USER_NODES_KEY_PREFIX + user, nodeId);
+                    }
+                    for (String topic : localTopics.keySet()) {
+                        ops.opsForSet().remove(TOPIC_NODES_KEY_PREFIX + topic, nodeId);
+                    }
+                    ops.opsForSet().remove(NODES_KEY, nodeId);
+                    ops.delete(NODE_KEY_PREFIX + nodeId);
+                    return null;
+                }
+            });
+            if (!localUsers.isEmpty()) {
+                stringRedisTemplate.convertAndSend(LOCATION_CHANNEL, String.join(",", localUsers.keySet()));
+            }
+        } catch (Exception e) {
+            logger.warn("节点下线时清理Redis记录失败 - 节点: {}", nodeId, e);
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public int relayToUsers(Collection<String> users, String destination, EncodedPayload payload) {
+        if (users == null || users.isEmpty() || destination == null || payload == null || !hasPeers()) {
+            return 0;
+        }
+
+        Map<String, Set<String>> userNodes = findNodes(users);
+        Map<String, List<String>> nodeUsers = new HashMap<>();
+        Map<String, String> staleEntries = new HashMap<>();
+        List<String> staleUsers = new ArrayList<>();
+        int relayed = 0;
+        for (Map.Entry<String, Set<String>> entry : userNodes.entrySet()) {
+            boolean remote = false;
+            for (String target : entry.getValue()) {
+                if (target.equals(nodeId)) {
+                    continue;
+                }
+                if (!liveNodes.contains(target)) {
+                    staleEntries.put(USER_NODES_KEY_PREFIX + entry.getKey(), target);
+                    staleUsers.add(entry.getKey());
+                    continue;
+                }
+                nodeUsers.computeIfAbsent(target, k -> new ArrayList<>()).add(entry.getKey());
+                remote = true;
+            }
+            if (remote) {
+                relayed++;
+            }
+        }
+
+        for (Map.Entry<String, List<String>> entry : nodeUsers.entrySet()) {
+            enqueue(entry.getKey(), new RelayEnvelope(destination, entry.getValue(), payload.bytes()));
+        }
+        locations.invalidateAll(staleUsers);
+        removeStale(staleEntries);
+        return relayed;
+    }
+
+    @Override
+    public void relayBroadcast(String destination, EncodedPayload payload) {
+        if (destination == null || payload == null || !hasPeers()) {
+            return;
+        }
+
+        Set<String> nodes = stringRedisTemplate.opsForSet().members(TOPIC_NODES_KEY_PREFIX + destination);
+        if (nodes == null || nodes.isEmpty()) {
+            return;
+        }
+
+        Map<String, String> staleEntries = new HashMap<>();
+        for (String target : nodes) {
+            if (target.equals(nodeId)) {
+                continue;
+            }
+            if (!liveNodes.contains(target)) {
+                staleEntries.put(TOPIC_NODES_KEY_PREFIX + destination, target);
+                continue;
+            }
+            enqueue(target, new RelayEnvelope(destination, null, payload.bytes()));
+        }
+        removeStale(staleEntries);
+    }
+
+    /**
+     * 收到其他节点转发的批次，只在本地投递
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        if (LOCATION_CHANNEL.equals(new String(message.getChannel(), StandardCharsets.UTF_8))) {
+            String body = new String(message.getBody(), StandardCharsets.UTF_8);
+            locations.invalidateAll(List.of(body.split(",")));
+            return;
+        }
+
+        List<RelayEnvelope> batch;
+        try {
+            batch = objectMapper.readValue(message.getBody(), BATCH_TYPE);
+        } catch (Exception e) {
+            logger.warn("无法解析转发消息 - 节点: {}", nodeId, e);
+            return;
+        }
+
+        for (RelayEnvelope envelope : batch) {
+            EncodedPayload payload = new EncodedPayload(envelope.payload());
+            if (envelope.users() == null) {
+                messagingTemplate.convertAndSend(envelope.destination(), payload);
+            } else {
+                for (String user : envelope.users()) {
+                    messagingTemplate.convertAndSendToUser(user, envelope.destination(), payload);
+                }
+            }
+        }
+        receivedCounter.increment(batch.size());
+    }
+
+    /**
+     * 刷新本节点心跳，并重新计算存活节点
+     */
+    @Scheduled(fixedDelayString = "${app.im.cluster.heartbeat-interval-ms:10000}")
+    public void heartbeat() {
+        try {
+            stringRedisTemplate.opsForValue().set(NODE_KEY_PREFIX + nodeId, String.valueOf(System.currentTimeMillis()),
+                    heartbeatIntervalMs * 3, TimeUnit.MILLISECONDS);
+            stringRedisTemplate.opsForSet().add(NODES_KEY, nodeId);
+
+            Set<String> nodes = stringRedisTemplate.opsForSet().members(NODES_KEY);
+            if (nodes == null || nodes.isEmpty()) {
+                return;
+            }
+            List<String> nodeList = new ArrayList<>(nodes);
+            List<Object> alive = stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                    RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                    for (String node : nodeList) {
+                        ops.hasKey(NODE_KEY_PREFIX + node);
+                    }
+                    return null;
+                }
+            });
+
+            Set<String> live = new HashSet<>();
+            for (int i = 0; i < nodeList.size() && i < alive.size(); i++) {
+                if (Boolean.TRUE.equals(alive.get(i))) {
+                    live.add(nodeList.get(i));
+                } else {
+                    stringRedisTemplate.opsForSet().remove(NODES_KEY, nodeList.get(i));
+                    logger.info("节点心跳超时，不再向其转发 - 节点: {}", nodeList.get(i));
+                }
+            }
+            live.add(nodeId);
+            liveNodes = Collections.unmodifiableSet(live);
+        } catch (Exception e) {
+            logger.warn("节点心跳失败 - 节点: {}", nodeId, e);
+        }
+    }
+
+    @EventListener
+    public void onSessionConnected(SessionConnectedEvent event) {
+        Principal user = event.getUser();
+        String sessionId = StompHeaderAccessor.wrap(event.getMessage()).getSessionId();
+        if (user == null || sessionId == null || sessionUsers.putIfAbsent(sessionId, user.getName()) != null) {
+            return;
+        }
+        acquire(localUsers, dirtyUsers, user.getName());
+    }
+
+    @EventListener
+    public void onSessionSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        String destination = accessor.getDestination();
+        if (accessor.getSessionId() == null || accessor.getSubscriptionId() == null
+                || destination == null || !destination.startsWith(TOPIC_PREFIX)) {
+            return;
+        }
+        Map<String, String> subscriptions = sessionTopics.computeIfAbsent(accessor.getSessionId(),
+                k -> new ConcurrentHashMap<>());
+        if (subscriptions.putIfAbsent(accessor.getSubscriptionId(), destination) == null) {
+            acquire(localTopics, dirtyTopics, destination);
+        }
+    }
+
+    @EventListener
+    public void onSessionUnsubscribe(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        if (accessor.getSessionId() == null || accessor.getSubscriptionId() == null) {
+            return;
+        }
+        Map<String, String> subscriptions = sessionTopics.get(accessor.getSessionId());
+        String destination = subscriptions != null ? subscriptions.remove(accessor.getSubscriptionId()) : null;
+        if (destination != null) {
+            release(localTopics, dirtyTopics, destination);
+        }
+    }
+
+    /**
+     * 断开事件可能重复发布，按会话ID只回收一次
+     */
+    @EventListener
+    public void onSessionDisconnect(SessionDisconnectEvent event) {
+        String sessionId = event.getSessionId();
+        Map<String, String> subscriptions = sessionTopics.remove(sessionId);
+        if (subscriptions != null) {
+            for (String destination : subscriptions.values()) {
+                release(localTopics, dirtyTopics, destination);
+            }
+        }
+        String user = sessionUsers.remove(sessionId);
+        if (user != null) {
+            release(localUsers, dirtyUsers, user);
+        }
+    }
+
+    /**
+     * 计数从0变为1时标记需要登记到Redis集合
+     */
+    private void acquire(Map<String, Integer> counts, Set<String> dirty, String name) {
+        if (counts.merge(name, 1, Integer::sum) == 1) {
+            markDirty(dirty, name);
+        }
+    }
+
+    /**
+     * 计数归零时标记需要从Redis集合中移除
+     */
+    private void release(Map<String, Integer> counts, Set<String> dirty, String name) {
+        boolean[] removed = new boolean[1];
+        counts.computeIfPresent(name, (k, count) -> {
+            if (count <= 1) {
+                removed[0] = true;
+                return null;
+            }
+            return count - 1;
+        });
+        if (removed[0]) {
+            markDirty(dirty, name);
+        }
+    }
+
+    /**
+     * 标记后没有登记任务时提交一个，任务运行期间的标记由同一任务处理
+     */
+    private void markDirty(Set<String> dirty, String name) {
+        dirty.add(name);
+        if (registrationScheduled.compareAndSet(false, true)) {
+            flushExecutor.execute(this::syncRegistrations);
+        }
+    }
+
+    /**
+     * 按当前计数把标记的用户与订阅目的地写入Redis：计数存在则登记本节点，否则移除。
+     * 先取走标记再读取计数，读取之后的变化会重新标记，因此最终与本地计数一致
+     */
+    private void syncRegistrations() {
+        while (true) {
+            List<String> users = drain(dirtyUsers);
+            List<String> topics = drain(dirtyTopics);
+            if (!users.isEmpty() || !topics.isEmpty()) {
+                writeRegistrations(users, topics);
+                continue;
+            }
+            registrationScheduled.set(false);
+            // 释放标记后又有变化且没有其他任务接手时继续同步
+            if ((dirtyUsers.isEmpty() && dirtyTopics.isEmpty()) || !registrationScheduled.compareAndSet(false, true)) {
+                return;
+            }
+        }
+    }
+
+    private void writeRegistrations(List<String> users, List<String> topics) {
+        try {
+            stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                    RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                    for (String user : users) {
+                        register(ops, USER_NODES_KEY_PREFIX + user, localUsers.containsKey(user));
+                    }
+                    for (String topic : topics) {
+                        register(ops, TOPIC_NODES_KEY_PREFIX + topic, localTopics.containsKey(topic));
+                    }
+                    return null;
+                }
+            });
+            if (!users.isEmpty()) {
+                stringRedisTemplate.convertAndSend(LOCATION_CHANNEL, String.join(",", users));
+            }
+        } catch (Exception e) {
+            // 留待下一次登记变化时重试
+            dirtyUsers.addAll(users);
+            dirtyTopics.addAll(topics);
+            logger.warn("同步节点登记失败 - 节点: {}, 用户数: {}, 目的地数: {}", nodeId, users.size(), topics.size(), e);
+        }
+    }
+
+    private void register(RedisOperations<String, String> operations, String key, boolean present) {
+        if (present) {
+            operations.opsForSet().add(key, nodeId);
+        } else {
+            operations.opsForSet().remove(key, nodeId);
+        }
+    }
+
+    private static List<String> drain(Set<String> dirty) {
+        List<String> drained = new ArrayList<>();
+        for (String name : dirty) {
+            if (dirty.remove(name)) {
+                drained.add(name);
+            }
+        }
+        return drained;
+    }
+
+    /**
+     * 查询用户所在节点，先读本地缓存，未命中的用户一次流水线查询Redis后写入缓存
+     *
+     * @param users 用户标识集合
+     * @return 用户到所在节点的映射
+     */
+    private Map<String, Set<String>> findNodes(Collection<String> users) {
+        Map<String, Set<String>> result = new HashMap<>(locations.getAllPresent(users));
+        List<String> misses = new ArrayList<>();
+        for (String user : users) {
+            if (!result.containsKey(user)) {
+                misses.add(user);
+            }
+        }
+        if (misses.isEmpty()) {
+            return result;
+        }
+
+        List<Object> members = stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                for (String user : misses) {
+                    ops.opsForSet().members(USER_NODES_KEY_PREFIX + user);
+                }
+                return null;
+            }
+        });
+        locationLookupCounter.increment(misses.size());
+        for (int i = 0; i < misses.size(); i++) {
+            Set<String> nodes = new HashSet<>();
+            if (i < members.size() && members.get(i) instanceof Set<?> found) {
+                for (Object node : found) {
+                    nodes.add(node.toString());
+                }
+            }
+            // 不在线的用户也缓存空集合，大群中的离线成员不必每条消息查询一次
+            Set<String> cached = Collections.unmodifiableSet(nodes);
+            locations.put(misses.get(i), cached);
+            result.put(misses.get(i), cached);
+        }
+        return result;
+    }
+
+    private boolean hasPeers() {
+        return liveNodes.size() > 1;
+    }
+
+    private void removeStale(Map<String, String> staleEntries) {
+        if (staleEntries.isEmpty()) {
+            return;
+        }
+        stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                for (Map.Entry<String, String> entry : staleEntries.entrySet()) {
+                    ops.opsForSet().remove(entry.getKey(), entry.getValue());
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * 放入目标节点的队列；队列没有刷新任务时提交一个，刷新期间到达的消息由同一任务合并发布
+     */
+    private void enqueue(String target, RelayEnvelope envelope) {
+        NodeQueue queue = queues.computeIfAbsent(target, k -> new NodeQueue());
+        queue.envelopes.add(envelope);
+        relayedCounter.increment();
+        if (queue.scheduled.compareAndSet(false, true)) {
+            flushExecutor.execute(() -> flush(target, queue));
+        }
+    }
+
+    private void flush(String target, NodeQueue queue) {
+        while (true) {
+            List<RelayEnvelope> batch = new ArrayList<>();
+            RelayEnvelope envelope;
+            while (batch.size() < maxBatch && (envelope = queue.envelopes.poll()) != null) {
+                batch.add(envelope);
+            }
+            if (!batch.isEmpty()) {
+                publish(target, batch);
+                continue;
+            }
+            queue.scheduled.set(false);
+            // 释放标记后又有消息到达且没有其他任务接手时继续刷新
+            if (queue.envelopes.isEmpty() || !queue.scheduled.compareAndSet(false, true)) {
+                return;
+            }
+        }
+    }
+
+    private void publish(String target, List<RelayEnvelope> batch) {
+        try {
+            stringRedisTemplate.convertAndSend(CHANNEL_PREFIX + target, objectMapper.writeValueAsString(batch));
+            batchCounter.increment();
+        } catch (JsonProcessingException e) {
+            logger.error("转发消息序列化失败 - 目标节点: {}", target, e);
+        } catch (Exception e) {
+            logger.warn("转发消息发布失败 - 目标节点: {}, 消息数: {}", target, batch.size(), e);
+        }
+    }
+
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "unknown";
+        }
+        return host + ":" + ProcessHandle.current().pid();
+    }
+
+    /**
+     * 发往单个节点的待发布队列
+     */
+    private static final class NodeQueue {
+
+        final ConcurrentLinkedQueue<RelayEnvelope> envelopes = new ConcurrentLinkedQueue<>();
+
+        // 是否已有刷新任务在处理该队列
+        final AtomicBoolean scheduled = new AtomicBoolean();
+    }
+
+    /**
+     * 转发消息
+     *
+     * @param destination 目的地
+     * @param users 目标用户，为null时表示广播到订阅目的地
+     * @param payload 已序列化的消息体
+     */
+    record RelayEnvelope(String destination, List<String> users, byte[] payload) {
+    }
+}
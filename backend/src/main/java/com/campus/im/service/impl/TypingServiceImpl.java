@@ -0,0 +1,272 @@
+package com.campus.im.service.impl;
+
+import com.campus.im.service.MessageDeliveryService;
+import com.campus.im.service.TypingService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 输入状态聚合服务实现类
+ * 每个私聊状态与群状态的修改都在所属key的 compute 内完成，推送在 compute 之外执行
+ */
+@Service
+public class TypingServiceImpl implements TypingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TypingServiceImpl.class);
+
+    // 私聊输入状态推送地址
+    private static final String PRIVATE_DESTINATION = "/queue/typing";
+
+    // 群输入状态推送地址前缀，后接群组ID
+    private static final String GROUP_DESTINATION_PREFIX = "/topic/group.";
+
+    private static final String GROUP_DESTINATION_SUFFIX = ".typing";
+
+    @Autowired
+    private MessageDeliveryService messageDeliveryService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.im.typing.window-ms:1000}")
+    private long windowMs;
+
+    @Value("${app.im.typing.idle-ms:5000}")
+    private long idleMs;
+
+    @Value("${app.im.typing.group-interval-ms:1000}")
+    private long groupIntervalMs;
+
+    // 私聊：发送者:接收者 -> 状态
+    private final Map<String, PrivateTyping> privateStates = new ConcurrentHashMap<>();
+
+    // 群聊：群组ID -> 正在输入的成员
+    private final Map<Long, GroupTyping> groupStates = new ConcurrentHashMap<>();
+
+    private Counter privateReceivedCounter;
+
+    private Counter privateSentCounter;
+
+    private Counter groupReceivedCounter;
+
+    private Counter groupSentCounter;
+
+    @PostConstruct
+    public void init() {
+        privateReceivedCounter = counter("im.typing.received", "private", "收到的输入状态事件数");
+        privateSentCounter = counter("im.typing.sent", "private", "推送的输入状态帧数");
+        groupReceivedCounter = counter("im.typing.received", "group", "收到的输入状态事件数");
+        groupSentCounter = counter("im.typing.sent", "group", "推送的输入状态帧数");
+        Gauge.builder("im.typing.entries", this, service -> service.privateStates.size() + service.groupStates.size())
+                .description("内存中的输入状态条目数")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void onPrivateTyping(String senderPhone, String receiverPhone, boolean typing) {
+        if (senderPhone == null || receiverPhone == null) {
+            return;
+        }
+        privateReceivedCounter.increment();
+
+        long now = System.currentTimeMillis();
+        boolean[] send = new boolean[1];
+        privateStates.compute(senderPhone + ":" + receiverPhone, (key, state) -> {
+            if (state == null) {
+                state = new PrivateTyping(senderPhone, receiverPhone);
+            }
+            state.lastSeen = now;
+            if (typing == state.sentTyping) {
+                // 状态未变，撤销窗口内尚未推送的相反状态
+                state.pending = null;
+            } else if (now - state.sentAt >= windowMs) {
+                state.markSent(typing, now);
+                send[0] = true;
+            } else {
+                state.pending = typing;
+            }
+            return state;
+        });
+
+        if (send[0]) {
+            sendPrivate(senderPhone, receiverPhone, typing);
+        }
+    }
+
+    @Override
+    public void onGroupTyping(String senderPhone, Long groupId, boolean typing) {
+        if (senderPhone == null || groupId == null) {
+            return;
+        }
+        groupReceivedCounter.increment();
+
+        long now = System.currentTimeMillis();
+        groupStates.compute(groupId, (key, state) -> {
+            if (state == null) {
+                if (!typing) {
+                    return null;
+                }
+                state = new GroupTyping();
+            }
+            if (typing) {
+                if (state.typers.put(senderPhone, now + idleMs) == null) {
+                    state.dirty = true;
+                }
+            } else if (state.typers.remove(senderPhone) != null) {
+                state.dirty = true;
+            }
+            return state.typers.isEmpty() && !state.dirty ? null : state;
+        });
+    }
+
+    /**
+     * 推送到期的私聊状态变化与群输入成员列表，并清理过期条目
+     */
+    @Scheduled(fixedDelayString = "${app.im.typing.tick-ms:200}")
+    public void flush() {
+        long now = System.currentTimeMillis();
+        try {
+            flushPrivate(now);
+            flushGroups(now);
+        } catch (Exception e) {
+            logger.error("推送输入状态失败", e);
+        }
+    }
+
+    private void flushPrivate(long now) {
+        List<PrivateTyping> changed = new ArrayList<>();
+        for (String key : privateStates.keySet()) {
+            privateStates.computeIfPresent(key, (k, state) -> {
+                if (state.pending != null && now - state.sentAt >= windowMs) {
+                    state.markSent(state.pending, now);
+                    changed.add(state.snapshot());
+                } else if (state.sentTyping && state.pending == null && now - state.lastSeen >= idleMs) {
+                    // 客户端未发送停止输入，超时后代为推送
+                    state.markSent(false, now);
+                    changed.add(state.snapshot());
+                } else if (!state.sentTyping && state.pending == null && now - state.lastSeen >= idleMs) {
+                    return null;
+                }
+                return state;
+            });
+        }
+        for (PrivateTyping state : changed) {
+            sendPrivate(state.senderPhone, state.receiverPhone, state.sentTyping);
+        }
+    }
+
+    private void flushGroups(long now) {
+        Map<Long, List<String>> frames = new HashMap<>();
+        for (Long groupId : groupStates.keySet()) {
+            groupStates.computeIfPresent(groupId, (k, state) -> {
+                Iterator<Map.Entry<String, Long>> it = state.typers.entrySet().iterator();
+                while (it.hasNext()) {
+                    if (it.next().getValue() <= now) {
+                        it.remove();
+                        state.dirty = true;
+                    }
+                }
+                if (state.dirty && now - state.sentAt >= groupIntervalMs) {
+                    frames.put(groupId, new ArrayList<>(state.typers.keySet()));
+                    state.dirty = false;
+                    state.sentAt = now;
+                }
+                return state.typers.isEmpty() && !state.dirty ? null : state;
+            });
+        }
+        for (Map.Entry<Long, List<String>> frame : frames.entrySet()) {
+            Map<String, Object> payload = Map.of(
+                "groupId", frame.getKey(),
+                "typingPhones", frame.getValue()
+            );
+            messageDeliveryService.broadcast(GROUP_DESTINATION_PREFIX + frame.getKey() + GROUP_DESTINATION_SUFFIX,
+                    messageDeliveryService.encode(payload));
+            groupSentCounter.increment();
+        }
+    }
+
+    private void sendPrivate(String senderPhone, String receiverPhone, boolean typing) {
+        Map<String, Object> payload = Map.of(
+            "senderPhone", senderPhone,
+            "isTyping", typing
+        );
+        messageDeliveryService.sendToUser(receiverPhone, PRIVATE_DESTINATION, messageDeliveryService.encode(payload));
+        privateSentCounter.increment();
+    }
+
+    private Counter counter(String name, String scope, String description) {
+        return Counter.builder(name)
+                .description(description)
+                .tag("scope", scope)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 一对私聊双方的输入状态，只在 compute 内修改
+     */
+    private static class PrivateTyping {
+
+        final String senderPhone;
+
+        final String receiverPhone;
+
+        // 最近推送的状态
+        boolean sentTyping;
+
+        // 最近推送的时间
+        long sentAt;
+
+        // 窗口内等待推送的状态
+        Boolean pending;
+
+        // 最近收到事件的时间
+        long lastSeen;
+
+        PrivateTyping(String senderPhone, String receiverPhone) {
+            this.senderPhone = senderPhone;
+            this.receiverPhone = receiverPhone;
+        }
+
+        void markSent(boolean typing, long now) {
+            sentTyping = typing;
+            sentAt = now;
+            pending = null;
+        }
+
+        PrivateTyping snapshot() {
+            PrivateTyping copy = new PrivateTyping(senderPhone, receiverPhone);
+            copy.sentTyping = sentTyping;
+            return copy;
+        }
+    }
+
+    /**
+     * 一个群正在输入的成员，只在 compute 内修改
+     */
+    private static class GroupTyping {
+
+        // 成员手机号 -> 过期时间
+        final Map<String, Long> typers = new HashMap<>();
+
+        // 成员列表是否有未推送的变化
+        boolean dirty;
+
+        // 最近推送的时间
+        long sentAt;
+    }
+}
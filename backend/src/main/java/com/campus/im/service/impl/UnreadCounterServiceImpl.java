@@ -0,0 +1,357 @@
+package com.campus.im.service.impl;
+
+import com.campus.im.cache.ReadFanoutStateCache;
+import com.campus.im.common.constant.MessageConstant;
+import com.campus.im.dto.GroupReadStateDTO;
+import com.campus.im.entity.Conversation;
+import com.campus.im.mapper.ConversationMapper;
+import com.campus.im.mapper.GroupMemberMapper;
+import com.campus.im.service.IdGeneratorService;
+import com.campus.im.service.UnreadCounterService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 未读消息计数服务实现类
+ * 所有计数修改都通过Lua脚本原子完成：同时修改会话字段与 total，并把用户加入待回写集合
+ */
+@Service
+public class UnreadCounterServiceImpl implements UnreadCounterService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UnreadCounterServiceImpl.class);
+
+    // Redis key
+    private static final String UNREAD_KEY_PREFIX = "unread:";
+    private static final String DIRTY_USERS_KEY = "unread:dirty";
+    private static final String TOTAL_FIELD = "total";
+
+    // 回写时单条INSERT的最大行数
+    private static final int UPSERT_BATCH_SIZE = 500;
+
+    // KEYS[1]=用户哈希 KEYS[2]=待回写集合 ARGV[1]=会话字段 ARGV[2]=增量 ARGV[3]=用户ID
+    // 哈希不存在时返回-1，由调用方从数据库初始化后重试
+    private static final String INCREMENT_LUA =
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return -1 end " +
+            "redis.call('HINCRBY', KEYS[1], ARGV[1], ARGV[2]) " +
+            "local total = redis.call('HINCRBY', KEYS[1], 'total', ARGV[2]) " +
+            "redis.call('SADD', KEYS[2], ARGV[3]) " +
+            "return total";
+
+    private static final RedisScript<Long> INCREMENT_SCRIPT = new DefaultRedisScript<>(INCREMENT_LUA, Long.class);
+
+    private static final byte[] INCREMENT_SCRIPT_BYTES = INCREMENT_LUA.getBytes(StandardCharsets.UTF_8);
+
+    // KEYS[1]=用户哈希 KEYS[2]=待回写集合 ARGV[1]=会话字段 ARGV[2]=用户ID，返回清零前的未读数
+    private static final String CLEAR_LUA =
+            "local old = tonumber(redis.call('HGET', KEYS[1], ARGV[1]) or '0') " +
+            "if old <= 0 then return 0 end " +
+            "redis.call('HSET', KEYS[1], ARGV[1], 0) " +
+            "local total = redis.call('HINCRBY', KEYS[1], 'total', -old) " +
+            "if total < 0 then redis.call('HSET', KEYS[1], 'total', 0) end " +
+            "redis.call('SADD', KEYS[2], ARGV[2]) " +
+            "return old";
+
+    private static final RedisScript<Long> CLEAR_SCRIPT = new DefaultRedisScript<>(CLEAR_LUA, Long.class);
+
+    private static final byte[] CLEAR_SCRIPT_BYTES = CLEAR_LUA.getBytes(StandardCharsets.UTF_8);
+
+    // 哈希不存在时按ARGV中的字段/值对初始化
+    private static final RedisScript<Long> SEED_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 1 then return 0 end " +
+            "for i = 1, #ARGV, 2 do redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 1]) end " +
+            "return 1",
+            Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private ConversationMapper conversationMapper;
+
+    @Autowired
+    private GroupMemberMapper groupMemberMapper;
+
+    @Autowired
+    private IdGeneratorService idGeneratorService;
+
+    @Autowired
+    private ReadFanoutStateCache readFanoutStateCache;
+
+    @Override
+    public void increment(Long userId, Integer conversationType, Long targetId) {
+        if (userId == null || conversationType == null || targetId == null) {
+            return;
+        }
+
+        String field = UnreadCounterService.field(conversationType, targetId);
+        Long total = executeIncrement(userId, field);
+        if (total != null && total < 0) {
+            seed(userId);
+            executeIncrement(userId, field);
+        }
+    }
+
+    @Override
+    public void incrementForUsers(Collection<Long> userIds, Integer conversationType, Long targetId) {
+        if (userIds == null || userIds.isEmpty() || conversationType == null || targetId == null) {
+            return;
+        }
+
+        List<Long> users = new ArrayList<>(userIds);
+        byte[] field = UnreadCounterService.field(conversationType, targetId).getBytes(StandardCharsets.UTF_8);
+        byte[] delta = "1".getBytes(StandardCharsets.UTF_8);
+        byte[] dirtyKey = DIRTY_USERS_KEY.getBytes(StandardCharsets.UTF_8);
+
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Long userId : users) {
+                byte[] uid = String.valueOf(userId).getBytes(StandardCharsets.UTF_8);
+                byte[] key = (UNREAD_KEY_PREFIX + userId).getBytes(StandardCharsets.UTF_8);
+                connection.scriptingCommands().eval(INCREMENT_SCRIPT_BYTES, ReturnType.INTEGER, 2,
+                        key, dirtyKey, field, delta, uid);
+            }
+            return null;
+        });
+
+        // 计数尚未初始化的用户逐个初始化后补加
+        for (int i = 0; i < results.size() && i < users.size(); i++) {
+            Object result = results.get(i);
+            if (result instanceof Long && (Long) result < 0) {
+                Long userId = users.get(i);
+                seed(userId);
+                executeIncrement(userId, UnreadCounterService.field(conversationType, targetId));
+            }
+        }
+    }
+
+    @Override
+    public void clearForUsers(Collection<Long> userIds, Integer conversationType, Long targetId) {
+        if (userIds == null || userIds.isEmpty() || conversationType == null || targetId == null) {
+            return;
+        }
+
+        byte[] field = UnreadCounterService.field(conversationType, targetId).getBytes(StandardCharsets.UTF_8);
+        byte[] dirtyKey = DIRTY_USERS_KEY.getBytes(StandardCharsets.UTF_8);
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Long userId : userIds) {
+                byte[] key = (UNREAD_KEY_PREFIX + userId).getBytes(StandardCharsets.UTF_8);
+                connection.scriptingCommands().eval(CLEAR_SCRIPT_BYTES, ReturnType.INTEGER, 2,
+                        key, dirtyKey, field, String.valueOf(userId).getBytes(StandardCharsets.UTF_8));
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void syncForUsers(Collection<Long> userIds, Integer conversationType, Long targetId) {
+        if (userIds == null || userIds.isEmpty() || conversationType == null || targetId == null) {
+            return;
+        }
+
+        List<Long> users = new ArrayList<>(userIds);
+        String field = UnreadCounterService.field(conversationType, targetId);
+        List<Object> counts = stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                for (Long userId : users) {
+                    ops.opsForHash().get(UNREAD_KEY_PREFIX + userId, field);
+                }
+                return null;
+            }
+        });
+
+        // 计数不存在的用户以会话表为准，不需要写回
+        List<Conversation> batch = new ArrayList<>(Math.min(users.size(), UPSERT_BATCH_SIZE));
+        for (int i = 0; i < users.size() && i < counts.size(); i++) {
+            Object count = counts.get(i);
+            if (count == null) {
+                continue;
+            }
+            Conversation conversation = new Conversation();
+            conversation.setUserId(users.get(i));
+            conversation.setConversationType(conversationType);
+            conversation.setTargetId(targetId);
+            conversation.setUnreadCount(Math.max(Integer.parseInt(count.toString()), 0));
+            if (idGeneratorService.isSnowflakeEnabled()) {
+                conversation.setId(idGeneratorService.nextId());
+            }
+            batch.add(conversation);
+            if (batch.size() >= UPSERT_BATCH_SIZE) {
+                conversationMapper.batchUpsertUnreadCount(batch);
+                batch = new ArrayList<>(UPSERT_BATCH_SIZE);
+            }
+        }
+        if (!batch.isEmpty()) {
+            conversationMapper.batchUpsertUnreadCount(batch);
+        }
+    }
+
+    @Override
+    public int clear(Long userId, Integer conversationType, Long targetId) {
+        if (userId == null || conversationType == null || targetId == null) {
+            return 0;
+        }
+
+        if (conversationType == MessageConstant.CONVERSATION_TYPE_GROUP) {
+            groupMemberMapper.markReadToLatest(targetId, userId);
+            readFanoutStateCache.invalidate(userId);
+        }
+
+        Long old = stringRedisTemplate.execute(CLEAR_SCRIPT,
+                Arrays.asList(UNREAD_KEY_PREFIX + userId, DIRTY_USERS_KEY),
+                UnreadCounterService.field(conversationType, targetId), String.valueOf(userId));
+        return old == null ? 0 : old.intValue();
+    }
+
+    @Override
+    public int getTotalUnread(Long userId) {
+        if (userId == null) {
+            return 0;
+        }
+
+        Object total = stringRedisTemplate.opsForHash().get(UNREAD_KEY_PREFIX + userId, TOTAL_FIELD);
+        if (total == null) {
+            seed(userId);
+            total = stringRedisTemplate.opsForHash().get(UNREAD_KEY_PREFIX + userId, TOTAL_FIELD);
+        }
+        int count = total == null ? 0 : Math.max(Integer.parseInt(total.toString()), 0);
+
+        // 读扩散群组的未读数由序列号之差计算，阅读进度取自进程内缓存，群最新序列号取自Redis
+        for (GroupReadStateDTO state : readFanoutStateCache.get(userId)) {
+            if (state.getIsMuted() == null || state.getIsMuted() == 0) {
+                count += state.getUnreadCount();
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public Map<String, Integer> getUnreadCounts(Long userId) {
+        if (userId == null) {
+            return Collections.emptyMap();
+        }
+
+        Map<Object, Object> entries = stringRedisTemplate.opsForHash().entries(UNREAD_KEY_PREFIX + userId);
+        if (entries.isEmpty()) {
+            seed(userId);
+            entries = stringRedisTemplate.opsForHash().entries(UNREAD_KEY_PREFIX + userId);
+        }
+
+        Map<String, Integer> counts = new HashMap<>(entries.size() * 2);
+        for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+            String field = entry.getKey().toString();
+            if (!TOTAL_FIELD.equals(field)) {
+                counts.put(field, Integer.parseInt(entry.getValue().toString()));
+            }
+        }
+
+        // 与写扩散一致，免打扰会话不计未读
+        for (GroupReadStateDTO state : readFanoutStateCache.get(userId)) {
+            if (state.getIsMuted() == null || state.getIsMuted() == 0) {
+                counts.put(UnreadCounterService.field(MessageConstant.CONVERSATION_TYPE_GROUP, state.getGroupId()),
+                        state.getUnreadCount());
+            }
+        }
+        return counts;
+    }
+
+    @Override
+    public int reconcile(int maxUsers) {
+        List<String> userIds = stringRedisTemplate.opsForSet().pop(DIRTY_USERS_KEY, maxUsers);
+        if (userIds == null || userIds.isEmpty()) {
+            return 0;
+        }
+
+        List<Conversation> batch = new ArrayList<>(UPSERT_BATCH_SIZE);
+        for (String uid : userIds) {
+            Long userId = Long.valueOf(uid);
+            Map<Object, Object> entries = stringRedisTemplate.opsForHash().entries(UNREAD_KEY_PREFIX + uid);
+            for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+                String field = entry.getKey().toString();
+                if (TOTAL_FIELD.equals(field)) {
+                    continue;
+                }
+                int separator = field.indexOf(':');
+                Conversation conversation = new Conversation();
+                conversation.setUserId(userId);
+                conversation.setConversationType(Integer.valueOf(field.substring(0, separator)));
+                conversation.setTargetId(Long.valueOf(field.substring(separator + 1)));
+                conversation.setUnreadCount(Integer.parseInt(entry.getValue().toString()));
+                if (idGeneratorService.isSnowflakeEnabled()) {
+                    conversation.setId(idGeneratorService.nextId());
+                }
+                batch.add(conversation);
+                if (batch.size() >= UPSERT_BATCH_SIZE) {
+                    upsert(batch, userIds);
+                    batch = new ArrayList<>(UPSERT_BATCH_SIZE);
+                }
+            }
+        }
+        upsert(batch, userIds);
+        return userIds.size();
+    }
+
+    private void upsert(List<Conversation> batch, List<String> userIds) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            conversationMapper.batchUpsertUnreadCount(batch);
+        } catch (Exception e) {
+            // 回写失败时把用户放回待回写集合，下一轮重试
+            stringRedisTemplate.opsForSet().add(DIRTY_USERS_KEY, userIds.toArray(new String[0]));
+            logger.error("未读计数回写失败 - 会话数: {}", batch.size(), e);
+        }
+    }
+
+    private Long executeIncrement(Long userId, String field) {
+        return stringRedisTemplate.execute(INCREMENT_SCRIPT,
+                Arrays.asList(UNREAD_KEY_PREFIX + userId, DIRTY_USERS_KEY),
+                field, "1", String.valueOf(userId));
+    }
+
+    /**
+     * 计数不存在（首次使用或Redis数据丢失）时以会话表中的未读数初始化
+     *
+     * @param userId 用户ID
+     */
+    private void seed(Long userId) {
+        List<Conversation> conversations = conversationMapper.selectByUserId(userId);
+        List<String> args = new ArrayList<>(conversations.size() * 2 + 2);
+        int total = 0;
+        for (Conversation conversation : conversations) {
+            int unread = conversation.getUnreadCount() == null ? 0 : conversation.getUnreadCount();
+            if (unread > 0) {
+                args.add(UnreadCounterService.field(conversation.getConversationType(), conversation.getTargetId()));
+                args.add(String.valueOf(unread));
+                total += unread;
+            }
+        }
+        args.add(TOTAL_FIELD);
+        args.add(String.valueOf(total));
+        stringRedisTemplate.execute(SEED_SCRIPT, Collections.singletonList(UNREAD_KEY_PREFIX + userId),
+                args.toArray());
+    }
+}
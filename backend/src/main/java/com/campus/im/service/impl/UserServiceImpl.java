@@ -1,14 +1,19 @@
 package com.campus.im.service.impl;
 
+import com.campus.im.cache.UserCache;
 import com.campus.im.entity.User;
 import com.campus.im.mapper.UserMapper;
 import com.campus.im.service.UserService;
+import com.campus.im.util.TransactionUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 用户服务实现类
@@ -19,12 +24,26 @@ public class UserServiceImpl implements UserService {
     @Autowired
     private UserMapper userMapper;
     
+    @Autowired
+    private UserCache userCache;
+    
     @Override
     public User getUserByPhone(String phone) {
         if (phone == null || phone.isEmpty()) {
             return null;
         }
-        return userMapper.selectByPhone(phone);
+        if (!userCache.isEnabled()) {
+            return userMapper.selectByPhone(phone);
+        }
+        
+        Long id = userCache.getIdByPhone(phone);
+        if (id != null) {
+            return getUserById(id);
+        }
+        
+        User user = userMapper.selectByPhone(phone);
+        userCache.put(user);
+        return user;
     }
     
     @Override
@@ -32,7 +51,16 @@ public class UserServiceImpl implements UserService {
         if (id == null) {
             return null;
         }
-        return userMapper.selectById(id);
+        if (!userCache.isEnabled()) {
+            return userMapper.selectById(id);
+        }
+        
+        User user = userCache.get(id);
+        if (user == null) {
+            user = userMapper.selectById(id);
+            userCache.put(user);
+        }
+        return user;
     }
     
     @Override
@@ -40,7 +68,30 @@ public class UserServiceImpl implements UserService {
         if (ids == null || ids.isEmpty()) {
             return Collections.emptyList();
         }
-        return userMapper.selectByIds(ids);
+        if (!userCache.isEnabled()) {
+            return userMapper.selectByIds(ids);
+        }
+        
+        // 先读缓存，未命中的一次批量查询补齐
+        LinkedHashSet<Long> uniqueIds = new LinkedHashSet<>(ids);
+        Map<Long, User> cached = userCache.getAll(uniqueIds);
+        List<User> users = new ArrayList<>(uniqueIds.size());
+        List<Long> missingIds = new ArrayList<>();
+        for (Long id : uniqueIds) {
+            User user = cached.get(id);
+            if (user != null) {
+                users.add(user);
+            } else {
+                missingIds.add(id);
+            }
+        }
+        
+        if (!missingIds.isEmpty()) {
+            List<User> loaded = userMapper.selectByIds(missingIds);
+            userCache.putAll(loaded);
+            users.addAll(loaded);
+        }
+        return users;
     }
     
     @Override
@@ -66,7 +117,14 @@ public class UserServiceImpl implements UserService {
             return false;
         }
         
-        return userMapper.update(user) > 0;
+        if (userMapper.update(user) <= 0) {
+            return false;
+        }
+        
+        // 提交前失效的话，并发读取会把旧数据重新写回缓存
+        Long id = user.getId();
+        TransactionUtil.afterCommit(() -> userCache.invalidate(id));
+        return true;
     }
     
     @Override
@@ -0,0 +1,62 @@
+package com.campus.im.util;
+
+import com.campus.im.common.constant.MessageConstant;
+
+/**
+ * 会话键工具类
+ * 为每个会话计算稳定的64位会话键，存储在消息表的 conversation_key 列上：
+ * <ul>
+ *     <li>私聊：(较小用户ID &lt;&lt; 31) | 较大用户ID，恒为正数，两个方向结果相同</li>
+ *     <li>群聊：-群组ID，恒为负数，不会与私聊冲突</li>
+ * </ul>
+ * 0 保留表示尚未回填。upgrade.sql 与 {@code MessageMapper.backfillConversationKey} 中的SQL须与此处保持一致
+ */
+public class ConversationKeyUtil {
+
+    private static final int USER_ID_BITS = 31;
+
+    private static final long MAX_USER_ID = (1L << USER_ID_BITS) - 1;
+
+    /**
+     * 计算私聊会话键
+     *
+     * @param userId1 用户1的ID
+     * @param userId2 用户2的ID
+     * @return 会话键
+     */
+    public static long privateKey(long userId1, long userId2) {
+        if (userId1 <= 0 || userId2 <= 0 || userId1 > MAX_USER_ID || userId2 > MAX_USER_ID) {
+            throw new IllegalArgumentException("用户ID超出会话键范围: " + userId1 + ", " + userId2);
+        }
+        long min = Math.min(userId1, userId2);
+        long max = Math.max(userId1, userId2);
+        return (min << USER_ID_BITS) | max;
+    }
+
+    /**
+     * 计算群聊会话键
+     *
+     * @param groupId 群组ID
+     * @return 会话键
+     */
+    public static long groupKey(long groupId) {
+        if (groupId <= 0) {
+            throw new IllegalArgumentException("群组ID无效: " + groupId);
+        }
+        return -groupId;
+    }
+
+    /**
+     * 根据消息的会话类型、发送者和接收者计算会话键
+     *
+     * @param conversationType 会话类型：0-私聊，1-群聊
+     * @param senderId 发送者ID
+     * @param receiverId 接收者ID（群聊为群组ID）
+     * @return 会话键
+     */
+    public static long of(int conversationType, long senderId, long receiverId) {
+        return conversationType == MessageConstant.CONVERSATION_TYPE_PRIVATE
+                ? privateKey(senderId, receiverId)
+                : groupKey(receiverId);
+    }
+}
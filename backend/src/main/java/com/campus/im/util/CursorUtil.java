@@ -0,0 +1,46 @@
+package com.campus.im.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * 分页游标工具类
+ * 游标对客户端不透明，内部记录上一页最后一条消息的会话序列号
+ */
+public class CursorUtil {
+
+    private static final String PREFIX = "s:";
+
+    /**
+     * 生成游标
+     *
+     * @param seq 当前页最早一条消息的序列号
+     * @return 游标字符串
+     */
+    public static String encode(long seq) {
+        byte[] bytes = (PREFIX + seq).getBytes(StandardCharsets.UTF_8);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    /**
+     * 解析游标
+     *
+     * @param cursor 游标字符串
+     * @return 序列号，游标为空或格式错误时返回null
+     */
+    public static Long decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!value.startsWith(PREFIX)) {
+                return null;
+            }
+            return Long.parseLong(value.substring(PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.campus.im.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 雪花算法ID生成器
+ * 64位ID = 1位符号 + 41位毫秒时间戳 + 10位节点ID + 12位序列号，同一节点内严格递增，节点之间无需协调
+ * <p>
+ * 时钟回拨时不抛异常也不阻塞：继续沿用上一次的时间戳递增序列号，序列号溢出时借用下一毫秒，
+ * 直到系统时钟追上为止，因此不会产生重复ID
+ */
+public class SnowflakeIdGenerator {
+
+    /**
+     * 起始时间：2024-01-01 00:00:00 UTC
+     */
+    public static final long EPOCH = 1704067200000L;
+
+    public static final int NODE_ID_BITS = 10;
+
+    public static final int SEQUENCE_BITS = 12;
+
+    public static final long MAX_NODE_ID = (1L << NODE_ID_BITS) - 1;
+
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private static final int TIMESTAMP_SHIFT = NODE_ID_BITS + SEQUENCE_BITS;
+
+    private final long nodeId;
+
+    // 最近一次分配的 (时间戳 << SEQUENCE_BITS | 序列号)，通过CAS无锁推进
+    private final AtomicLong lastState = new AtomicLong();
+
+    public SnowflakeIdGenerator(long nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("节点ID必须在0到" + MAX_NODE_ID + "之间: " + nodeId);
+        }
+        this.nodeId = nodeId;
+    }
+
+    /**
+     * 生成下一个ID
+     *
+     * @return 雪花ID
+     */
+    public long nextId() {
+        while (true) {
+            long now = System.currentTimeMillis() - EPOCH;
+            long prev = lastState.get();
+            long prevTimestamp = prev >>> SEQUENCE_BITS;
+            // 时钟前进时序列号归零；时钟停滞或回拨时在上一状态上加一，序列号溢出自然进位到时间戳
+            long next = now > prevTimestamp ? now << SEQUENCE_BITS : prev + 1;
+            if (lastState.compareAndSet(prev, next)) {
+                long timestamp = next >>> SEQUENCE_BITS;
+                long sequence = next & SEQUENCE_MASK;
+                return (timestamp << TIMESTAMP_SHIFT) | (nodeId << SEQUENCE_BITS) | sequence;
+            }
+        }
+    }
+
+    /**
+     * 当前逻辑时钟领先系统时钟的毫秒数，大于0说明发生了时钟回拨或序列号借用了未来时间
+     *
+     * @return 领先的毫秒数
+     */
+    public long getClockDrift() {
+        long drift = (lastState.get() >>> SEQUENCE_BITS) - (System.currentTimeMillis() - EPOCH);
+        return Math.max(drift, 0L);
+    }
+
+    /**
+     * 从ID中解析生成时间
+     *
+     * @param id 雪花ID
+     * @return 毫秒时间戳
+     */
+    public static long extractTimestamp(long id) {
+        return (id >>> TIMESTAMP_SHIFT) + EPOCH;
+    }
+
+    /**
+     * 从ID中解析节点ID
+     *
+     * @param id 雪花ID
+     * @return 节点ID
+     */
+    public static long extractNodeId(long id) {
+        return (id >>> SEQUENCE_BITS) & MAX_NODE_ID;
+    }
+}
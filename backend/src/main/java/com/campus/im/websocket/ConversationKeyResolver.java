@@ -0,0 +1,94 @@
+package com.campus.im.websocket;
+
+import com.campus.im.util.ConversationKeyUtil;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 从入站STOMP帧中解析会话键
+ * 只处理私聊与群聊消息的SEND帧：流式扫描消息体的顶层字段取出接收者ID或群组ID，不做完整反序列化。
+ * 解析在WebSocket读取线程上执行，不能查询缓存或数据库：发送者用户ID在CONNECT时存入会话属性，
+ * 私聊键与消息表的会话键相同，双方发出的帧落在同一通道上，同一会话内严格按到达顺序处理。
+ * 解析不出时返回null，该帧不参与保序
+ */
+@Component
+public class ConversationKeyResolver implements Function<Message<?>, Long> {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConversationKeyResolver.class);
+
+    /**
+     * 会话属性中发送者用户ID的key，CONNECT时写入
+     */
+    public static final String USER_ID_ATTRIBUTE = "userId";
+
+    private static final String PRIVATE_MESSAGE_DESTINATION = "/app/private.message";
+
+    private static final String GROUP_MESSAGE_DESTINATION = "/app/group.message";
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    @Override
+    public Long apply(Message<?> message) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || !StompCommand.SEND.equals(accessor.getCommand())
+                || !(message.getPayload() instanceof byte[] payload)) {
+            return null;
+        }
+
+        String destination = accessor.getDestination();
+        try {
+            if (PRIVATE_MESSAGE_DESTINATION.equals(destination)) {
+                Map<String, Object> sessionAttributes = accessor.getSessionAttributes();
+                Object senderId = sessionAttributes != null ? sessionAttributes.get(USER_ID_ATTRIBUTE) : null;
+                String receiverId = readField(payload, "receiverId");
+                if (!(senderId instanceof Long sender) || receiverId == null) {
+                    return null;
+                }
+                return ConversationKeyUtil.privateKey(sender, Long.parseLong(receiverId));
+            }
+            if (GROUP_MESSAGE_DESTINATION.equals(destination)) {
+                String groupId = readField(payload, "groupId");
+                return groupId != null ? ConversationKeyUtil.groupKey(Long.parseLong(groupId)) : null;
+            }
+        } catch (Exception e) {
+            // 格式错误的帧交给普通线程池，由控制器按原有逻辑处理
+            logger.debug("解析会话键失败 - Destination: {}", destination, e);
+        }
+        return null;
+    }
+
+    /**
+     * 读取JSON对象顶层的整数字段的原文，兼容数字与字符串两种写法
+     */
+    private static String readField(byte[] payload, String field) throws Exception {
+        try (JsonParser parser = JSON_FACTORY.createParser(payload)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if (field.equals(name)) {
+                    if (value == JsonToken.VALUE_NUMBER_INT || value == JsonToken.VALUE_STRING) {
+                        String text = parser.getText().trim();
+                        return text.isEmpty() ? null : text;
+                    }
+                    return null;
+                }
+                parser.skipChildren();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,19 @@
+package com.campus.im.websocket;
+
+/**
+ * 已序列化的STOMP消息体
+ * 同一条消息只序列化一次，投递给多个会话时复用同一份字节数组
+ *
+ * @param bytes JSON字节，创建后不可修改
+ */
+public record EncodedPayload(byte[] bytes) {
+
+    /**
+     * 消息体长度（字节）
+     *
+     * @return 长度
+     */
+    public int length() {
+        return bytes.length;
+    }
+}
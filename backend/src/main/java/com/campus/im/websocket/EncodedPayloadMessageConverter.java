@@ -0,0 +1,26 @@
+package com.campus.im.websocket;
+
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.AbstractMessageConverter;
+import org.springframework.util.MimeTypeUtils;
+
+/**
+ * 预序列化消息转换器
+ * 遇到 {@link EncodedPayload} 时直接使用其中的字节作为消息体，不再经过Jackson转换
+ */
+public class EncodedPayloadMessageConverter extends AbstractMessageConverter {
+
+    public EncodedPayloadMessageConverter() {
+        super(MimeTypeUtils.APPLICATION_JSON);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return EncodedPayload.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    protected Object convertToInternal(Object payload, MessageHeaders headers, Object conversionHint) {
+        return ((EncodedPayload) payload).bytes();
+    }
+}
@@ -0,0 +1,190 @@
+package com.campus.im.websocket;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.broker.AbstractSubscriptionRegistry;
+import org.springframework.messaging.simp.broker.SubscriptionRegistry;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.MultiValueMapAdapter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 按目的地精确索引的STOMP订阅表
+ * 群频道（/topic/group.{id}、.recall、.typing）等固定目的地以目的地为key做哈希索引，每个目的地保存一个并发的
+ * 会话到订阅ID列表的映射，订阅变动只修改其中一个会话的条目，代价与该目的地的订阅数无关；
+ * 投递时直接返回该映射的只读视图，查找成本与订阅总数无关，遍历与并发的订阅变动互不阻塞（弱一致）。
+ * 通配符目的地和带选择器的订阅仍交给原有订阅表处理
+ */
+public class IndexedSubscriptionRegistry extends AbstractSubscriptionRegistry {
+
+    // 订阅帧中的选择器头
+    private static final String SELECTOR_HEADER = "selector";
+
+    private static final MultiValueMap<String, String> EMPTY = CollectionUtils.unmodifiableMultiValueMap(new LinkedMultiValueMap<>());
+
+    // 处理通配符与选择器订阅的原有订阅表
+    private final SubscriptionRegistry delegate;
+
+    // 目的地到（会话ID到订阅ID列表）的映射，订阅ID列表不可变，随会话内的订阅变动整体替换
+    private final Map<String, Map<String, List<String>>> destinations = new ConcurrentHashMap<>();
+
+    // 会话ID到（订阅ID到订阅）的映射，用于取消订阅与断开连接
+    private final Map<String, Map<String, Subscription>> sessions = new ConcurrentHashMap<>();
+
+    // 交给原有订阅表的订阅数，为0时投递不再查询原有订阅表
+    private final AtomicInteger delegatedCount = new AtomicInteger();
+
+    public IndexedSubscriptionRegistry(SubscriptionRegistry delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * 已索引的目的地数
+     *
+     * @return 目的地数
+     */
+    public int getDestinationCount() {
+        return destinations.size();
+    }
+
+    @Override
+    protected void addSubscriptionInternal(String sessionId, String subscriptionId, String destination, Message<?> message) {
+        Map<String, Subscription> sessionSubscriptions = sessions.computeIfAbsent(sessionId, k -> new ConcurrentHashMap<>());
+        if (isPattern(destination) || hasSelector(message)) {
+            if (sessionSubscriptions.putIfAbsent(subscriptionId, new Subscription(destination, true)) == null) {
+                delegate.registerSubscription(message);
+                delegatedCount.incrementAndGet();
+            }
+            return;
+        }
+
+        if (sessionSubscriptions.putIfAbsent(subscriptionId, new Subscription(destination, false)) == null) {
+            // 在目的地的 compute 内修改，与移除最后一个订阅时删除目的地互斥
+            destinations.compute(destination, (key, subscribers) -> {
+                Map<String, List<String>> current = subscribers != null ? subscribers : new ConcurrentHashMap<>();
+                current.merge(sessionId, Collections.singletonList(subscriptionId), IndexedSubscriptionRegistry::concat);
+                return current;
+            });
+        }
+    }
+
+    @Override
+    protected void removeSubscriptionInternal(String sessionId, String subscriptionId, Message<?> message) {
+        Map<String, Subscription> sessionSubscriptions = sessions.get(sessionId);
+        Subscription subscription = sessionSubscriptions != null ? sessionSubscriptions.remove(subscriptionId) : null;
+        if (subscription == null) {
+            return;
+        }
+
+        if (subscription.delegated()) {
+            delegate.unregisterSubscription(message);
+            delegatedCount.decrementAndGet();
+        } else {
+            removeFromDestination(subscription.destination(), sessionId, subscriptionId);
+        }
+    }
+
+    @Override
+    public void unregisterAllSubscriptions(String sessionId) {
+        Map<String, Subscription> sessionSubscriptions = sessions.remove(sessionId);
+        if (sessionSubscriptions == null) {
+            return;
+        }
+
+        int delegated = 0;
+        for (Map.Entry<String, Subscription> entry : sessionSubscriptions.entrySet()) {
+            if (entry.getValue().delegated()) {
+                delegated++;
+            } else {
+                removeFromDestination(entry.getValue().destination(), sessionId, entry.getKey());
+            }
+        }
+        if (delegated > 0) {
+            delegate.unregisterAllSubscriptions(sessionId);
+            delegatedCount.addAndGet(-delegated);
+        }
+    }
+
+    @Override
+    protected MultiValueMap<String, String> findSubscriptionsInternal(String destination, Message<?> message) {
+        Map<String, List<String>> subscribers = destinations.get(destination);
+        MultiValueMap<String, String> exact = subscribers != null
+                ? CollectionUtils.unmodifiableMultiValueMap(new MultiValueMapAdapter<>(subscribers))
+                : EMPTY;
+        if (delegatedCount.get() == 0) {
+            return exact;
+        }
+
+        MultiValueMap<String, String> matched = delegate.findSubscriptions(message);
+        if (matched.isEmpty()) {
+            return exact;
+        }
+        if (exact.isEmpty()) {
+            return matched;
+        }
+        MultiValueMap<String, String> merged = new LinkedMultiValueMap<>(exact.size() + matched.size());
+        exact.forEach((sessionId, ids) -> merged.addAll(sessionId, ids));
+        matched.forEach((sessionId, ids) -> merged.addAll(sessionId, ids));
+        return merged;
+    }
+
+    /**
+     * 从目的地移除订阅，目的地没有订阅时删除
+     */
+    private void removeFromDestination(String destination, String sessionId, String subscriptionId) {
+        destinations.computeIfPresent(destination, (key, subscribers) -> {
+            subscribers.computeIfPresent(sessionId, (k, ids) -> without(ids, subscriptionId));
+            return subscribers.isEmpty() ? null : subscribers;
+        });
+    }
+
+    /**
+     * 订阅ID列表加入订阅，返回新的不可变列表
+     */
+    private static List<String> concat(List<String> ids, List<String> added) {
+        List<String> newIds = new ArrayList<>(ids.size() + added.size());
+        newIds.addAll(ids);
+        newIds.addAll(added);
+        return Collections.unmodifiableList(newIds);
+    }
+
+    /**
+     * 订阅ID列表移除订阅，返回新的不可变列表，没有订阅时返回null以删除该会话
+     */
+    private static List<String> without(List<String> ids, String subscriptionId) {
+        if (!ids.contains(subscriptionId)) {
+            return ids;
+        }
+        if (ids.size() == 1) {
+            return null;
+        }
+        List<String> newIds = new ArrayList<>(ids);
+        newIds.remove(subscriptionId);
+        return Collections.unmodifiableList(newIds);
+    }
+
+    private static boolean isPattern(String destination) {
+        return destination.indexOf('*') >= 0 || destination.indexOf('?') >= 0 || destination.indexOf('{') >= 0;
+    }
+
+    private static boolean hasSelector(Message<?> message) {
+        return SimpMessageHeaderAccessor.getFirstNativeHeader(SELECTOR_HEADER, message.getHeaders()) != null;
+    }
+
+    /**
+     * 会话中的一个订阅
+     *
+     * @param destination 目的地
+     * @param delegated 是否由原有订阅表处理
+     */
+    private record Subscription(String destination, boolean delegated) {
+    }
+}
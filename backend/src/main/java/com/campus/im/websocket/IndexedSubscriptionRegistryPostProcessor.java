@@ -0,0 +1,38 @@
+package com.campus.im.websocket;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.stereotype.Component;
+
+/**
+ * 为内置STOMP代理换上按目的地索引的订阅表
+ * 代理的注册接口不提供订阅表设置，因此在代理Bean初始化前替换；原订阅表已按代理配置（路径匹配、选择器头）初始化，
+ * 保留下来处理通配符与选择器订阅
+ */
+@Component
+public class IndexedSubscriptionRegistryPostProcessor implements BeanPostProcessor, EnvironmentAware {
+
+    private static final Logger logger = LoggerFactory.getLogger(IndexedSubscriptionRegistryPostProcessor.class);
+
+    private boolean enabled = true;
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        enabled = environment.getProperty("app.im.websocket.indexed-subscriptions", Boolean.class, true);
+    }
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
+        if (enabled && bean instanceof SimpleBrokerMessageHandler handler
+                && !(handler.getSubscriptionRegistry() instanceof IndexedSubscriptionRegistry)) {
+            handler.setSubscriptionRegistry(new IndexedSubscriptionRegistry(handler.getSubscriptionRegistry()));
+            logger.info("STOMP代理使用按目的地索引的订阅表 - Bean: {}", beanName);
+        }
+        return bean;
+    }
+}
@@ -0,0 +1,169 @@
+package com.campus.im.websocket;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageHandlingRunnable;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 按会话保序的通道线程池
+ * 能解析出会话键的帧按会话键哈希到固定的单线程通道上执行，同一会话的帧严格按到达顺序处理，不同会话在各通道间并行；
+ * 其余帧仍交给普通线程池。通道队列满时提交线程（即WebSocket读取线程）最多等待一小段时间，仍无空位则丢弃该帧，
+ * 交给溢出处理向发送者推送应用层错误，连接保持不变；不能改由提交线程执行，否则会打乱顺序，
+ * 不能无限等待，否则会卡住整个连接，也不能抛出异常，否则STOMP协议处理器会返回ERROR帧并断开连接
+ */
+public class OrderedChannelExecutor extends ThreadPoolTaskExecutor {
+
+    // 从帧中解析会话键，不需要保序的帧返回null
+    private final Function<Message<?>, Long> keyResolver;
+
+    private final int laneCount;
+
+    private final int laneQueueCapacity;
+
+    // 通道已满时提交线程最多等待的时间
+    private final long offerTimeoutMs;
+
+    // 处理等待超时仍无空位而被丢弃的帧
+    private final Consumer<Message<?>> overflowHandler;
+
+    private final AtomicLong blockedCount = new AtomicLong();
+
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    private volatile ThreadPoolExecutor[] lanes;
+
+    public OrderedChannelExecutor(Function<Message<?>, Long> keyResolver, int laneCount, int laneQueueCapacity,
+                                  long offerTimeoutMs, Consumer<Message<?>> overflowHandler) {
+        this.keyResolver = keyResolver;
+        this.laneCount = Math.max(laneCount, 1);
+        this.laneQueueCapacity = Math.max(laneQueueCapacity, 1);
+        this.offerTimeoutMs = Math.max(offerTimeoutMs, 0L);
+        this.overflowHandler = overflowHandler;
+    }
+
+    @Override
+    protected ExecutorService initializeExecutor(ThreadFactory threadFactory, RejectedExecutionHandler rejectedExecutionHandler) {
+        // 限时提交：在通道队列上等待空位，超时后丢弃并交给溢出处理
+        RejectedExecutionHandler blockingHandler = (task, lane) -> {
+            if (lane.isShutdown()) {
+                throw new RejectedExecutionException("会话通道已关闭");
+            }
+            blockedCount.incrementAndGet();
+            try {
+                if (lane.getQueue().offer(task, offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            rejectedCount.incrementAndGet();
+            if (overflowHandler != null && task instanceof MessageHandlingRunnable handlingTask) {
+                overflowHandler.accept(handlingTask.getMessage());
+            }
+        };
+
+        ThreadPoolExecutor[] created = new ThreadPoolExecutor[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            String name = getThreadNamePrefix() + "lane-" + i;
+            created[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(laneQueueCapacity), runnable -> {
+                        Thread thread = new Thread(runnable, name);
+                        thread.setDaemon(true);
+                        return thread;
+                    }, blockingHandler);
+        }
+        lanes = created;
+        return super.initializeExecutor(threadFactory, rejectedExecutionHandler);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        ThreadPoolExecutor[] current = lanes;
+        if (current != null && task instanceof MessageHandlingRunnable handlingTask) {
+            Long key = keyResolver.apply(handlingTask.getMessage());
+            if (key != null) {
+                current[lane(key, current.length)].execute(task);
+                return;
+            }
+        }
+        super.execute(task);
+    }
+
+    @Override
+    public void shutdown() {
+        ThreadPoolExecutor[] current = lanes;
+        if (current != null) {
+            for (ThreadPoolExecutor lane : current) {
+                lane.shutdown();
+            }
+        }
+        super.shutdown();
+    }
+
+    /**
+     * 所有通道中等待处理的帧数
+     *
+     * @return 等待帧数
+     */
+    public int getLaneQueueSize() {
+        ThreadPoolExecutor[] current = lanes;
+        int size = 0;
+        if (current != null) {
+            for (ThreadPoolExecutor lane : current) {
+                size += lane.getQueue().size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * 等待最多的通道中的帧数，明显高于平均值说明存在热点会话
+     *
+     * @return 等待帧数
+     */
+    public int getMaxLaneQueueSize() {
+        ThreadPoolExecutor[] current = lanes;
+        int max = 0;
+        if (current != null) {
+            for (ThreadPoolExecutor lane : current) {
+                max = Math.max(max, lane.getQueue().size());
+            }
+        }
+        return max;
+    }
+
+    /**
+     * 因通道队列已满而等待提交的次数
+     *
+     * @return 等待次数
+     */
+    public long getBlockedCount() {
+        return blockedCount.get();
+    }
+
+    /**
+     * 等待超时仍无空位而被丢弃的帧数
+     *
+     * @return 丢弃次数
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    private static int lane(long key, int laneCount) {
+        // 打散相邻的会话键，避免连续的群组ID落在相邻通道上形成规律
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) ((hash >>> 32) % laneCount);
+    }
+}
@@ -0,0 +1,76 @@
+package com.campus.im.websocket;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 慢消费者断开处理
+ * 会话的发送缓冲超过上限或单次发送超时后，框架以 {@link CloseStatus#SESSION_NOT_RELIABLE} 关闭会话；
+ * 这里在关闭时附上原因说明，便于客户端区分并延迟重连，同时统计在线会话数与断开次数
+ */
+public class SlowConsumerHandlerDecorator extends WebSocketHandlerDecorator {
+
+    private static final Logger logger = LoggerFactory.getLogger(SlowConsumerHandlerDecorator.class);
+
+    // 慢消费者断开时的关闭原因
+    public static final String SLOW_CONSUMER_REASON = "slow consumer";
+
+    private final AtomicInteger activeSessions = new AtomicInteger();
+
+    private final Counter evictedCounter;
+
+    public SlowConsumerHandlerDecorator(WebSocketHandler delegate, MeterRegistry meterRegistry) {
+        super(delegate);
+        this.evictedCounter = Counter.builder("im.websocket.sessions.evicted")
+                .description("因发送积压或超时被断开的慢消费者会话数")
+                .tag("reason", "slow_consumer")
+                .register(meterRegistry);
+        Gauge.builder("im.websocket.sessions", activeSessions, AtomicInteger::get)
+                .description("当前节点的WebSocket会话数")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        activeSessions.incrementAndGet();
+        super.afterConnectionEstablished(new EvictingSession(session));
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+        activeSessions.decrementAndGet();
+        super.afterConnectionClosed(session, closeStatus);
+    }
+
+    /**
+     * 拦截以 SESSION_NOT_RELIABLE 关闭的会话：计数、记录并补充关闭原因
+     */
+    private class EvictingSession extends WebSocketSessionDecorator {
+
+        EvictingSession(WebSocketSession session) {
+            super(session);
+        }
+
+        @Override
+        public void close(CloseStatus status) throws IOException {
+            if (status.equalsCode(CloseStatus.SESSION_NOT_RELIABLE) && isOpen()) {
+                evictedCounter.increment();
+                logger.warn("WebSocket会话发送积压或超时，断开慢消费者 - SessionId: {}, User: {}",
+                        getId(), getPrincipal() != null ? getPrincipal().getName() : "unknown");
+                status = CloseStatus.SESSION_NOT_RELIABLE.withReason(SLOW_CONSUMER_REASON);
+            }
+            super.close(status);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.campus.im.websocket;
+
+import com.campus.im.common.Result;
+import com.campus.im.common.enumeration.ResultCode;
+import com.campus.im.service.MessageDeliveryService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * STOMP发送限流拦截器
+ * 按用户、按目的地类型做令牌桶限流，使用GCRA算法：每个桶只保存一个“理论到达时间”，以CAS更新，无锁；
+ * 每个用户的全部桶放在一个定长数组中，用户表有容量上限并在空闲后过期，内存占用与在线会话数无关。
+ * 被拒绝的帧直接丢弃，并向用户的错误队列推送提示（每个用户每秒最多一条）
+ */
+@Component
+public class StompRateLimitInterceptor implements ChannelInterceptor {
+
+    private static final Logger logger = LoggerFactory.getLogger(StompRateLimitInterceptor.class);
+
+    // 目的地类型，即用户限流数组中的下标
+    private static final int TYPE_PRIVATE = 0;
+    private static final int TYPE_GROUP = 1;
+    private static final int TYPE_SIGNAL = 2;
+    private static final int TYPE_OTHER = 3;
+
+    private static final String[] TYPE_NAMES = {"private", "group", "signal", "other"};
+
+    // 数组最后一位记录上次推送限流提示的时间
+    private static final int NOTICE_SLOT = TYPE_NAMES.length;
+
+    private static final long NOTICE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static final String ERROR_DESTINATION = "/queue/errors";
+
+    // 投递服务依赖消息模板，而消息模板由WebSocket配置创建，延迟注入以避免循环依赖
+    @Autowired
+    @Lazy
+    private MessageDeliveryService messageDeliveryService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.im.rate-limit.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.im.rate-limit.max-users:200000}")
+    private long maxUsers;
+
+    @Value("${app.im.rate-limit.private.rate:10}")
+    private double privateRate;
+
+    @Value("${app.im.rate-limit.private.burst:20}")
+    private int privateBurst;
+
+    @Value("${app.im.rate-limit.group.rate:5}")
+    private double groupRate;
+
+    @Value("${app.im.rate-limit.group.burst:10}")
+    private int groupBurst;
+
+    @Value("${app.im.rate-limit.signal.rate:20}")
+    private double signalRate;
+
+    @Value("${app.im.rate-limit.signal.burst:40}")
+    private int signalBurst;
+
+    @Value("${app.im.rate-limit.other.rate:10}")
+    private double otherRate;
+
+    @Value("${app.im.rate-limit.other.burst:20}")
+    private int otherBurst;
+
+    // 每种目的地类型放行一帧所需的间隔
+    private final long[] emissionIntervals = new long[TYPE_NAMES.length];
+
+    // 每种目的地类型允许的突发量换算成的时间容差
+    private final long[] tolerances = new long[TYPE_NAMES.length];
+
+    private final Counter[] rejectedCounters = new Counter[TYPE_NAMES.length];
+
+    // 用户标识 -> 各目的地类型的理论到达时间与上次提示时间（纳秒）
+    private Cache<String, AtomicLongArray> buckets;
+
+    @PostConstruct
+    public void init() {
+        configure(TYPE_PRIVATE, privateRate, privateBurst);
+        configure(TYPE_GROUP, groupRate, groupBurst);
+        configure(TYPE_SIGNAL, signalRate, signalBurst);
+        configure(TYPE_OTHER, otherRate, otherBurst);
+
+        // 空闲超过最长的突发恢复时间后，桶已回满，可以直接丢弃
+        long idleNanos = 0;
+        for (int i = 0; i < TYPE_NAMES.length; i++) {
+            idleNanos = Math.max(idleNanos, tolerances[i] + emissionIntervals[i]);
+        }
+        buckets = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .expireAfterAccess(Math.max(idleNanos, NOTICE_INTERVAL_NANOS), TimeUnit.NANOSECONDS)
+                .build();
+
+        for (int i = 0; i < TYPE_NAMES.length; i++) {
+            rejectedCounters[i] = Counter.builder("im.websocket.rate-limit.rejected")
+                    .description("被限流丢弃的STOMP SEND帧数")
+                    .tag("type", TYPE_NAMES[i])
+                    .register(meterRegistry);
+        }
+        Gauge.builder("im.websocket.rate-limit.users", buckets, Cache::estimatedSize)
+                .description("限流表中的用户数")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        if (!enabled) {
+            return message;
+        }
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || !StompCommand.SEND.equals(accessor.getCommand()) || accessor.getUser() == null) {
+            return message;
+        }
+
+        String user = accessor.getUser().getName();
+        int type = typeOf(accessor.getDestination());
+        AtomicLongArray userBuckets = buckets.get(user, k -> newBuckets());
+        long now = System.nanoTime();
+        if (tryAcquire(userBuckets, type, now)) {
+            return message;
+        }
+
+        rejectedCounters[type].increment();
+        if (shouldNotify(userBuckets, now)) {
+            logger.warn("STOMP发送过于频繁，已限流 - User: {}, Destination: {}", user, accessor.getDestination());
+            try {
+                messageDeliveryService.sendToUser(user, ERROR_DESTINATION,
+                        messageDeliveryService.encode(Result.error(ResultCode.TOO_MANY_REQUESTS, "发送过于频繁，请稍后再试")));
+            } catch (Exception e) {
+                logger.warn("推送限流提示失败 - User: {}", user, e);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * GCRA：理论到达时间减去当前时间不超过容差即放行，并把理论到达时间推后一个间隔
+     */
+    private boolean tryAcquire(AtomicLongArray userBuckets, int type, long now) {
+        long interval = emissionIntervals[type];
+        long tolerance = tolerances[type];
+        while (true) {
+            long tat = userBuckets.get(type);
+            long next = Math.max(tat, now) + interval;
+            if (next - now > tolerance) {
+                return false;
+            }
+            if (userBuckets.compareAndSet(type, tat, next)) {
+                return true;
+            }
+        }
+    }
+
+    private boolean shouldNotify(AtomicLongArray userBuckets, long now) {
+        long last = userBuckets.get(NOTICE_SLOT);
+        return now - last >= NOTICE_INTERVAL_NANOS && userBuckets.compareAndSet(NOTICE_SLOT, last, now);
+    }
+
+    private AtomicLongArray newBuckets() {
+        AtomicLongArray array = new AtomicLongArray(TYPE_NAMES.length + 1);
+        // 以当前时间为起点，新用户的桶是满的，提示时间设为可立即提示
+        long now = System.nanoTime();
+        for (int i = 0; i < TYPE_NAMES.length; i++) {
+            array.set(i, now);
+        }
+        array.set(NOTICE_SLOT, now - NOTICE_INTERVAL_NANOS);
+        return array;
+    }
+
+    private void configure(int type, double rate, int burst) {
+        long interval = (long) (TimeUnit.SECONDS.toNanos(1) / Math.max(rate, 0.001));
+        emissionIntervals[type] = interval;
+        tolerances[type] = interval * Math.max(burst, 1);
+    }
+
+    private static int typeOf(String destination) {
+        if (destination == null) {
+            return TYPE_OTHER;
+        }
+        switch (destination) {
+            case "/app/private.message":
+                return TYPE_PRIVATE;
+            case "/app/group.message":
+                return TYPE_GROUP;
+            case "/app/user.typing":
+            case "/app/user.status":
+            case "/app/message.read":
+            case "/app/conversation.read":
+                return TYPE_SIGNAL;
+            default:
+                return TYPE_OTHER;
+        }
+    }
+}
@@ -69,6 +69,8 @@ CREATE TABLE IF NOT EXISTS `chat_group` (
   `member_count` INT NOT NULL DEFAULT 0 COMMENT '成员数量',
   `max_member_count` INT NOT NULL DEFAULT 200 COMMENT '最大成员数量',
   `status` TINYINT NOT NULL DEFAULT 0 COMMENT '状态：0-正常，1-解散',
+  `fanout_mode` TINYINT NOT NULL DEFAULT 0 COMMENT '消息扇出模式：0-写扩散，1-读扩散，2-超级群',
+  `last_seq` BIGINT NOT NULL DEFAULT 0 COMMENT '最新消息序列号（读扩散模式维护）',
   `created_at` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
   `updated_at` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
   PRIMARY KEY (`id`),
@@ -84,6 +86,7 @@ CREATE TABLE IF NOT EXISTS `group_member` (
   `role` TINYINT NOT NULL DEFAULT 0 COMMENT '角色：0-普通成员，1-管理员，2-群主',
   `mute_end_time` DATETIME DEFAULT NULL COMMENT '禁言结束时间',
   `join_time` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '加入时间',
+  `last_read_seq` BIGINT NOT NULL DEFAULT 0 COMMENT '已读到的消息序列号（读扩散模式）',
   `created_at` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
   `updated_at` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
   PRIMARY KEY (`id`),
@@ -100,6 +103,7 @@ CREATE TABLE IF NOT EXISTS `conversation` (
   `unread_count` INT NOT NULL DEFAULT 0 COMMENT '未读消息数',
   `last_message_id` BIGINT DEFAULT NULL COMMENT '最后一条消息ID',
   `last_message_time` DATETIME DEFAULT NULL COMMENT '最后一条消息时间',
+  `last_read_message_id` BIGINT NOT NULL DEFAULT 0 COMMENT '已读到的消息ID（已读水位）',
   `is_top` TINYINT NOT NULL DEFAULT 0 COMMENT '是否置顶：0-否，1-是',
   `is_muted` TINYINT NOT NULL DEFAULT 0 COMMENT '是否免打扰：0-否，1-是',
   `status` TINYINT NOT NULL DEFAULT 0 COMMENT '状态：0-正常，1-已删除',
@@ -118,6 +122,8 @@ CREATE TABLE IF NOT EXISTS `message` (
   `conversation_type` TINYINT NOT NULL COMMENT '会话类型：0-私聊，1-群聊',
   `sender_id` BIGINT NOT NULL COMMENT '发送者ID',
   `receiver_id` BIGINT NOT NULL COMMENT '接收者ID：私聊为用户ID，群聊为群组ID',
+  `conversation_key` BIGINT NOT NULL DEFAULT 0 COMMENT '会话键：私聊为(较小用户ID<<31)|较大用户ID，群聊为-群组ID',
+  `seq` BIGINT NOT NULL DEFAULT 0 COMMENT '会话内序列号，同一会话内单调递增',
   `content_type` TINYINT NOT NULL COMMENT '内容类型：0-文本，1-图片，2-语音，3-视频，4-文件，5-位置，99-系统消息',
   `content` TEXT NOT NULL COMMENT '消息内容',
   `extra` TEXT DEFAULT NULL COMMENT '附加信息，JSON格式',
@@ -127,7 +133,8 @@ CREATE TABLE IF NOT EXISTS `message` (
   `created_at` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
   `updated_at` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
   PRIMARY KEY (`id`),
-  KEY `idx_conversation` (`conversation_type`, `sender_id`, `receiver_id`),
+  KEY `idx_conversation_id` (`conversation_key`, `id`),
+  KEY `idx_conversation_seq` (`conversation_key`, `seq`),
   KEY `idx_sender_id` (`sender_id`),
   KEY `idx_receiver_id` (`receiver_id`),
   KEY `idx_send_time` (`send_time`)
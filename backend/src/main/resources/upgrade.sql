@@ -0,0 +1,56 @@
+-- 已有数据库升级脚本
+-- schema.sql 只负责新建库表；已部署的数据库按顺序执行以下语句完成升级
+
+-- 消息表：会话内序列号
+ALTER TABLE `message`
+  ADD COLUMN `seq` BIGINT NOT NULL DEFAULT 0 COMMENT '会话内序列号，同一会话内单调递增' AFTER `receiver_id`,
+  DROP INDEX `idx_conversation`,
+  DROP INDEX `idx_receiver_id`,
+  ADD KEY `idx_private_seq` (`conversation_type`, `sender_id`, `receiver_id`, `seq`),
+  ADD KEY `idx_group_seq` (`receiver_id`, `conversation_type`, `seq`);
+
+-- 按消息ID顺序回填历史消息的序列号（需要 MySQL 8.0 窗口函数）
+UPDATE `message` m
+JOIN (
+  SELECT `id`,
+         ROW_NUMBER() OVER (
+           PARTITION BY `conversation_type`,
+                        IF(`conversation_type` = 0, LEAST(`sender_id`, `receiver_id`), `receiver_id`),
+                        IF(`conversation_type` = 0, GREATEST(`sender_id`, `receiver_id`), 0)
+           ORDER BY `id`
+         ) AS `rn`
+  FROM `message`
+) t ON m.`id` = t.`id`
+SET m.`seq` = t.`rn`;
+
+-- 消息表：会话键，历史查询统一按 (conversation_key, id/seq) 范围扫描
+ALTER TABLE `message`
+  ADD COLUMN `conversation_key` BIGINT NOT NULL DEFAULT 0 COMMENT '会话键：私聊为(较小用户ID<<31)|较大用户ID，群聊为-群组ID' AFTER `receiver_id`,
+  DROP INDEX `idx_private_seq`,
+  DROP INDEX `idx_group_seq`,
+  ADD KEY `idx_conversation_id` (`conversation_key`, `id`),
+  ADD KEY `idx_conversation_seq` (`conversation_key`, `seq`),
+  ADD KEY `idx_receiver_id` (`receiver_id`);
+
+-- 回填历史消息的会话键；数据量大时可改为开启 app.im.conversation-key.backfill.enabled 由应用分批回填
+UPDATE `message`
+SET `conversation_key` = IF(`conversation_type` = 0,
+      (LEAST(`sender_id`, `receiver_id`) << 31) | GREATEST(`sender_id`, `receiver_id`),
+      -`receiver_id`)
+WHERE `conversation_key` = 0;
+
+-- 群组：读扩散模式，群只维护最新序列号，成员只维护已读序列号，未读数在读取时计算
+ALTER TABLE `chat_group`
+  ADD COLUMN `fanout_mode` TINYINT NOT NULL DEFAULT 0 COMMENT '消息扇出模式：0-写扩散，1-读扩散' AFTER `status`,
+  ADD COLUMN `last_seq` BIGINT NOT NULL DEFAULT 0 COMMENT '最新消息序列号（读扩散模式维护）' AFTER `fanout_mode`;
+
+ALTER TABLE `group_member`
+  ADD COLUMN `last_read_seq` BIGINT NOT NULL DEFAULT 0 COMMENT '已读到的消息序列号（读扩散模式）' AFTER `join_time`;
+
+-- 群组：超级群模式（读扩散且只推送群频道订阅）
+ALTER TABLE `chat_group`
+  MODIFY COLUMN `fanout_mode` TINYINT NOT NULL DEFAULT 0 COMMENT '消息扇出模式：0-写扩散，1-读扩散，2-超级群';
+
+-- 会话表：已读水位，已读回执只推进水位，不再逐条更新消息
+ALTER TABLE `conversation`
+  ADD COLUMN `last_read_message_id` BIGINT NOT NULL DEFAULT 0 COMMENT '已读到的消息ID（已读水位）' AFTER `last_message_time`;
@@ -0,0 +1,106 @@
+package com.campus.im.cache;
+
+import com.campus.im.entity.GroupMember;
+import com.campus.im.mapper.ChatGroupMapper;
+import com.campus.im.mapper.GroupMemberMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 群成员缓存测试：成员变动以写时复制生成新快照，成员ID保持升序、角色一一对应，已取出的旧快照不受影响
+ */
+class GroupMemberCacheTest {
+
+    private static final Long GROUP_ID = 1L;
+
+    private GroupMemberCache groupMemberCache;
+
+    private GroupMemberMapper groupMemberMapper;
+
+    @BeforeEach
+    void setUp() {
+        groupMemberMapper = mock(GroupMemberMapper.class);
+        // 数据库中的成员：2（群主）、4、6
+        when(groupMemberMapper.selectRolesByGroupId(GROUP_ID))
+                .thenReturn(List.of(member(2L, 2), member(4L, 0), member(6L, 0)));
+
+        groupMemberCache = new GroupMemberCache();
+        ReflectionTestUtils.setField(groupMemberCache, "groupMemberMapper", groupMemberMapper);
+        ReflectionTestUtils.setField(groupMemberCache, "chatGroupMapper", mock(ChatGroupMapper.class));
+        ReflectionTestUtils.setField(groupMemberCache, "stringRedisTemplate", mock(StringRedisTemplate.class));
+        ReflectionTestUtils.setField(groupMemberCache, "listenerContainer", mock(RedisMessageListenerContainer.class));
+        ReflectionTestUtils.setField(groupMemberCache, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(groupMemberCache, "maxGroups", 100L);
+        ReflectionTestUtils.setField(groupMemberCache, "ttlMinutes", 30L);
+        groupMemberCache.init();
+    }
+
+    @Test
+    void withMergesSortedAndOverridesRoles() {
+        Set<Long> before = groupMemberCache.getMemberIds(GROUP_ID);
+
+        // 乱序加入，其中4已存在只更新角色，5重复出现以最后一次为准
+        groupMemberCache.addMembers(GROUP_ID, List.of(member(5L, 0), member(4L, 1), member(1L, 0), member(5L, 1)));
+
+        assertEquals(List.of(1L, 2L, 4L, 5L, 6L), new ArrayList<>(groupMemberCache.getMemberIds(GROUP_ID)));
+        assertEquals(0, groupMemberCache.getRole(GROUP_ID, 1L));
+        assertEquals(2, groupMemberCache.getRole(GROUP_ID, 2L));
+        assertEquals(1, groupMemberCache.getRole(GROUP_ID, 4L));
+        assertEquals(1, groupMemberCache.getRole(GROUP_ID, 5L));
+        assertEquals(0, groupMemberCache.getRole(GROUP_ID, 6L));
+
+        // 旧快照不变
+        assertEquals(List.of(2L, 4L, 6L), new ArrayList<>(before));
+        verify(groupMemberMapper, times(1)).selectRolesByGroupId(GROUP_ID);
+    }
+
+    @Test
+    void withoutRemovesOnlyTheMember() {
+        Set<Long> before = groupMemberCache.getMemberIds(GROUP_ID);
+
+        groupMemberCache.removeMember(GROUP_ID, 4L);
+
+        assertEquals(List.of(2L, 6L), new ArrayList<>(groupMemberCache.getMemberIds(GROUP_ID)));
+        assertFalse(groupMemberCache.contains(GROUP_ID, 4L));
+        assertEquals(GroupMemberCache.NOT_MEMBER, groupMemberCache.getRole(GROUP_ID, 4L));
+        assertEquals(2, groupMemberCache.getRole(GROUP_ID, 2L));
+        assertEquals(0, groupMemberCache.getRole(GROUP_ID, 6L));
+        assertTrue(before.contains(4L));
+
+        // 移除不存在的成员时沿用原快照
+        Set<Long> current = groupMemberCache.getMemberIds(GROUP_ID);
+        groupMemberCache.removeMember(GROUP_ID, 3L);
+        assertSame(current, groupMemberCache.getMemberIds(GROUP_ID));
+
+        // 移除首尾成员
+        groupMemberCache.removeMember(GROUP_ID, 2L);
+        groupMemberCache.removeMember(GROUP_ID, 6L);
+        assertTrue(groupMemberCache.getMemberIds(GROUP_ID).isEmpty());
+        verify(groupMemberMapper, times(1)).selectRolesByGroupId(GROUP_ID);
+    }
+
+    private static GroupMember member(Long userId, int role) {
+        GroupMember member = new GroupMember();
+        member.setGroupId(GROUP_ID);
+        member.setUserId(userId);
+        member.setRole(role);
+        return member;
+    }
+}
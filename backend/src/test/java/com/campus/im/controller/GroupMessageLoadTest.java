@@ -0,0 +1,214 @@
+package com.campus.im.controller;
+
+import com.campus.im.cache.GroupMemberCache;
+import com.campus.im.cache.RecentMessageCache;
+import com.campus.im.common.constant.GroupConstant;
+import com.campus.im.common.constant.JwtConstant;
+import com.campus.im.entity.Conversation;
+import com.campus.im.entity.User;
+import com.campus.im.mapper.MessageMapper;
+import com.campus.im.service.ChatGroupService;
+import com.campus.im.service.ConversationService;
+import com.campus.im.service.GroupConversationUpdateService;
+import com.campus.im.service.IdGeneratorService;
+import com.campus.im.service.InboxService;
+import com.campus.im.service.MessageDeliveryService;
+import com.campus.im.service.MessageSequenceService;
+import com.campus.im.service.MessageWriteBehindService;
+import com.campus.im.service.UnreadCounterService;
+import com.campus.im.service.UserService;
+import com.campus.im.service.impl.GroupFanoutServiceImpl;
+import com.campus.im.service.impl.MessageServiceImpl;
+import com.campus.im.websocket.EncodedPayload;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.when;
+
+/**
+ * 超级群发送负载测试：模拟1万成员的群组连续发送消息，从WebSocket入口经消息服务到群扇出服务，
+ * 统计每条消息对各依赖的调用次数与投递的接收者数。超级群每条消息的工作量与成员数无关，写扩散群组随成员数线性增长
+ */
+class GroupMessageLoadTest {
+
+    private static final long GROUP_ID = 1L;
+
+    private static final int MESSAGES = 200;
+
+    @Test
+    void supergroupWorkPerMessageDoesNotDependOnMemberCount() {
+        Workload small = send(GroupConstant.FANOUT_MODE_SUPER, 100);
+        Workload large = send(GroupConstant.FANOUT_MODE_SUPER, 10_000);
+
+        assertEquals(small.callsPerMessage(), large.callsPerMessage());
+        // 只有群频道的一次广播，不解析成员、不投递成员队列
+        assertEquals(0, large.recipients);
+        assertEquals(0, large.memberLookups);
+        assertEquals(MESSAGES, large.broadcasts);
+    }
+
+    @Test
+    void writeFanoutWorkGrowsWithMemberCount() {
+        Workload large = send(GroupConstant.FANOUT_MODE_WRITE, 10_000);
+
+        assertEquals((long) MESSAGES * 10_000, large.recipients);
+        assertEquals(MESSAGES, large.broadcasts);
+    }
+
+    private Workload send(int fanoutMode, int memberCount) {
+        Set<Long> memberIds = new HashSet<>();
+        for (long id = 1; id <= memberCount; id++) {
+            memberIds.add(id);
+        }
+
+        User sender = user(1L);
+        UserService userService = mock(UserService.class);
+        when(userService.getUserByPhone(anyString())).thenReturn(sender);
+        when(userService.getUserByIds(anyList())).thenAnswer(invocation -> {
+            List<Long> ids = invocation.getArgument(0);
+            List<User> users = new ArrayList<>(ids.size());
+            for (Long id : ids) {
+                users.add(user(id));
+            }
+            return users;
+        });
+
+        ChatGroupService chatGroupService = mock(ChatGroupService.class);
+        when(chatGroupService.isUserInGroup(anyLong(), anyLong())).thenReturn(true);
+        when(chatGroupService.isMemberMuted(anyLong(), anyLong())).thenReturn(false);
+        when(chatGroupService.getFanoutMode(anyLong())).thenReturn(fanoutMode);
+
+        GroupMemberCache groupMemberCache = mock(GroupMemberCache.class);
+        when(groupMemberCache.getMemberIds(GROUP_ID)).thenReturn(memberIds);
+
+        MessageDeliveryService messageDeliveryService = mock(MessageDeliveryService.class);
+        EncodedPayload encoded = new EncodedPayload(new byte[16]);
+        when(messageDeliveryService.encode(any())).thenReturn(encoded);
+        AtomicLong recipients = new AtomicLong();
+        when(messageDeliveryService.sendToUsers(anyCollection(), anyString(), any(EncodedPayload.class)))
+                .thenAnswer(invocation -> {
+                    int size = invocation.getArgument(0, Collection.class).size();
+                    recipients.addAndGet(size);
+                    return size;
+                });
+
+        ConversationService conversationService = mock(ConversationService.class);
+        Conversation conversation = new Conversation();
+        conversation.setId(1L);
+        when(conversationService.createOrGetGroupConversation(anyLong(), anyLong())).thenReturn(conversation);
+
+        MessageMapper messageMapper = mock(MessageMapper.class);
+        when(messageMapper.insert(any())).thenReturn(1);
+        MessageSequenceService messageSequenceService = mock(MessageSequenceService.class);
+        AtomicLong seq = new AtomicLong();
+        when(messageSequenceService.nextGroupSeq(GROUP_ID)).thenAnswer(invocation -> seq.incrementAndGet());
+
+        GroupFanoutServiceImpl groupFanoutService = new GroupFanoutServiceImpl();
+        ReflectionTestUtils.setField(groupFanoutService, "groupMemberCache", groupMemberCache);
+        ReflectionTestUtils.setField(groupFanoutService, "userService", userService);
+        ReflectionTestUtils.setField(groupFanoutService, "messageDeliveryService", messageDeliveryService);
+        ReflectionTestUtils.setField(groupFanoutService, "meterRegistry", new SimpleMeterRegistry());
+        groupFanoutService.init();
+
+        List<Object> mocks = List.of(userService, chatGroupService, groupMemberCache, messageDeliveryService,
+                conversationService, messageMapper, messageSequenceService,
+                mock(IdGeneratorService.class), mock(MessageWriteBehindService.class), mock(RecentMessageCache.class),
+                mock(UnreadCounterService.class), mock(GroupConversationUpdateService.class), mock(InboxService.class));
+
+        MessageServiceImpl messageService = new MessageServiceImpl();
+        for (Object dependency : mocks) {
+            inject(messageService, dependency);
+        }
+        ReflectionTestUtils.setField(messageService, "groupFanoutService", groupFanoutService);
+
+        WebSocketController controller = new WebSocketController();
+        ReflectionTestUtils.setField(controller, "messageService", messageService);
+        ReflectionTestUtils.setField(controller, "userService", userService);
+        ReflectionTestUtils.setField(controller, "chatGroupService", chatGroupService);
+        ReflectionTestUtils.setField(controller, "conversationService", conversationService);
+        ReflectionTestUtils.setField(controller, "groupFanoutService", groupFanoutService);
+        ReflectionTestUtils.setField(controller, "messageDeliveryService", messageDeliveryService);
+
+        SimpMessageHeaderAccessor headerAccessor = SimpMessageHeaderAccessor.create();
+        Map<String, Object> sessionAttributes = new HashMap<>();
+        sessionAttributes.put(JwtConstant.PHONE_KEY, sender.getPhone());
+        headerAccessor.setSessionAttributes(sessionAttributes);
+
+        for (int i = 0; i < MESSAGES; i++) {
+            Map<String, Object> payload = new HashMap<>();
+            payload.put("groupId", GROUP_ID);
+            payload.put("contentType", 1);
+            payload.put("content", "hello " + i);
+            controller.handleGroupMessage(payload, headerAccessor);
+        }
+
+        Workload workload = new Workload();
+        for (Object dependency : mocks) {
+            workload.calls += mockingDetails(dependency).getInvocations().size();
+        }
+        workload.recipients = recipients.get();
+        workload.memberLookups = mockingDetails(groupMemberCache).getInvocations().size();
+        workload.broadcasts = mockingDetails(messageDeliveryService).getInvocations().stream()
+                .filter(invocation -> invocation.getMethod().getName().equals("broadcast"))
+                .count();
+        assertEquals(MESSAGES, seq.get());
+        return workload;
+    }
+
+    /**
+     * 按类型注入消息服务中的同类依赖字段
+     */
+    private static void inject(Object target, Object dependency) {
+        for (Field field : target.getClass().getDeclaredFields()) {
+            if (field.getType().isInstance(dependency)) {
+                ReflectionTestUtils.setField(target, field.getName(), dependency);
+            }
+        }
+    }
+
+    private static User user(Long id) {
+        User user = new User();
+        user.setId(id);
+        user.setPhone("138" + String.format("%08d", id));
+        return user;
+    }
+
+    private static class Workload {
+
+        // 对各依赖的调用总数
+        private long calls;
+
+        // 成员队列投递的接收者总数
+        private long recipients;
+
+        // 读取群成员缓存的次数
+        private long memberLookups;
+
+        // 群频道广播次数
+        private long broadcasts;
+
+        long callsPerMessage() {
+            return calls / MESSAGES;
+        }
+    }
+}
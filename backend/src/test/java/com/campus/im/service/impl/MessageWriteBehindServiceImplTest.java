@@ -0,0 +1,123 @@
+package com.campus.im.service.impl;
+
+import com.campus.im.entity.Message;
+import com.campus.im.mapper.MessageMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 消息异步落库测试：flush返回时已提交的消息全部写入，写入失败的消息保留并在之后重试
+ */
+class MessageWriteBehindServiceImplTest {
+
+    private MessageWriteBehindServiceImpl writeBehindService;
+
+    private MessageMapper messageMapper;
+
+    // 数据库中已写入的消息ID
+    private final Set<Long> written = ConcurrentHashMap.newKeySet();
+
+    // 写入时抛出异常的消息ID
+    private final Set<Long> broken = ConcurrentHashMap.newKeySet();
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        messageMapper = mock(MessageMapper.class);
+        when(messageMapper.batchInsert(anyList())).thenAnswer(invocation -> {
+            List<Message> messages = invocation.getArgument(0);
+            for (Message message : messages) {
+                if (broken.contains(message.getId())) {
+                    throw new IllegalStateException("写入失败");
+                }
+            }
+            for (Message message : messages) {
+                written.add(message.getId());
+            }
+            return messages.size();
+        });
+        meterRegistry = new SimpleMeterRegistry();
+        writeBehindService = new MessageWriteBehindServiceImpl();
+        ReflectionTestUtils.setField(writeBehindService, "messageMapper", messageMapper);
+        ReflectionTestUtils.setField(writeBehindService, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(writeBehindService, "enabled", true);
+        ReflectionTestUtils.setField(writeBehindService, "batchSize", 50);
+        ReflectionTestUtils.setField(writeBehindService, "flushIntervalMs", 5L);
+        ReflectionTestUtils.setField(writeBehindService, "queueCapacity", 1000);
+        ReflectionTestUtils.setField(writeBehindService, "offerTimeoutMs", 20L);
+        ReflectionTestUtils.setField(writeBehindService, "retryInitialMs", 60_000L);
+        ReflectionTestUtils.setField(writeBehindService, "retryMaxMs", 60_000L);
+        writeBehindService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        broken.clear();
+        writeBehindService.shutdown();
+    }
+
+    @Test
+    void flushReturnsOnlyAfterSubmittedMessagesAreWritten() {
+        for (long id = 1; id <= 2000; id++) {
+            assertTrue(writeBehindService.submit(message(id, 1L, id)));
+            // 写线程并发攒批时，flush返回后消息必须已经落库
+            if (id % 7 == 0) {
+                writeBehindService.flush();
+                assertTrue(written.contains(id));
+                assertNull(writeBehindService.getPending(id));
+            }
+        }
+        writeBehindService.flush();
+        assertEquals(2000, written.size());
+    }
+
+    @Test
+    void failedMessagesStayPendingAndAreRetried() {
+        broken.add(2L);
+        List<Message> messages = new ArrayList<>();
+        for (long id = 1; id <= 3; id++) {
+            messages.add(message(id, 9L, id));
+            writeBehindService.submit(messages.get(messages.size() - 1));
+        }
+        writeBehindService.flush();
+
+        // 同批的其他消息正常写入，失败的消息仍可查询并占用序列号
+        assertEquals(Set.of(1L, 3L), written);
+        assertNotNull(writeBehindService.getPending(2L));
+        assertEquals(2L, writeBehindService.getMaxPendingSeq(9L));
+        assertEquals(0L, writeBehindService.getMaxPendingSeq(10L));
+        assertEquals(1.0, meterRegistry.get("im.message.write-behind.retry.size").gauge().value());
+
+        // 故障恢复后flush立即重试
+        broken.clear();
+        writeBehindService.flush();
+        assertTrue(written.contains(2L));
+        assertNull(writeBehindService.getPending(2L));
+        assertEquals(0.0, meterRegistry.get("im.message.write-behind.retry.size").gauge().value());
+    }
+
+    private static Message message(long id, long conversationKey, long seq) {
+        Message message = new Message();
+        message.setId(id);
+        message.setConversationKey(conversationKey);
+        message.setSeq(seq);
+        return message;
+    }
+}
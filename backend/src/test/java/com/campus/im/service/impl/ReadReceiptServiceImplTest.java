@@ -0,0 +1,137 @@
+package com.campus.im.service.impl;
+
+import com.campus.im.common.constant.MessageConstant;
+import com.campus.im.entity.Conversation;
+import com.campus.im.entity.User;
+import com.campus.im.mapper.ConversationMapper;
+import com.campus.im.service.MessageDeliveryService;
+import com.campus.im.service.MessageService;
+import com.campus.im.service.UnreadCounterService;
+import com.campus.im.service.UserService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 已读回执合并测试：窗口内同一会话的多次上报合并为最大消息ID，每个会话只落库并推送一次
+ */
+class ReadReceiptServiceImplTest {
+
+    private static final int PRIVATE = MessageConstant.CONVERSATION_TYPE_PRIVATE;
+
+    private ReadReceiptServiceImpl readReceiptService;
+
+    private ConversationMapper conversationMapper;
+
+    private UnreadCounterService unreadCounterService;
+
+    private MessageDeliveryService messageDeliveryService;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        conversationMapper = mock(ConversationMapper.class);
+        when(conversationMapper.updateReadWatermark(anyLong(), anyInt(), anyLong(), anyLong())).thenReturn(1);
+        UserService userService = mock(UserService.class);
+        when(userService.getUserById(anyLong())).thenAnswer(invocation -> {
+            User user = new User();
+            user.setId(invocation.getArgument(0));
+            user.setPhone("phone-" + invocation.getArgument(0));
+            return user;
+        });
+        unreadCounterService = mock(UnreadCounterService.class);
+        messageDeliveryService = mock(MessageDeliveryService.class);
+        meterRegistry = new SimpleMeterRegistry();
+
+        readReceiptService = new ReadReceiptServiceImpl();
+        ReflectionTestUtils.setField(readReceiptService, "conversationMapper", conversationMapper);
+        ReflectionTestUtils.setField(readReceiptService, "messageService", mock(MessageService.class));
+        ReflectionTestUtils.setField(readReceiptService, "userService", userService);
+        ReflectionTestUtils.setField(readReceiptService, "unreadCounterService", unreadCounterService);
+        ReflectionTestUtils.setField(readReceiptService, "messageDeliveryService", messageDeliveryService);
+        ReflectionTestUtils.setField(readReceiptService, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(readReceiptService, "windowMs", 60_000L);
+        readReceiptService.init();
+    }
+
+    @Test
+    void reportsWithinWindowMergeToHighestMessageId() {
+        conversation(1L, 2L, null, 9L);
+        conversation(1L, 3L, null, 100L);
+
+        // 乱序上报，窗口到期前不落库
+        readReceiptService.markReadUpTo(1L, PRIVATE, 2L, 5L);
+        readReceiptService.markReadUpTo(1L, PRIVATE, 2L, 9L);
+        readReceiptService.markReadUpTo(1L, PRIVATE, 2L, 7L);
+        readReceiptService.markReadUpTo(1L, PRIVATE, 3L, 4L);
+        readReceiptService.flushExpired();
+        verify(conversationMapper, never()).updateReadWatermark(anyLong(), anyInt(), anyLong(), anyLong());
+
+        ReflectionTestUtils.setField(readReceiptService, "windowMs", 0L);
+        readReceiptService.flushExpired();
+
+        verify(conversationMapper, times(1)).updateReadWatermark(1L, PRIVATE, 2L, 9L);
+        verify(conversationMapper, times(1)).updateReadWatermark(1L, PRIVATE, 3L, 4L);
+        // 水位覆盖最后一条消息时才清零未读
+        verify(unreadCounterService).clear(1L, PRIVATE, 2L);
+        verify(unreadCounterService, never()).clear(1L, PRIVATE, 3L);
+
+        ArgumentCaptor<Object> receipts = ArgumentCaptor.forClass(Object.class);
+        verify(messageDeliveryService, times(2)).encode(receipts.capture());
+        verify(messageDeliveryService).sendToUser(eq("phone-2"), eq("/queue/read-receipts"), any());
+        verify(messageDeliveryService).sendToUser(eq("phone-3"), eq("/queue/read-receipts"), any());
+        Set<Object> watermarks = new HashSet<>();
+        for (Object receipt : receipts.getAllValues()) {
+            watermarks.add(((Map<?, ?>) receipt).get("lastReadMessageId"));
+        }
+        assertEquals(Set.of(9L, 4L), watermarks);
+        assertEquals(4.0, meterRegistry.get("im.read-receipt.received").counter().count());
+        assertEquals(2.0, meterRegistry.get("im.read-receipt.flushed").counter().count());
+
+        // 已落库后不再重复处理
+        readReceiptService.flushExpired();
+        verify(conversationMapper, times(2)).updateReadWatermark(anyLong(), anyInt(), anyLong(), anyLong());
+    }
+
+    @Test
+    void watermarkNeverMovesBackwards() {
+        conversation(1L, 2L, 20L, 30L);
+        ReflectionTestUtils.setField(readReceiptService, "windowMs", 0L);
+
+        readReceiptService.markReadUpTo(1L, PRIVATE, 2L, 15L);
+        readReceiptService.markReadUpTo(1L, PRIVATE, 2L, 20L);
+        readReceiptService.flushExpired();
+
+        verify(conversationMapper, never()).updateReadWatermark(anyLong(), anyInt(), anyLong(), anyLong());
+        verify(messageDeliveryService, never()).sendToUser(any(), any(), any());
+        assertFalse(readReceiptService.markReadUpTo(1L, 9, 2L, 25L));
+    }
+
+    private void conversation(Long readerId, Long targetId, Long lastReadMessageId, Long lastMessageId) {
+        Conversation conversation = new Conversation();
+        conversation.setUserId(readerId);
+        conversation.setTargetId(targetId);
+        conversation.setLastReadMessageId(lastReadMessageId);
+        conversation.setLastMessageId(lastMessageId);
+        when(conversationMapper.selectByUserIdAndTarget(readerId, PRIVATE, targetId)).thenReturn(conversation);
+    }
+}
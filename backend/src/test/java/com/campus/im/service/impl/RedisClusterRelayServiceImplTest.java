@@ -0,0 +1,168 @@
+package com.campus.im.service.impl;
+
+import com.campus.im.websocket.EncodedPayload;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 跨节点转发测试：会话计数在0与非0之间变化时由登记任务串行写入Redis并通知各节点；
+ * 用户所在节点缓存命中时不再查询Redis，收到登记变化通知后重新查询
+ */
+class RedisClusterRelayServiceImplTest {
+
+    private static final String LOCATION_CHANNEL = "ws:user:nodes:changed";
+
+    private RedisClusterRelayServiceImpl relayService;
+
+    private StringRedisTemplate stringRedisTemplate;
+
+    private SetOperations<String, String> setOperations;
+
+    // 模拟的Redis用户所在节点集合
+    private final Map<String, Set<String>> userNodes = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        stringRedisTemplate = mock(StringRedisTemplate.class);
+        setOperations = mock(SetOperations.class);
+        when(stringRedisTemplate.opsForValue()).thenReturn(mock(ValueOperations.class));
+        when(stringRedisTemplate.opsForSet()).thenReturn(setOperations);
+
+        // 流水线中的SMEMBERS按调用顺序返回结果，其余命令只记录
+        List<Object> pipelineResults = new ArrayList<>();
+        RedisOperations<String, String> operations = mock(RedisOperations.class);
+        when(operations.opsForSet()).thenReturn(setOperations);
+        when(setOperations.members(anyString())).thenAnswer(invocation -> {
+            pipelineResults.add(userNodes.getOrDefault(invocation.getArgument(0), Set.of()));
+            return null;
+        });
+        when(stringRedisTemplate.executePipelined(any(SessionCallback.class))).thenAnswer(invocation -> {
+            synchronized (pipelineResults) {
+                pipelineResults.clear();
+                invocation.getArgument(0, SessionCallback.class).execute(operations);
+                return new ArrayList<>(pipelineResults);
+            }
+        });
+
+        relayService = new RedisClusterRelayServiceImpl();
+        ReflectionTestUtils.setField(relayService, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(relayService, "listenerContainer", mock(RedisMessageListenerContainer.class));
+        ReflectionTestUtils.setField(relayService, "messagingTemplate", mock(SimpMessagingTemplate.class));
+        ReflectionTestUtils.setField(relayService, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(relayService, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(relayService, "configuredNodeId", "node-a");
+        ReflectionTestUtils.setField(relayService, "heartbeatIntervalMs", 10_000L);
+        ReflectionTestUtils.setField(relayService, "flushThreads", 1);
+        ReflectionTestUtils.setField(relayService, "maxBatch", 256);
+        ReflectionTestUtils.setField(relayService, "locationTtlMs", 60_000L);
+        ReflectionTestUtils.setField(relayService, "locationMaxUsers", 1000L);
+        relayService.init();
+        ReflectionTestUtils.setField(relayService, "liveNodes", Set.of("node-a", "node-b"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        relayService.shutdown();
+    }
+
+    @Test
+    void registrationFollowsSessionCountTransitions() {
+        relayService.onSessionConnected(connected("s1", "alice"));
+        verify(setOperations, timeout(1000)).add("ws:user:nodes:alice", "node-a");
+        verify(stringRedisTemplate, timeout(1000)).convertAndSend(LOCATION_CHANNEL, "alice");
+
+        // 同一用户的第二个会话、重复的断开事件不改变登记
+        relayService.onSessionConnected(connected("s2", "alice"));
+        relayService.onSessionDisconnect(disconnected("s1", "alice"));
+        relayService.onSessionDisconnect(disconnected("s1", "alice"));
+        relayService.onSessionDisconnect(disconnected("s2", "alice"));
+
+        InOrder order = inOrder(setOperations);
+        order.verify(setOperations).add("ws:user:nodes:alice", "node-a");
+        order.verify(setOperations, timeout(1000)).remove("ws:user:nodes:alice", "node-a");
+        verify(setOperations, times(1)).add("ws:user:nodes:alice", "node-a");
+        verify(stringRedisTemplate, timeout(1000).times(2)).convertAndSend(LOCATION_CHANNEL, "alice");
+    }
+
+    @Test
+    void cachedLocationsSkipRedisUntilInvalidated() {
+        userNodes.put("ws:user:nodes:bob", Set.of("node-b"));
+        userNodes.put("ws:user:nodes:carol", Set.of("node-gone"));
+        EncodedPayload payload = new EncodedPayload("{}".getBytes(StandardCharsets.UTF_8));
+        List<String> users = List.of("bob", "carol", "dave");
+
+        assertEquals(1, relayService.relayToUsers(users, "/queue/messages", payload));
+        assertEquals(1, relayService.relayToUsers(users, "/queue/messages", payload));
+        verify(setOperations, times(1)).members("ws:user:nodes:bob");
+        verify(setOperations, times(1)).members("ws:user:nodes:dave");
+        // 已下线节点的记录被清理，对应用户下次重新查询
+        verify(setOperations, times(2)).members("ws:user:nodes:carol");
+
+        // 其他节点登记了bob、dave后，清除缓存重新查询
+        userNodes.put("ws:user:nodes:dave", Set.of("node-b"));
+        relayService.onMessage(new DefaultMessage(LOCATION_CHANNEL.getBytes(StandardCharsets.UTF_8),
+                "bob,dave".getBytes(StandardCharsets.UTF_8)), null);
+        assertEquals(2, relayService.relayToUsers(users, "/queue/messages", payload));
+        verify(setOperations, times(2)).members("ws:user:nodes:bob");
+        verify(setOperations, times(2)).members("ws:user:nodes:dave");
+        verify(stringRedisTemplate, never()).convertAndSend(LOCATION_CHANNEL, "bob");
+    }
+
+    private static SessionConnectedEvent connected(String sessionId, String user) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECTED);
+        accessor.setSessionId(sessionId);
+        return new SessionConnectedEvent(new Object(),
+                MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()), principal(user));
+    }
+
+    private static SessionDisconnectEvent disconnected(String sessionId, String user) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.DISCONNECT);
+        accessor.setSessionId(sessionId);
+        return new SessionDisconnectEvent(new Object(),
+                MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()), sessionId,
+                CloseStatus.NORMAL, principal(user));
+    }
+
+    private static Principal principal(String name) {
+        return () -> name;
+    }
+}
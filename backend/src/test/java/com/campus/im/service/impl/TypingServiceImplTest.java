@@ -0,0 +1,129 @@
+package com.campus.im.service.impl;
+
+import com.campus.im.service.MessageDeliveryService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * 输入状态聚合测试：大量输入事件在推送前合并，推送帧数与事件数无关
+ */
+class TypingServiceImplTest {
+
+    private static final int TYPERS = 500;
+
+    private TypingServiceImpl typingService;
+
+    private MessageDeliveryService messageDeliveryService;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        messageDeliveryService = mock(MessageDeliveryService.class);
+        meterRegistry = new SimpleMeterRegistry();
+        typingService = new TypingServiceImpl();
+        ReflectionTestUtils.setField(typingService, "messageDeliveryService", messageDeliveryService);
+        ReflectionTestUtils.setField(typingService, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(typingService, "windowMs", 60_000L);
+        ReflectionTestUtils.setField(typingService, "idleMs", 60_000L);
+        ReflectionTestUtils.setField(typingService, "groupIntervalMs", 60_000L);
+        typingService.init();
+    }
+
+    @Test
+    void groupTypingIsCoalescedIntoOneFramePerGroup() {
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < TYPERS; i++) {
+                typingService.onGroupTyping("138" + i, 1L, true);
+            }
+        }
+        for (int i = 0; i < 10; i++) {
+            typingService.onGroupTyping("139" + i, 2L, true);
+        }
+
+        typingService.flush();
+
+        ArgumentCaptor<Object> payloads = ArgumentCaptor.forClass(Object.class);
+        verify(messageDeliveryService, times(2)).encode(payloads.capture());
+        verify(messageDeliveryService).broadcast(eq("/topic/group.1.typing"), any());
+        verify(messageDeliveryService).broadcast(eq("/topic/group.2.typing"), any());
+        for (Object payload : payloads.getAllValues()) {
+            Map<?, ?> frame = (Map<?, ?>) payload;
+            int expected = Long.valueOf(1L).equals(frame.get("groupId")) ? TYPERS : 10;
+            assertEquals(expected, ((List<?>) frame.get("typingPhones")).size());
+        }
+        assertEquals(3 * TYPERS + 10, count("im.typing.received", "group"));
+        assertEquals(2, count("im.typing.sent", "group"));
+    }
+
+    @Test
+    void groupChangesWithinIntervalWaitForNextFrame() {
+        typingService.onGroupTyping("13800000001", 1L, true);
+        typingService.flush();
+        clearInvocations(messageDeliveryService);
+
+        // 推送间隔内的变化只标记，不推送
+        typingService.onGroupTyping("13800000002", 1L, true);
+        typingService.onGroupTyping("13800000001", 1L, false);
+        typingService.flush();
+        verify(messageDeliveryService, never()).broadcast(anyString(), any());
+
+        // 间隔到期后合并为一帧
+        ReflectionTestUtils.setField(typingService, "groupIntervalMs", 0L);
+        typingService.flush();
+        ArgumentCaptor<Object> payload = ArgumentCaptor.forClass(Object.class);
+        verify(messageDeliveryService).encode(payload.capture());
+        verify(messageDeliveryService, times(1)).broadcast(eq("/topic/group.1.typing"), any());
+        assertEquals(List.of("13800000002"), ((Map<?, ?>) payload.getValue()).get("typingPhones"));
+
+        // 没有变化时不再推送
+        clearInvocations(messageDeliveryService);
+        typingService.flush();
+        verify(messageDeliveryService, never()).broadcast(anyString(), any());
+    }
+
+    @Test
+    void privateTogglesWithinWindowAreDebounced() {
+        typingService.onPrivateTyping("13800000001", "13800000002", true);
+        for (int i = 0; i < 100; i++) {
+            typingService.onPrivateTyping("13800000001", "13800000002", i % 2 == 1);
+        }
+        typingService.flush();
+
+        // 首个状态立即推送，窗口内的来回切换都不推送
+        verify(messageDeliveryService, times(1)).sendToUser(eq("13800000002"), eq("/queue/typing"), any());
+
+        // 窗口到期后只推送最后的状态
+        ReflectionTestUtils.setField(typingService, "windowMs", 0L);
+        typingService.onPrivateTyping("13800000001", "13800000002", false);
+        typingService.flush();
+        ArgumentCaptor<Object> payloads = ArgumentCaptor.forClass(Object.class);
+        verify(messageDeliveryService, times(2)).encode(payloads.capture());
+        assertTrue((Boolean) ((Map<?, ?>) payloads.getAllValues().get(0)).get("isTyping"));
+        assertFalse((Boolean) ((Map<?, ?>) payloads.getAllValues().get(1)).get("isTyping"));
+        assertEquals(102, count("im.typing.received", "private"));
+        assertEquals(2, count("im.typing.sent", "private"));
+    }
+
+    private long count(String name, String scope) {
+        return (long) meterRegistry.get(name).tag("scope", scope).counter().count();
+    }
+}
@@ -0,0 +1,56 @@
+package com.campus.im.websocket;
+
+import com.campus.im.util.ConversationKeyUtil;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * 会话键解析测试：私聊双方发出的帧得到相同的会话键，群聊帧得到群会话键
+ */
+class ConversationKeyResolverTest {
+
+    private final ConversationKeyResolver resolver = new ConversationKeyResolver();
+
+    @Test
+    void privateKeyIsTheSameInBothDirections() {
+        Long aToB = resolver.apply(send(1L, "/app/private.message", "{\"receiverId\":2,\"content\":\"hi\"}"));
+        Long bToA = resolver.apply(send(2L, "/app/private.message", "{\"content\":\"hi\",\"receiverId\":\"1\"}"));
+
+        assertEquals(ConversationKeyUtil.privateKey(1L, 2L), aToB);
+        assertEquals(aToB, bToA);
+    }
+
+    @Test
+    void groupAndUnresolvableFrames() {
+        assertEquals(ConversationKeyUtil.groupKey(7L),
+                resolver.apply(send(1L, "/app/group.message", "{\"groupId\":7,\"content\":{\"receiverId\":3}}")));
+
+        // 会话属性中没有发送者ID、字段缺失或格式错误时不参与保序
+        assertNull(resolver.apply(send(null, "/app/private.message", "{\"receiverId\":2}")));
+        assertNull(resolver.apply(send(1L, "/app/private.message", "{\"content\":\"hi\"}")));
+        assertNull(resolver.apply(send(1L, "/app/private.message", "{\"receiverId\":\"abc\"}")));
+        assertNull(resolver.apply(send(1L, "/app/user.typing", "{\"receiverId\":2}")));
+    }
+
+    private static Message<byte[]> send(Long senderId, String destination, String body) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SEND);
+        accessor.setDestination(destination);
+        Map<String, Object> sessionAttributes = new HashMap<>();
+        if (senderId != null) {
+            sessionAttributes.put(ConversationKeyResolver.USER_ID_ATTRIBUTE, senderId);
+        }
+        accessor.setSessionAttributes(sessionAttributes);
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(body.getBytes(StandardCharsets.UTF_8), accessor.getMessageHeaders());
+    }
+}
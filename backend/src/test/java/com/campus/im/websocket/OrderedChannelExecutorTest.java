@@ -0,0 +1,141 @@
+package com.campus.im.websocket;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHandlingRunnable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 会话通道线程池测试：同一会话的帧在同一线程上按到达顺序执行，不参与保序的帧交给普通线程池；
+ * 通道已满时丢弃帧并交给溢出处理，不向STOMP协议处理器抛出异常
+ */
+class OrderedChannelExecutorTest {
+
+    private OrderedChannelExecutor executor;
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void framesOfOneConversationRunInArrivalOrder() throws Exception {
+        int conversations = 50;
+        int framesPerConversation = 200;
+        executor = new OrderedChannelExecutor(message -> (Long) message.getHeaders().get("key"), 4, 100_000, 1000L, null);
+        executor.setCorePoolSize(4);
+        executor.setMaxPoolSize(4);
+        executor.setThreadNamePrefix("test-");
+        executor.initialize();
+
+        Map<Long, List<Integer>> executed = new ConcurrentHashMap<>();
+        Map<Long, String> threads = new ConcurrentHashMap<>();
+        List<Long> conflicts = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(conversations * framesPerConversation);
+        // 各会话的帧交错到达
+        for (int frame = 0; frame < framesPerConversation; frame++) {
+            for (long key = 1; key <= conversations; key++) {
+                long conversation = key;
+                int sequence = frame;
+                executor.execute(task(conversation, () -> {
+                    executed.computeIfAbsent(conversation, k -> new ArrayList<>()).add(sequence);
+                    String previous = threads.putIfAbsent(conversation, Thread.currentThread().getName());
+                    if (previous != null && !previous.equals(Thread.currentThread().getName())) {
+                        conflicts.add(conversation);
+                    }
+                    done.countDown();
+                }));
+            }
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        List<Integer> expected = new ArrayList<>();
+        for (int frame = 0; frame < framesPerConversation; frame++) {
+            expected.add(frame);
+        }
+        for (long key = 1; key <= conversations; key++) {
+            assertEquals(expected, executed.get(key), "会话" + key + "的帧乱序");
+            assertTrue(threads.get(key).startsWith("test-lane-"));
+        }
+        assertTrue(conflicts.isEmpty());
+
+        // 解析不出会话键的帧交给普通线程池
+        CountDownLatch unordered = new CountDownLatch(1);
+        List<String> unorderedThread = new CopyOnWriteArrayList<>();
+        executor.execute(task(null, () -> {
+            unorderedThread.add(Thread.currentThread().getName());
+            unordered.countDown();
+        }));
+        assertTrue(unordered.await(5, TimeUnit.SECONDS));
+        assertFalse(unorderedThread.get(0).contains("lane-"));
+    }
+
+    @Test
+    void fullLaneDropsFrameAndNotifiesInsteadOfThrowing() throws Exception {
+        List<Message<?>> overflowed = new CopyOnWriteArrayList<>();
+        executor = new OrderedChannelExecutor(message -> 1L, 1, 1, 0L, overflowed::add);
+        executor.initialize();
+
+        // 第一帧占住通道线程，第二帧占满队列
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        executor.execute(task(1L, () -> {
+            started.countDown();
+            await(release);
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        executor.execute(task(1L, () -> { }));
+
+        MessageHandlingRunnable dropped = task(1L, () -> { });
+        assertDoesNotThrow(() -> executor.execute(dropped));
+
+        release.countDown();
+        assertEquals(List.of(dropped.getMessage()), overflowed);
+        assertEquals(1, executor.getRejectedCount());
+        assertEquals(1, executor.getBlockedCount());
+    }
+
+    static MessageHandlingRunnable task(Long key, Runnable body) {
+        Message<String> message = MessageBuilder.withPayload("frame").setHeader("key", key).build();
+        MessageHandler handler = received -> body.run();
+        return new MessageHandlingRunnable() {
+            @Override
+            public Message<?> getMessage() {
+                return message;
+            }
+
+            @Override
+            public MessageHandler getMessageHandler() {
+                return handler;
+            }
+
+            @Override
+            public void run() {
+                handler.handleMessage(message);
+            }
+        };
+    }
+
+    static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.campus.im.websocket;
+
+import com.campus.im.service.MessageDeliveryService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.security.Principal;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * STOMP发送限流测试：GCRA按突发量放行、按速率恢复，不同用户与目的地类型互不影响
+ */
+class StompRateLimitInterceptorTest {
+
+    private static final long INTERVAL = TimeUnit.SECONDS.toNanos(1) / 10;
+
+    private StompRateLimitInterceptor interceptor;
+
+    private MessageDeliveryService messageDeliveryService;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        messageDeliveryService = mock(MessageDeliveryService.class);
+        meterRegistry = new SimpleMeterRegistry();
+        interceptor = new StompRateLimitInterceptor();
+        ReflectionTestUtils.setField(interceptor, "messageDeliveryService", messageDeliveryService);
+        ReflectionTestUtils.setField(interceptor, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(interceptor, "enabled", true);
+        ReflectionTestUtils.setField(interceptor, "maxUsers", 1000L);
+        // 私聊每秒10帧、突发20帧，群聊每秒5帧、突发10帧
+        ReflectionTestUtils.setField(interceptor, "privateRate", 10.0);
+        ReflectionTestUtils.setField(interceptor, "privateBurst", 20);
+        ReflectionTestUtils.setField(interceptor, "groupRate", 5.0);
+        ReflectionTestUtils.setField(interceptor, "groupBurst", 10);
+        ReflectionTestUtils.setField(interceptor, "signalRate", 20.0);
+        ReflectionTestUtils.setField(interceptor, "signalBurst", 40);
+        ReflectionTestUtils.setField(interceptor, "otherRate", 10.0);
+        ReflectionTestUtils.setField(interceptor, "otherBurst", 20);
+        interceptor.init();
+    }
+
+    @Test
+    void gcraAllowsBurstThenRefillsAtRate() {
+        long now = 1_000_000_000L;
+        AtomicLongArray buckets = new AtomicLongArray(5);
+        buckets.set(0, now);
+
+        // 满桶时一次放行突发量
+        for (int i = 0; i < 20; i++) {
+            assertTrue(tryAcquire(buckets, now), "第" + (i + 1) + "帧应放行");
+        }
+        assertFalse(tryAcquire(buckets, now));
+
+        // 被拒绝不推进理论到达时间，不足一个间隔仍然拒绝
+        assertFalse(tryAcquire(buckets, now + INTERVAL - 1));
+        // 每过一个间隔恢复一帧
+        assertTrue(tryAcquire(buckets, now + INTERVAL));
+        assertFalse(tryAcquire(buckets, now + INTERVAL));
+
+        // 空闲足够久后桶回满，但不会超过突发量
+        long later = now + 100 * INTERVAL;
+        for (int i = 0; i < 20; i++) {
+            assertTrue(tryAcquire(buckets, later));
+        }
+        assertFalse(tryAcquire(buckets, later));
+    }
+
+    @Test
+    void rejectedFramesAreDroppedPerUserAndType() {
+        for (int i = 0; i < 20; i++) {
+            assertNotNull(interceptor.preSend(send("13800000001", "/app/private.message"), null));
+        }
+        assertNull(interceptor.preSend(send("13800000001", "/app/private.message"), null));
+        assertNull(interceptor.preSend(send("13800000001", "/app/private.message"), null));
+
+        // 同一用户的群聊与其他用户的私聊各有独立的桶
+        assertNotNull(interceptor.preSend(send("13800000001", "/app/group.message"), null));
+        assertNotNull(interceptor.preSend(send("13800000002", "/app/private.message"), null));
+
+        assertEquals(2.0, meterRegistry.get("im.websocket.rate-limit.rejected").tag("type", "private").counter().count());
+        // 每个用户每秒最多推送一条限流提示
+        verify(messageDeliveryService, times(1)).sendToUser(eq("13800000001"), eq("/queue/errors"), any());
+    }
+
+    private boolean tryAcquire(AtomicLongArray buckets, long now) {
+        Boolean acquired = ReflectionTestUtils.invokeMethod(interceptor, "tryAcquire", buckets, 0, now);
+        return Boolean.TRUE.equals(acquired);
+    }
+
+    private static Message<byte[]> send(String user, String destination) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SEND);
+        accessor.setDestination(destination);
+        accessor.setUser((Principal) () -> user);
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}